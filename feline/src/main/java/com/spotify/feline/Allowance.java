@@ -0,0 +1,190 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import java.util.regex.Pattern;
+
+/**
+ * Methods to allow blocking calls inside, given as "classPattern#methodPattern", optionally
+ * followed by a method descriptor, e.g. "com.example.Cache#load(Ljava/lang/String;)V".
+ *
+ * <p>In class patterns, "*" matches any part of a class name within a package, and "**" matches any
+ * part including packages: "com.example.batch.*" matches the classes of the package, and
+ * "com.example.batch.**" also those of its subpackages. Nested classes are matched by their binary
+ * name, e.g. "com.example.Outer$Inner". In method patterns, "*" matches any part of a method name.
+ * Without a method pattern, blocking calls are allowed inside all methods of the matching classes.
+ * Constructors are only matched by the exact name "&lt;init&gt;".
+ */
+final class Allowance {
+
+  private final String allowance;
+
+  /** The part of the class pattern before its first wildcard, or all of it if it has none. */
+  final String classPrefix;
+
+  private final Pattern classSuffix;
+  private final String methodName;
+  private final Pattern methodPattern;
+  private final String descriptor;
+
+  private Allowance(
+      final String allowance,
+      final String classPrefix,
+      final Pattern classSuffix,
+      final String methodName,
+      final Pattern methodPattern,
+      final String descriptor) {
+    this.allowance = allowance;
+    this.classPrefix = classPrefix;
+    this.classSuffix = classSuffix;
+    this.methodName = methodName;
+    this.methodPattern = methodPattern;
+    this.descriptor = descriptor;
+  }
+
+  static Allowance parse(final String allowance) {
+    final String trimmed = allowance.trim();
+    final int separator = trimmed.indexOf('#');
+    final String classPattern = separator < 0 ? trimmed : trimmed.substring(0, separator);
+    if (classPattern.isEmpty()) {
+      throw new IllegalArgumentException(
+          "Allowed methods must be given as classPattern#methodPattern: " + allowance);
+    }
+
+    String method = separator < 0 ? "*" : trimmed.substring(separator + 1);
+    String descriptor = null;
+    final int parameters = method.indexOf('(');
+    if (parameters >= 0) {
+      descriptor = method.substring(parameters);
+      method = method.substring(0, parameters);
+      if (descriptor.indexOf(')') < 0) {
+        throw new IllegalArgumentException("Invalid method descriptor: " + allowance);
+      }
+    }
+    if (method.isEmpty()) {
+      throw new IllegalArgumentException(
+          "Allowed methods must be given as classPattern#methodPattern: " + allowance);
+    }
+
+    final int wildcard = classPattern.indexOf('*');
+    final String classPrefix = wildcard < 0 ? classPattern : classPattern.substring(0, wildcard);
+    final Pattern classSuffix = wildcard < 0 ? null : classGlob(classPattern.substring(wildcard));
+    if (method.equals("*")) {
+      return new Allowance(trimmed, classPrefix, classSuffix, null, null, descriptor);
+    } else if (method.indexOf('*') < 0) {
+      return new Allowance(trimmed, classPrefix, classSuffix, method, null, descriptor);
+    } else {
+      return new Allowance(trimmed, classPrefix, classSuffix, null, methodGlob(method), descriptor);
+    }
+  }
+
+  private static Pattern classGlob(final String glob) {
+    final StringBuilder regex = new StringBuilder();
+    int literal = 0;
+    for (int i = 0; i < glob.length(); i++) {
+      if (glob.charAt(i) == '*') {
+        regex.append(Pattern.quote(glob.substring(literal, i)));
+        if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+          regex.append(".*");
+          i++;
+        } else {
+          regex.append("[^.]*");
+        }
+        literal = i + 1;
+      }
+    }
+    return Pattern.compile(regex.append(Pattern.quote(glob.substring(literal))).toString());
+  }
+
+  private static Pattern methodGlob(final String glob) {
+    final StringBuilder regex = new StringBuilder();
+    int literal = 0;
+    for (int i = glob.indexOf('*'); i >= 0; i = glob.indexOf('*', literal)) {
+      regex.append(Pattern.quote(glob.substring(literal, i))).append(".*");
+      literal = i + 1;
+    }
+    return Pattern.compile(regex.append(Pattern.quote(glob.substring(literal))).toString());
+  }
+
+  /**
+   * Matches the part of a class name after the class prefix.
+   *
+   * @param className a class name that starts with the class prefix
+   */
+  boolean matchesClass(final String className) {
+    if (classSuffix == null) {
+      return className.length() == classPrefix.length();
+    }
+    return classSuffix
+        .matcher(className)
+        .region(classPrefix.length(), className.length())
+        .matches();
+  }
+
+  /**
+   * @param internalName the name of a method, or "&lt;init&gt;" for constructors
+   * @param methodDescriptor the descriptor of the method
+   */
+  boolean matchesMethod(final String internalName, final String methodDescriptor) {
+    if (descriptor != null && !descriptor.equals(methodDescriptor)) {
+      return false;
+    }
+    if (methodName != null) {
+      return methodName.equals(internalName);
+    }
+    if (internalName.startsWith("<")) {
+      // constructors and initializers are only matched by name
+      return false;
+    }
+    return methodPattern == null || methodPattern.matcher(internalName).matches();
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    return o instanceof Allowance && allowance.equals(((Allowance) o).allowance);
+  }
+
+  @Override
+  public int hashCode() {
+    return allowance.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return allowance;
+  }
+}
@@ -0,0 +1,139 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Matches class names against many allowances at once. The allowances are compiled into a trie of
+ * their class prefixes, so matching a class walks its name once, and only checks the wildcards of
+ * the allowances whose prefix it starts with. This keeps class loading fast with thousands of
+ * allowances.
+ *
+ * <p>A matcher is immutable once compiled.
+ */
+final class AllowanceMatcher {
+
+  static final AllowanceMatcher EMPTY = compile(Collections.emptyList());
+
+  private final Node root;
+
+  private AllowanceMatcher(final Node root) {
+    this.root = root;
+  }
+
+  static AllowanceMatcher compile(final Collection<Allowance> allowances) {
+    final Node root = new Node();
+    for (final Allowance allowance : allowances) {
+      Node node = root;
+      for (int i = 0; i < allowance.classPrefix.length(); i++) {
+        node = node.addChild(allowance.classPrefix.charAt(i));
+      }
+      node.allowances.add(allowance);
+    }
+    return new AllowanceMatcher(root);
+  }
+
+  boolean matches(final String className) {
+    Node node = root;
+    for (int i = 0; node != null; i++) {
+      for (final Allowance allowance : node.allowances) {
+        if (allowance.matchesClass(className)) {
+          return true;
+        }
+      }
+      node = i < className.length() ? node.child(className.charAt(i)) : null;
+    }
+    return false;
+  }
+
+  /** Returns the allowances that match a class. */
+  List<Allowance> allowances(final String className) {
+    final List<Allowance> matching = new ArrayList<>();
+    Node node = root;
+    for (int i = 0; node != null; i++) {
+      for (final Allowance allowance : node.allowances) {
+        if (allowance.matchesClass(className)) {
+          matching.add(allowance);
+        }
+      }
+      node = i < className.length() ? node.child(className.charAt(i)) : null;
+    }
+    return matching;
+  }
+
+  private static final class Node {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    // sorted, for binary search
+    private char[] keys = NO_KEYS;
+    private Node[] children = NO_CHILDREN;
+
+    // the allowances whose class prefix ends at this node
+    private final List<Allowance> allowances = new ArrayList<>(0);
+
+    Node child(final char key) {
+      final int index = Arrays.binarySearch(keys, key);
+      return index >= 0 ? children[index] : null;
+    }
+
+    Node addChild(final char key) {
+      int index = Arrays.binarySearch(keys, key);
+      if (index >= 0) {
+        return children[index];
+      }
+      index = -index - 1;
+      final char[] newKeys = new char[keys.length + 1];
+      final Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(keys, 0, newKeys, 0, index);
+      System.arraycopy(children, 0, newChildren, 0, index);
+      System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+      System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+      newKeys[index] = key;
+      newChildren[index] = new Node();
+      keys = newKeys;
+      children = newChildren;
+      return newChildren[index];
+    }
+  }
+}
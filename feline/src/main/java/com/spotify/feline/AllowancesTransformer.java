@@ -37,13 +37,18 @@
 
 package com.spotify.feline;
 
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
 import java.security.ProtectionDomain;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import net.bytebuddy.agent.builder.AgentBuilder;
 import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType.Builder;
 import net.bytebuddy.matcher.ElementMatcher;
@@ -51,31 +56,126 @@ import net.bytebuddy.utility.JavaModule;
 
 /**
  * This transformer applies {@link AllowAdvice} to every method registered with {@link
- * Feline#allowBlockingCallsInside(String, String)}.
+ * Feline#allowBlockingCallsInside(String, String)} or {@link Feline#allowBlockingCalls(String...)}.
+ * Allowances can be added and removed after the classes they apply to are loaded, in which case
+ * those classes are retransformed.
  */
 class AllowancesTransformer implements AgentBuilder.Transformer, ElementMatcher<TypeDescription> {
 
-  private final ConcurrentMap<String, Set<String>> allowances;
+  private final Set<Allowance> allowances = new LinkedHashSet<>();
 
-  AllowancesTransformer() {
-    this.allowances = new ConcurrentHashMap<>();
+  // compiled when first used after allowances are added, so that many allowances that are added
+  // at once (e.g. from configuration) are only compiled once
+  private volatile AllowanceMatcher matcher = AllowanceMatcher.EMPTY;
+
+  // retransformations are serialized, so that they apply the allowances in the order they changed
+  private final Object retransformLock = new Object();
+
+  /** Adds allowances, and returns those that were not added before. */
+  synchronized List<Allowance> allow(final Collection<Allowance> added) {
+    final List<Allowance> changed = new ArrayList<>();
+    for (final Allowance allowance : added) {
+      if (allowances.add(allowance)) {
+        changed.add(allowance);
+      }
+    }
+    if (!changed.isEmpty()) {
+      matcher = null;
+    }
+    return changed;
   }
 
-  void allow(final String className, final String methodName) {
-    allowances.compute(
-        className,
-        (key, set) -> {
-          if (set == null) {
-            set = new HashSet<>();
+  /** Removes allowances, and returns those that were removed. */
+  synchronized List<Allowance> disallow(final Collection<Allowance> removed) {
+    final List<Allowance> changed = new ArrayList<>();
+    for (final Allowance allowance : removed) {
+      if (allowances.remove(allowance)) {
+        changed.add(allowance);
+      }
+    }
+    if (!changed.isEmpty()) {
+      matcher = null;
+    }
+    return changed;
+  }
+
+  /**
+   * Retransforms the loaded classes that match any of the changed allowances, so that they are
+   * instrumented according to the current allowances. Only those classes are retransformed, in
+   * batches of the given size, as each batch briefly stops the application.
+   */
+  void retransform(
+      final Instrumentation instrumentation,
+      final Collection<Allowance> changed,
+      final int batchSize) {
+    if (changed.isEmpty()) {
+      return;
+    }
+    final AllowanceMatcher changedMatcher = AllowanceMatcher.compile(changed);
+    synchronized (retransformLock) {
+      // compiled here rather than by the first class that is retransformed
+      matcher();
+
+      final List<Class<?>> classes = new ArrayList<>();
+      for (final Class<?> type : instrumentation.getAllLoadedClasses()) {
+        if (changedMatcher.matches(type.getName()) && instrumentation.isModifiableClass(type)) {
+          classes.add(type);
+        }
+      }
+
+      final long start = System.nanoTime();
+      int retransformed = 0;
+      int batches = 0;
+      int failures = 0;
+      for (int i = 0; i < classes.size(); i += batchSize) {
+        final List<Class<?>> batch = classes.subList(i, Math.min(i + batchSize, classes.size()));
+        batches++;
+        if (retransform(instrumentation, batch)) {
+          retransformed += batch.size();
+          continue;
+        }
+        // retry the classes of the batch one at a time, so that one class can not fail others
+        for (final Class<?> type : batch) {
+          batches++;
+          if (retransform(instrumentation, Collections.singletonList(type))) {
+            retransformed++;
+          } else {
+            failures++;
           }
-          set.add(methodName);
-          return set;
-        });
+        }
+      }
+      FelineAgentStats.acceptRetransformation(
+          retransformed, batches, failures, System.nanoTime() - start);
+    }
+  }
+
+  private static boolean retransform(
+      final Instrumentation instrumentation, final List<Class<?>> classes) {
+    try {
+      instrumentation.retransformClasses(classes.toArray(new Class<?>[0]));
+      return true;
+    } catch (UnmodifiableClassException | RuntimeException | LinkageError e) {
+      return false;
+    }
+  }
+
+  private AllowanceMatcher matcher() {
+    AllowanceMatcher compiled = matcher;
+    if (compiled == null) {
+      synchronized (this) {
+        compiled = matcher;
+        if (compiled == null) {
+          compiled = AllowanceMatcher.compile(allowances);
+          matcher = compiled;
+        }
+      }
+    }
+    return compiled;
   }
 
   @Override
   public boolean matches(final TypeDescription typeDescription) {
-    return allowances.containsKey(typeDescription.getName());
+    return matcher().matches(typeDescription.getName());
   }
 
   @Override
@@ -86,10 +186,19 @@ class AllowancesTransformer implements AgentBuilder.Transformer, ElementMatcher<
       final JavaModule javaModule,
       final ProtectionDomain protectionDomain) {
 
-    final Set<String> methods = allowances.get(typeDescription.getName());
+    final List<Allowance> matching = matcher().allowances(typeDescription.getName());
 
-    return builder.visit(
-        Advice.to(AllowAdvice.class).on(method -> methods.contains(method.getInternalName())));
+    return builder.visit(Advice.to(AllowAdvice.class).on(method -> isAllowed(matching, method)));
+  }
+
+  private static boolean isAllowed(
+      final List<Allowance> allowances, final MethodDescription method) {
+    for (final Allowance allowance : allowances) {
+      if (allowance.matchesMethod(method.getInternalName(), method.getDescriptor())) {
+        return true;
+      }
+    }
+    return false;
   }
 
   static class AllowAdvice {
@@ -0,0 +1,70 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+/**
+ * What happens on a blocking call, depending on the role of the thread it is made on.
+ *
+ * @see Feline#setThreadRoleAction(ThreadRole, BlockingAction)
+ */
+public enum BlockingAction {
+
+  /** The call is not reported to consumers. */
+  IGNORE(FelinePolicy.IGNORE),
+
+  /** The call is reported to consumers and counted. */
+  COUNT(FelinePolicy.COUNT),
+
+  /** The call is reported to consumers, counted and logged with its stack trace to stderr. */
+  LOG(FelinePolicy.LOG),
+
+  /**
+   * The call is reported to consumers and counted, after which an {@link IllegalStateException} is
+   * thrown from the blocking method.
+   */
+  THROW(FelinePolicy.THROW);
+
+  final int id;
+
+  BlockingAction(final int id) {
+    this.id = id;
+  }
+
+  static BlockingAction of(final int id) {
+    return values()[id];
+  }
+}
@@ -37,16 +37,29 @@
 
 package com.spotify.feline;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.instrument.Instrumentation;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
+import net.bytebuddy.dynamic.loading.ClassInjector;
 import net.bytebuddy.jar.asm.ClassReader;
 import net.bytebuddy.jar.asm.ClassVisitor;
 import net.bytebuddy.jar.asm.Label;
@@ -56,32 +69,180 @@ import net.bytebuddy.utility.OpenedClassReader;
 
 class BytecodeUtils {
 
+  /**
+   * The classes that advice calls into, which are injected into the bootstrap class loader along
+   * with their nested classes. They are referred to by name, as class literals would load them.
+   */
+  static final String[] RUNTIME_CLASSES = {
+    "com.spotify.feline.FelineRuntime", "com.spotify.feline.FelinePolicy"
+  };
+
+  static final String CACHE_DIR_PROPERTY = "feline.cacheDir";
+  static final String IN_MEMORY_INJECTION_PROPERTY = "feline.inMemoryInjection";
+
+  // the jar appended to the bootstrap class path, if the classes were not defined in memory
+  private static volatile Path bootstrapJar;
+  private static volatile Map<String, byte[]> bootstrapClasses;
+
+  /**
+   * Injects classes, and the classes nested in them, into the bootstrap class loader. The classes
+   * are defined in memory where possible. Otherwise, they are appended to the bootstrap class path
+   * as a jar in the "feline.cacheDir" directory (by default, the temp directory), which is named by
+   * its content so that it is written once instead of on every start.
+   *
+   * <p>Classes that the bootstrap class loader already has, e.g. because another copy of Feline
+   * injected them, or because they were put on the bootstrap class path, are not injected again.
+   */
   static void injectBootstrapClasses(
       final Instrumentation instrumentation, final String... classNames) throws IOException {
-    final File tempJarFile = File.createTempFile("feline", ".jar");
-    tempJarFile.deleteOnExit();
-
-    final ClassLoader classLoader = Feline.class.getClassLoader();
-    try (final ZipOutputStream zipOutputStream =
-        new ZipOutputStream(new FileOutputStream(tempJarFile))) {
-      for (final String className : classNames) {
-        final String classFile = className.replace(".", "/") + ".class";
-        try (final InputStream inputStream = classLoader.getResourceAsStream(classFile)) {
-          final ZipEntry entry = new ZipEntry(classFile);
-          zipOutputStream.putNextEntry(entry);
-
-          // write class file to ZIP
-          final byte[] buffer = new byte[1024];
-          int len;
-          while ((len = inputStream.read(buffer)) != -1) {
-            zipOutputStream.write(buffer, 0, len);
-          }
-        }
+    final Map<String, byte[]> classes = readClasses(classNames);
+
+    if (isBootstrapClass(classNames[0])) {
+      // e.g. put on the bootstrap class path with -Xbootclasspath/a
+      FelineAgentStats.acceptBootstrapInjection(0, false);
+    } else if (Boolean.parseBoolean(System.getProperty(IN_MEMORY_INJECTION_PROPERTY, "true"))
+        && ClassInjector.UsingUnsafe.isAvailable()) {
+      ClassInjector.UsingUnsafe.ofBootLoader().injectRaw(classes);
+      FelineAgentStats.acceptBootstrapInjection(classes.size(), true);
+    } else {
+      final String cacheDir =
+          System.getProperty(CACHE_DIR_PROPERTY, System.getProperty("java.io.tmpdir"));
+      final Path jar = cachedJar(Paths.get(cacheDir), classes);
+      // the JVM opens the jar itself, so this one is closed, e.g. for checkpoints
+      try (final JarFile jarFile = new JarFile(jar.toFile())) {
+        instrumentation.appendToBootstrapClassLoaderSearch(jarFile);
+      }
+      bootstrapJar = jar;
+      bootstrapClasses = classes;
+      FelineAgentStats.acceptBootstrapInjection(classes.size(), false);
+    }
+
+    // Load and initialize the classes before any advice that refers to them is installed, as
+    // loading them while transforming a class leads to a ClassCircularityError
+    for (final String className : classes.keySet()) {
+      try {
+        Class.forName(className, true, null);
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Failed to load injected class " + className, e);
+      }
+    }
+  }
+
+  /**
+   * Writes the jar that was appended to the bootstrap class path again if it no longer exists, e.g.
+   * after restoring a checkpoint on another host, as the JVM may still read it.
+   */
+  static void restoreBootstrapJar() throws IOException {
+    final Path jar = bootstrapJar;
+    if (jar != null && !Files.exists(jar)) {
+      cachedJar(jar.getParent(), bootstrapClasses);
+    }
+  }
+
+  private static boolean isBootstrapClass(final String className) {
+    try {
+      Class.forName(className.replace('/', '.'), false, null);
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
 
-        zipOutputStream.closeEntry();
+  /** Reads the class files of the classes and of their nested classes, by class name. */
+  static Map<String, byte[]> readClasses(final String... classNames) throws IOException {
+    final Map<String, byte[]> classes = new LinkedHashMap<>();
+    final Deque<String> pending = new ArrayDeque<>(Arrays.asList(classNames));
+    while (!pending.isEmpty()) {
+      final String className = pending.poll().replace('.', '/');
+      if (classes.containsKey(className.replace('/', '.'))) {
+        continue;
       }
+      final byte[] classFile = readClassFile(className);
+      classes.put(className.replace('/', '.'), classFile);
+
+      new ClassReader(classFile)
+          .accept(
+              new ClassVisitor(OpenedClassReader.ASM_API) {
+                @Override
+                public void visitInnerClass(
+                    final String name,
+                    final String outerName,
+                    final String innerName,
+                    final int access) {
+                  if (name.startsWith(className + "$")) {
+                    pending.add(name);
+                  }
+                }
+              },
+              ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
+    return classes;
+  }
+
+  private static byte[] readClassFile(final String className) throws IOException {
+    final String classFile = className + ".class";
+    try (final InputStream inputStream =
+        Feline.class.getClassLoader().getResourceAsStream(classFile)) {
+      if (inputStream == null) {
+        throw new IOException("Class file not found: " + classFile);
+      }
+      final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      int len;
+      while ((len = inputStream.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, len);
+      }
+      return outputStream.toByteArray();
+    }
+  }
+
+  /**
+   * Returns a jar with the classes in the directory, named by a hash of its content. The jar is
+   * written if it does not exist yet, to a temporary file that is then moved in place, so that a
+   * crash or a concurrent start never leaves an incomplete jar behind.
+   */
+  static Path cachedJar(final Path directory, final Map<String, byte[]> classes)
+      throws IOException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+    for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+      digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+      digest.update(entry.getValue());
+    }
+    final StringBuilder name = new StringBuilder("feline-");
+    final byte[] hash = digest.digest();
+    for (int i = 0; i < 16; i++) {
+      name.append(String.format("%02x", hash[i]));
+    }
+    final Path jar = directory.resolve(name.append(".jar").toString());
+    if (Files.exists(jar)) {
+      return jar;
+    }
+
+    Files.createDirectories(directory);
+    final Path tempJar = Files.createTempFile(directory, "feline", ".tmp");
+    try {
+      try (final ZipOutputStream zipOutputStream =
+          new ZipOutputStream(Files.newOutputStream(tempJar))) {
+        for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+          zipOutputStream.putNextEntry(new ZipEntry(entry.getKey().replace('.', '/') + ".class"));
+          zipOutputStream.write(entry.getValue());
+          zipOutputStream.closeEntry();
+        }
+      }
+      try {
+        Files.move(tempJar, jar, StandardCopyOption.ATOMIC_MOVE);
+      } catch (FileAlreadyExistsException e) {
+        // written by a concurrent start, with the same content
+      }
+    } finally {
+      Files.deleteIfExists(tempJar);
     }
-    instrumentation.appendToBootstrapClassLoaderSearch(new JarFile(tempJarFile));
+    return jar;
   }
 
   public static Method getMethod(final StackTraceElement stackTraceElement) throws Exception {
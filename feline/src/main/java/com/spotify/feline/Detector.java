@@ -0,0 +1,176 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+/**
+ * Optional detectors, which are disabled by default.
+ *
+ * @see Feline#enableDetector(Detector)
+ */
+public enum Detector {
+
+  /**
+   * Detects async CompletableFuture tasks that are submitted without an explicit executor, and
+   * measures how long they run.
+   *
+   * @see Feline#addCommonPoolSubmissionConsumer
+   * @see Feline#addCommonPoolExecutionConsumer
+   */
+  COMMON_POOL_ASYNC(FelineRuntime.DETECT_COMMON_POOL_ASYNC),
+
+  /**
+   * Detects slow dependent-stage callbacks of CompletableFuture (e.g. the function passed to
+   * thenApply) that run inline on the thread that completes the future.
+   *
+   * @see Feline#addSlowCallbackConsumer
+   * @see Feline#setSlowCallbackThreshold
+   */
+  SLOW_CALLBACKS(FelineRuntime.DETECT_SLOW_CALLBACKS),
+
+  /**
+   * Detects blocking calls to java.util.concurrent synchronizers other than Future:
+   * CountDownLatch.await, Semaphore.acquire, BlockingQueue.take and put, CyclicBarrier.await,
+   * Thread.join, and ExecutorService.invokeAll and awaitTermination. These are reported to the same
+   * consumers as blocking calls to Future, and the data passed to on-exit consumers has a
+   * "primitive" field, e.g. "CountDownLatch".
+   *
+   * <p>Workers of a ThreadPoolExecutor waiting for their next task are not reported.
+   */
+  SYNCHRONIZERS(FelineRuntime.DETECT_SYNCHRONIZERS),
+
+  /**
+   * Detects waits for ForkJoinTasks through join, invoke and invokeAll (and their quiet variants),
+   * which is how parallel streams and RecursiveTasks wait for their subtasks. ForkJoinTask.get is
+   * reported regardless, like any other Future.
+   *
+   * <p>A join is only reported if the thread actually waits, rather than running the task inline
+   * (e.g. invoke) or helping to run other tasks until it completes. Its "blockedTimeNanos" only
+   * includes the time spent waiting, and blocking calls made by the tasks that a worker runs in
+   * between are reported too. The data passed to on-exit consumers has a "primitive" field with
+   * value "ForkJoinTask". An action of {@link BlockingAction#THROW} is applied when the join
+   * returns.
+   */
+  FORK_JOIN_TASKS(FelineRuntime.DETECT_FORK_JOIN_TASKS),
+
+  /**
+   * Detects blocking I/O on threads with the {@link ThreadRole#EVENT_LOOP} role: reads and writes
+   * of FileInputStream, FileOutputStream and RandomAccessFile, reads of FileChannel and of
+   * SocketChannel in blocking mode, Files.readAllBytes/readAllLines/readString, and
+   * HttpClient.send. I/O on other threads is not reported.
+   *
+   * <p>These calls are reported to the regular blocking call consumers, and the data passed to
+   * on-exit consumers has a "primitive" field with value "IO".
+   */
+  BLOCKING_IO(FelineRuntime.DETECT_BLOCKING_IO),
+
+  /**
+   * Detects Thread.sleep and LockSupport.park, parkNanos and parkUntil. Parks that happen inside
+   * another reported blocking call, e.g. Future.get, are not reported again, and neither are idle
+   * workers of ThreadPoolExecutor and ForkJoinPool waiting for tasks. Parks of locks, conditions
+   * and queues built on AbstractQueuedSynchronizer, and of futures, blocking queues and
+   * ForkJoinPools, are not reported either, as they are covered by {@link #SYNCHRONIZERS}, {@link
+   * #FORK_JOIN_TASKS} and the detection of futures. Before Java 19, Thread.sleep(long) is a native
+   * method, which is wrapped up to Java 12 and not detected on Java 13 to 18.
+   *
+   * <p>The data passed to on-exit consumers has a "primitive" field ("Thread" or "LockSupport") and
+   * a "requestedNanos" field with the requested time, or -1 for an untimed park. Comparing it with
+   * "blockedTimeNanos" shows how long the thread actually waited.
+   */
+  SLEEP_AND_PARK(FelineRuntime.DETECT_SLEEP_AND_PARK),
+
+  /**
+   * Detects virtual threads that park while pinned to their carrier thread (Java 21+), and adds a
+   * "pinned" field to the data passed to on-exit consumers for blocking calls on virtual threads.
+   * The "virtual" field, which tells virtual threads from platform threads, is always present.
+   *
+   * @see Feline#addPinnedVirtualThreadConsumer
+   * @see Feline#getCarrierPoolStats
+   */
+  VIRTUAL_THREADS(FelineRuntime.DETECT_VIRTUAL_THREADS),
+
+  /**
+   * Counts the initializations of each ThreadLocal class on platform and virtual threads, and
+   * samples the size of their initial values. With many short-lived (e.g. virtual) threads, every
+   * initialization is repeated per thread, so this estimates the per-thread footprint of each
+   * ThreadLocal.
+   *
+   * @see Feline#getThreadLocalFootprint
+   * @see Feline#setThreadLocalSampleRate
+   */
+  THREAD_LOCAL_FOOTPRINT(FelineRuntime.DETECT_THREAD_LOCAL_FOOTPRINT),
+
+  /**
+   * Counts the calls to ThreadLocal.set and remove by ThreadLocal class. A class that is set far
+   * more often than it is removed on long-lived pool threads is a likely leak, which can be
+   * confirmed by sampling the ThreadLocal maps of threads.
+   *
+   * @see Feline#getThreadLocalFootprint
+   * @see Feline#startThreadLocalMapSampling
+   */
+  THREAD_LOCAL_MAPS(FelineRuntime.DETECT_THREAD_LOCAL_MAPS),
+
+  /**
+   * Adds the locks held by a thread to the data passed to on-exit consumers for its blocking calls.
+   * Blocking while holding a lock makes every thread that needs the lock wait as well.
+   *
+   * <p>ReentrantLocks and ReentrantReadWriteLocks acquired while this is enabled are listed in the
+   * "heldLocks" field, and for a sample of calls, the monitors held (by synchronized) are listed in
+   * the "heldMonitors" field. Both are lists of Strings with the class and identity hash code of
+   * the lock. The "amplified" field is true if any lock is held.
+   *
+   * @see Feline#setHeldMonitorSampleRate
+   */
+  HELD_LOCKS(FelineRuntime.DETECT_HELD_LOCKS),
+
+  /**
+   * Counts all calls to Future.get and CompletableFuture.join, including those to futures that are
+   * already done, by method and (for a sample of calls) by call site. This gives the ratio of calls
+   * that block, which regular blocking call consumers can not tell, as they only see the calls that
+   * block.
+   *
+   * @see Feline#getFutureCallStats
+   * @see Feline#getFutureCallSiteStats
+   * @see Feline#getBlockingRatio
+   */
+  BLOCKING_RATIO(FelineRuntime.DETECT_BLOCKING_RATIO);
+
+  final int mask;
+
+  Detector(final int mask) {
+    this.mask = mask;
+  }
+}
@@ -36,23 +36,51 @@
 
 package com.spotify.feline;
 
+import com.spotify.feline.FelineInstrumented.Transformation;
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
-import net.bytebuddy.agent.ByteBuddyAgent;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.matcher.ElementMatchers;
+import net.bytebuddy.pool.TypePool;
 
 /** Detects blocking calls to @link CompletableFuture and notifies registered consumers. */
 public class Feline {
 
   private static final AllowancesTransformer allowancesTransformer = new AllowancesTransformer();
 
+  private static final ElementMatcher.Junction<TypeDescription> FUTURE_NOT_INSTRUMENTED =
+      ElementMatchers.not(FelineBuildPlugin.isInstrumentedWith(Transformation.FUTURE));
+
+  private static final ElementMatcher.Junction<TypeDescription> THREAD_LOCAL_NOT_INSTRUMENTED =
+      ElementMatchers.not(FelineBuildPlugin.isInstrumentedWith(Transformation.THREAD_LOCAL));
+
   /**
    * Registers a consumer that will be invoked when blocking calls are detected. Consumers can throw
    * exceptions and can thus affect the blocking call.
@@ -91,6 +119,10 @@ public class Feline {
    * blocking method call), "blockedTimeNanos" (a Long representing how long the method call was
    * blocked, in nanoseconds)
    *
+   * <p>For calls to Future.get and CompletableFuture.join, the map also has "outcome" (a String,
+   * one of "completed", "timedOut", "interrupted" or "failed"), and for timed calls to get,
+   * "timeoutNanos" (a Long with the requested timeout, in nanoseconds)
+   *
    * @param blockingCallConsumer Consumer to be invoked on any blocking call after it completes.
    */
   public static void addOnExitConsumerFirst(
@@ -135,6 +167,10 @@ public class Feline {
    * blocking method call), "blockedTimeNanos" (a Long representing how long the method call was
    * blocked, in nanoseconds)
    *
+   * <p>For calls to Future.get and CompletableFuture.join, the map also has "outcome" (a String,
+   * one of "completed", "timedOut", "interrupted" or "failed"), and for timed calls to get,
+   * "timeoutNanos" (a Long with the requested timeout, in nanoseconds)
+   *
    * @param blockingCallConsumer Consumer to be invoked on any blocking call after it completes.
    */
   public static void addOnExitConsumerLast(
@@ -167,11 +203,67 @@ public class Feline {
    * Allows blocking calls inside any method of a class with name identified by the provided
    * className and which name matches the provided methodName.
    *
+   * <p>If the class is already loaded, it is retransformed.
+   *
    * @param className class' name
    * @param methodName a method name
    */
   public static void allowBlockingCallsInside(final String className, final String methodName) {
-    allowancesTransformer.allow(className, methodName);
+    allowBlockingCalls(className + "#" + methodName);
+  }
+
+  /**
+   * Allows blocking calls inside the methods that match patterns, given as
+   * "classPattern#methodPattern", optionally followed by a method descriptor. For example:
+   *
+   * <ul>
+   *   <li>"com.example.batch.*" allows all methods of the classes in the package, and
+   *       "com.example.batch.**" also those of its subpackages
+   *   <li>"com.example.*Repository#find*" allows the methods that start with "find" of the classes
+   *       whose name ends with "Repository"
+   *   <li>"com.example.Cache#load(Ljava/lang/String;)Ljava/lang/Object;" allows a single overload
+   * </ul>
+   *
+   * <p>In class patterns, "*" does not match across packages, while "**" does. Matching a loaded
+   * class is proportional to the length of its name rather than to the number of allowances.
+   *
+   * <p>Allowances can be added at any time: the classes they apply to that are already loaded are
+   * retransformed, except for classes instrumented at build time. Adding many allowances in one
+   * call retransforms each class at most once.
+   *
+   * @param allowances the methods to allow blocking calls inside
+   * @throws IllegalArgumentException if a pattern is invalid, in which case none are added
+   * @see #disallowBlockingCalls(String...)
+   */
+  public static void allowBlockingCalls(final String... allowances) {
+    final List<Allowance> added = allowancesTransformer.allow(parseAllowances(allowances));
+    allowancesTransformer.retransform(
+        FelineAgent.instrumentation(), added, FelineAgent.config().retransformBatchSize());
+  }
+
+  /**
+   * Removes allowances that were added with {@link #allowBlockingCalls(String...)} or {@link
+   * #allowBlockingCallsInside(String, String)}, given exactly as they were added. The classes they
+   * apply to that are already loaded are retransformed, so that blocking calls inside them are
+   * detected again, unless other allowances still apply to them.
+   *
+   * @param allowances the allowances to remove
+   * @return true if any of the allowances was removed
+   * @throws IllegalArgumentException if a pattern is invalid, in which case none are removed
+   */
+  public static boolean disallowBlockingCalls(final String... allowances) {
+    final List<Allowance> removed = allowancesTransformer.disallow(parseAllowances(allowances));
+    allowancesTransformer.retransform(
+        FelineAgent.instrumentation(), removed, FelineAgent.config().retransformBatchSize());
+    return !removed.isEmpty();
+  }
+
+  private static List<Allowance> parseAllowances(final String... allowances) {
+    final List<Allowance> parsed = new ArrayList<>(allowances.length);
+    for (final String allowance : allowances) {
+      parsed.add(Allowance.parse(allowance));
+    }
+    return parsed;
   }
 
   /**
@@ -192,66 +284,777 @@ public class Feline {
     return FelineRuntime.removeThreadLocalInitialValueConsumer(consumer);
   }
 
+  /**
+   * The consumer will be called every time a ThreadLocal is initialized, i.e. when initialValue()
+   * returns, with the following data: "threadLocal" (a String with the ThreadLocal class, or the
+   * class that declares the supplier for ThreadLocals created with {@link
+   * ThreadLocal#withInitial}), "thread" (the Thread), "virtual" (a Boolean), "pool" (the
+   * ForkJoinPool, if the thread is one of its workers), and "creationSite" (a String with the
+   * method that created the ThreadLocal, if it was sampled, see {@link
+   * #setThreadLocalCreationSiteSampleRate})
+   *
+   * <p>This tells which ThreadLocal is responsible when the rate of calls seen by {@link
+   * #addThreadLocalInitialValueConsumer} is high.
+   *
+   * @param consumer Consumer to be invoked on each initialization of a ThreadLocal
+   */
+  public static void addThreadLocalInitializationConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    FelineRuntime.addThreadLocalInitializationConsumer(consumer);
+  }
+
+  public static boolean removeThreadLocalInitializationConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return FelineRuntime.removeThreadLocalInitializationConsumer(consumer);
+  }
+
+  /**
+   * Sets how often the creation site of a ThreadLocal is captured (default 0, i.e. never).
+   * Capturing it takes a stack trace, so a rate of 1 (every ThreadLocal) should only be used when
+   * few ThreadLocals are created, e.g. in tests. Only ThreadLocals created after this is set have a
+   * creation site.
+   *
+   * @param sampleRate the number of created ThreadLocals per captured creation site, or 0 to
+   *     disable capturing
+   */
+  public static void setThreadLocalCreationSiteSampleRate(final int sampleRate) {
+    FelineRuntime.setThreadLocalCreationSiteSampleRate(sampleRate);
+  }
+
+  /**
+   * Returns the calls to Future.get and CompletableFuture.join by method, counted while {@link
+   * Detector#BLOCKING_RATIO} is enabled. Each method maps to "calls" (a Long with the number of
+   * calls) and "blockingCalls" (a Long with the number of calls to futures that were not done).
+   *
+   * @return the calls to futures by method
+   */
+  public static Map<String, Map<String, Long>> getFutureCallStats() {
+    return FelineRuntime.futureCalls();
+  }
+
+  /**
+   * Returns a sample of the calls to Future.get and CompletableFuture.join by call site (the method
+   * that called get or join), with the same fields as {@link #getFutureCallStats}.
+   *
+   * @return the sampled calls to futures by call site
+   * @see #setCallSiteSampleRate
+   */
+  public static Map<String, Map<String, Long>> getFutureCallSiteStats() {
+    return FelineRuntime.futureCallSites();
+  }
+
+  /**
+   * Returns the ratio of sampled calls from a call site that blocked, i.e. were made to futures
+   * that were not done. A call site that rarely blocks may hide a race, and one that always blocks
+   * is likely misusing futures.
+   *
+   * @param callSite the class and method name of the call site, e.g. "com.example.Foo.bar"
+   * @return the blocking ratio, or NaN if no calls were sampled for the call site
+   */
+  public static double getBlockingRatio(final String callSite) {
+    return FelineRuntime.blockingRatio(callSite);
+  }
+
+  public static void resetFutureCallStats() {
+    FelineRuntime.resetFutureCalls();
+  }
+
+  /**
+   * Sets how often the call sites of calls to futures are sampled (default 100, i.e. one in a
+   * hundred calls), as finding the call site takes a stack trace.
+   *
+   * @param sampleRate the number of calls per sampled call site
+   */
+  public static void setCallSiteSampleRate(final int sampleRate) {
+    FelineRuntime.setCallSiteSampleRate(sampleRate);
+  }
+
+  /**
+   * Sets how often the monitors held by a thread are sampled when it makes a blocking call while
+   * {@link Detector#HELD_LOCKS} is enabled (default 1000, i.e. one in a thousand blocking calls).
+   * Sampling uses ThreadMXBean on the thread that makes the call, which is relatively expensive.
+   *
+   * @param sampleRate the number of blocking calls per sample, or 0 to disable sampling
+   */
+  public static void setHeldMonitorSampleRate(final int sampleRate) {
+    FelineRuntime.setHeldMonitorSampleRate(sampleRate);
+  }
+
+  /**
+   * Returns the initializations of ThreadLocals by class, counted while {@link
+   * Detector#THREAD_LOCAL_FOOTPRINT} is enabled. ThreadLocals created with {@link
+   * ThreadLocal#withInitial} are identified by the class that declares their supplier.
+   *
+   * <p>Each class maps to the following fields (all Longs): "platformInitializations" and
+   * "virtualInitializations" (the number of initializations on platform and virtual threads),
+   * "sampledInitializations" and "sampledBytes" (the number of initial values measured and their
+   * total size), and "averageBytes" (the estimated size of an initial value, i.e. of the footprint
+   * of the ThreadLocal on each thread that uses it), and "sets" and "removes" (the number of calls
+   * to set and remove, counted while {@link Detector#THREAD_LOCAL_MAPS} is enabled)
+   *
+   * <p>The size of an initial value is its shallow size plus that of its elements, if it is an
+   * array, collection or map. Objects referenced from fields are not included.
+   *
+   * @return the ThreadLocal initializations by class
+   */
+  public static Map<String, Map<String, Long>> getThreadLocalFootprint() {
+    return FelineRuntime.threadLocalFootprint();
+  }
+
+  public static void resetThreadLocalFootprint() {
+    FelineRuntime.resetThreadLocalFootprint();
+  }
+
+  /**
+   * Samples the ThreadLocal maps of all live platform threads. Each thread with a map has the
+   * following data: "thread" (the Thread), "size" (an Integer with the number of entries in the
+   * map), "staleEntries" (an Integer with the number of entries whose ThreadLocal has been garbage
+   * collected, but whose value is retained until the map expunges them) and "threadLocals" (a
+   * Map&lt;String, Integer&gt; with the number of live entries by ThreadLocal class).
+   *
+   * <p>The maps are read without synchronization, so the sample is approximate. This opens the
+   * java.lang package to Feline, and returns an empty list if that is not possible. Taking a sample
+   * does not affect the growth detected by {@link #startThreadLocalMapSampling periodic sampling}.
+   *
+   * @return the ThreadLocal maps of all live platform threads
+   */
+  public static List<Map<String, Object>> sampleThreadLocalMaps() {
+    return ThreadLocalMapSampler.snapshot();
+  }
+
+  /**
+   * Starts sampling the ThreadLocal maps of all live platform threads periodically, on a daemon
+   * thread, replacing any previous sampling. Threads whose map keeps growing are reported to the
+   * consumers added with {@link #addThreadLocalMapGrowthConsumer}.
+   *
+   * @param period the time between samples
+   * @param unit the unit of period
+   * @see #sampleThreadLocalMaps
+   */
+  public static void startThreadLocalMapSampling(final long period, final TimeUnit unit) {
+    ThreadLocalMapSampler.start(period, unit);
+  }
+
+  public static void stopThreadLocalMapSampling() {
+    ThreadLocalMapSampler.stop();
+  }
+
+  /**
+   * The consumer will be called when the ThreadLocal map of a thread has grown in each of the last
+   * three samples, with the data of {@link #sampleThreadLocalMaps} for that thread and in addition:
+   * "growth" (an Integer with the number of entries added since the map started to grow) and
+   * "growingThreadLocals" (a Map&lt;String, Integer&gt; with the number of entries added by
+   * ThreadLocal class). The consumer is called again for each further sample in which the map
+   * grows.
+   *
+   * @param consumer Consumer to be invoked for each thread with a growing ThreadLocal map
+   */
+  public static void addThreadLocalMapGrowthConsumer(final Consumer<Map<String, Object>> consumer) {
+    ThreadLocalMapSampler.addGrowthConsumer(consumer);
+  }
+
+  public static boolean removeThreadLocalMapGrowthConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return ThreadLocalMapSampler.removeGrowthConsumer(consumer);
+  }
+
+  /**
+   * Sets how often the initial values of ThreadLocals are measured (default 100, i.e. one in a
+   * hundred initializations).
+   *
+   * @param sampleRate the number of initializations per measured initial value
+   */
+  public static void setThreadLocalSampleRate(final int sampleRate) {
+    FelineRuntime.setThreadLocalSampleRate(sampleRate);
+  }
+
+  /**
+   * Enables or disables ForkJoinPool compensation for blocking calls (disabled by default).
+   *
+   * <p>When enabled, a blocking call to {@link Future#get()} on a ForkJoinPool worker thread is
+   * routed through {@link ForkJoinPool#managedBlock}, so that the pool can activate a spare worker
+   * instead of silently losing parallelism. This applies to futures that do not already cooperate
+   * with the pool, for example Guava futures or {@link java.util.concurrent.FutureTask}. {@link
+   * CompletableFuture} and {@link java.util.concurrent.ForkJoinTask} already do this internally and
+   * are left as is.
+   *
+   * <p>A timed call to {@link Future#get(long, TimeUnit)} is compensated until the future is done
+   * or its timeout elapses, whichever comes first. The original call is then made with a timeout of
+   * 0, so it returns the value or throws a TimeoutException without waiting any longer.
+   *
+   * <p>The blocking call is still reported to consumers, and the on-exit data contains a
+   * "mitigated" field (a Boolean set to true) for calls that were compensated.
+   *
+   * @param enabled true to enable compensation
+   */
+  public static void setForkJoinCompensation(final boolean enabled) {
+    FelineRuntime.setForkJoinCompensation(enabled);
+  }
+
+  /**
+   * Registers a consumer that will be invoked when a ForkJoinPool adds workers to compensate for a
+   * blocked worker, for example when CompletableFuture.join() is called on a ForkJoinPool thread.
+   * Such compensation hides the starvation, but can grow a pool to a large number of threads.
+   *
+   * <p>Consumers are called on the blocked worker thread, after the blocking call completed.
+   * Exceptions thrown by consumers are ignored.
+   *
+   * <p>The consumer receives a map with the following fields: "method" (a String representing the
+   * blocking method call that caused the compensation), "pool" (the ForkJoinPool), "poolSize" (an
+   * Integer with the pool size after the blocking call), "compensatedWorkers" (an Integer with the
+   * number of workers added while the call was blocked). The number of workers is an upper bound,
+   * as workers that the pool added at the same time for other reasons are counted as well.
+   *
+   * @param consumer Consumer to be invoked on compensated blocking calls
+   */
+  public static void addForkJoinCompensationConsumer(final Consumer<Map<String, Object>> consumer) {
+    FelineRuntime.addForkJoinCompensationConsumer(consumer);
+  }
+
+  public static boolean removeForkJoinCompensationConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return FelineRuntime.removeForkJoinCompensationConsumer(consumer);
+  }
+
+  /**
+   * Enables a detector that is disabled by default.
+   *
+   * @param detector detector to enable
+   */
+  public static void enableDetector(final Detector detector) {
+    if (detector == Detector.THREAD_LOCAL_MAPS) {
+      ThreadLocalMapSampler.resolveSuppliers();
+    }
+    FelineRuntime.enableDetectors(detector.mask);
+  }
+
+  /**
+   * Disables a detector.
+   *
+   * @param detector detector to disable
+   */
+  public static void disableDetector(final Detector detector) {
+    FelineRuntime.disableDetectors(detector.mask);
+  }
+
+  public static boolean isDetectorEnabled(final Detector detector) {
+    return FelineRuntime.isDetectorEnabled(detector.mask);
+  }
+
+  /**
+   * Registers a consumer that will be invoked when an async CompletableFuture task is submitted
+   * without an explicit executor, e.g. by {@link CompletableFuture#supplyAsync(Supplier)} or {@link
+   * CompletableFuture#thenApplyAsync(Function)}. Such tasks run on the default executor of
+   * CompletableFuture, which is {@link ForkJoinPool#commonPool()} unless its parallelism is less
+   * than two.
+   *
+   * <p>This requires {@link Detector#COMMON_POOL_ASYNC} to be enabled.
+   *
+   * <p>Consumers are called on the submitting thread. Exceptions thrown by consumers are ignored.
+   *
+   * <p>The consumer receives a map with the following fields: "method" (a String representing the
+   * submitting method), "future" (the CompletableFuture that the task completes)
+   *
+   * @param consumer Consumer to be invoked on each submission
+   */
+  public static void addCommonPoolSubmissionConsumer(final Consumer<Map<String, Object>> consumer) {
+    FelineRuntime.addCommonPoolSubmissionConsumer(consumer);
+  }
+
+  public static boolean removeCommonPoolSubmissionConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return FelineRuntime.removeCommonPoolSubmissionConsumer(consumer);
+  }
+
+  /**
+   * Registers a consumer that will be invoked when an async CompletableFuture task that was
+   * submitted without an explicit executor has run.
+   *
+   * <p>This requires {@link Detector#COMMON_POOL_ASYNC} to be enabled.
+   *
+   * <p>Consumers are called on the thread that ran the task, or on the submitting thread if the
+   * task finished before it was submitted. Exceptions thrown by consumers are ignored.
+   *
+   * <p>The consumer receives a map with the following fields: "method" (a String representing the
+   * submitting method), "future" (the CompletableFuture that the task completes), "runTimeNanos" (a
+   * Long representing how long the task ran, in nanoseconds)
+   *
+   * @param consumer Consumer to be invoked after each task has run
+   */
+  public static void addCommonPoolExecutionConsumer(final Consumer<Map<String, Object>> consumer) {
+    FelineRuntime.addCommonPoolExecutionConsumer(consumer);
+  }
+
+  public static boolean removeCommonPoolExecutionConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return FelineRuntime.removeCommonPoolExecutionConsumer(consumer);
+  }
+
+  /**
+   * Registers a consumer that will be invoked when a dependent-stage callback of a
+   * CompletableFuture, such as the function passed to thenApply or whenComplete, runs inline on the
+   * thread that completed the future for longer than the threshold. That thread is often a network
+   * I/O thread, where a slow callback is as harmful as a blocking call.
+   *
+   * <p>This requires {@link Detector#SLOW_CALLBACKS} to be enabled. Callbacks are only timed on
+   * threads whose role does not ignore blocking calls, see {@link #setThreadRoleAction}. The run
+   * time of a callback does not include the callbacks of the stages that depend on it, which are
+   * reported separately.
+   *
+   * <p>Consumers are called on the thread that ran the callback. Exceptions thrown by consumers are
+   * ignored.
+   *
+   * <p>The consumer receives a map with the following fields: "stage" (a String with the class name
+   * of the stage, e.g. java.util.concurrent.CompletableFuture$UniApply), "callback" (a String with
+   * the class name of the callback, which for lambdas identifies the class that registered it),
+   * "thread" (a String with the name of the thread that ran the callback), "runTimeNanos" (a Long
+   * representing how long the callback ran, in nanoseconds)
+   *
+   * @param consumer Consumer to be invoked on each slow callback
+   */
+  public static void addSlowCallbackConsumer(final Consumer<Map<String, Object>> consumer) {
+    FelineRuntime.addSlowCallbackConsumer(consumer);
+  }
+
+  public static boolean removeSlowCallbackConsumer(final Consumer<Map<String, Object>> consumer) {
+    return FelineRuntime.removeSlowCallbackConsumer(consumer);
+  }
+
+  /**
+   * Sets how long a dependent-stage callback may run inline before it is reported as slow. The
+   * default is 10 milliseconds.
+   *
+   * @param threshold the threshold
+   */
+  public static void setSlowCallbackThreshold(final Duration threshold) {
+    FelineRuntime.setSlowCallbackThresholdNanos(threshold.toNanos());
+  }
+
+  /**
+   * Registers a consumer that will be invoked when a virtual thread parks while it is pinned to its
+   * carrier thread, e.g. because it blocks while holding a monitor. A pinned virtual thread blocks
+   * its carrier, which starves the pool of carrier threads that all virtual threads share.
+   *
+   * <p>This requires {@link Detector#VIRTUAL_THREADS} to be enabled, and Java 21 or later.
+   *
+   * <p>Consumers are called on the virtual thread, after it was unparked. Exceptions thrown by
+   * consumers are ignored.
+   *
+   * <p>The consumer receives a map with the following fields: "method" (a String representing the
+   * blocking call the thread was inside, or null if it was not inside a reported blocking call),
+   * "thread" (a String with the name of the virtual thread), "pinnedTimeNanos" (a Long representing
+   * how long the carrier thread was blocked, in nanoseconds)
+   *
+   * @param consumer Consumer to be invoked on each pinned park
+   */
+  public static void addPinnedVirtualThreadConsumer(final Consumer<Map<String, Object>> consumer) {
+    FelineRuntime.addPinnedVirtualThreadConsumer(consumer);
+  }
+
+  public static boolean removePinnedVirtualThreadConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return FelineRuntime.removePinnedVirtualThreadConsumer(consumer);
+  }
+
+  /**
+   * Returns statistics of the pool of carrier threads that run virtual threads, which is empty
+   * before Java 21, or if no virtual thread has been created yet.
+   *
+   * <p>The map has the following fields: "parallelism" (an Integer with the target number of
+   * carrier threads), "poolSize" (an Integer with the current number of carrier threads, including
+   * those added to compensate for pinned virtual threads), "activeThreads" and "runningThreads"
+   * (Integers with the number of carrier threads that run virtual threads, and of those that are
+   * not blocked), "queuedTasks" (a Long with the number of virtual threads waiting for a carrier)
+   *
+   * @return the statistics of the carrier pool
+   */
+  public static Map<String, Object> getCarrierPoolStats() {
+    return FelineRuntime.carrierPoolStats();
+  }
+
+  /**
+   * Assigns a role to threads whose name matches the pattern. Roles are assigned once per thread,
+   * the first time it makes a blocking call, from the first matching rule.
+   *
+   * @param namePattern pattern that must match the entire thread name
+   * @param role the role to assign
+   */
+  public static void assignThreadRole(final Pattern namePattern, final ThreadRole role) {
+    FelinePolicy.addRule(thread -> namePattern.matcher(thread.getName()).matches(), role.id);
+  }
+
+  /**
+   * Assigns a role to threads in the thread group, or in any of its subgroups. Roles are assigned
+   * once per thread, the first time it makes a blocking call, from the first matching rule.
+   *
+   * @param group the thread group
+   * @param role the role to assign
+   */
+  public static void assignThreadRole(final ThreadGroup group, final ThreadRole role) {
+    FelinePolicy.addRule(
+        thread -> {
+          final ThreadGroup threadGroup = thread.getThreadGroup();
+          return threadGroup != null && group.parentOf(threadGroup);
+        },
+        role.id);
+  }
+
+  /**
+   * Returns a thread factory that assigns a role to every thread created by the given factory. This
+   * takes precedence over roles assigned by name or thread group.
+   *
+   * @param factory the thread factory to wrap
+   * @param role the role to assign
+   * @return a thread factory creating threads with the role
+   */
+  public static ThreadFactory withThreadRole(final ThreadFactory factory, final ThreadRole role) {
+    final int id = role.id;
+    return runnable ->
+        factory.newThread(
+            () -> {
+              FelinePolicy.setCurrentThreadRole(id);
+              runnable.run();
+            });
+  }
+
+  /**
+   * Assigns a role to the current thread. This takes precedence over roles assigned by name or
+   * thread group.
+   *
+   * @param role the role to assign
+   */
+  public static void setCurrentThreadRole(final ThreadRole role) {
+    FelinePolicy.setCurrentThreadRole(role.id);
+  }
+
+  public static ThreadRole getCurrentThreadRole() {
+    return ThreadRole.of(FelinePolicy.getCurrentThreadRole());
+  }
+
+  /**
+   * Sets what happens on a blocking call made on a thread with the given role. By default, blocking
+   * calls are ignored on threads with the {@link ThreadRole#BLOCKING_ALLOWED} role, and counted on
+   * all others.
+   *
+   * <p>The action also applies to the slow callbacks reported by {@link Detector#SLOW_CALLBACKS},
+   * which are not reported for threads where blocking calls are ignored.
+   *
+   * @param role the thread role
+   * @param action the action to take
+   */
+  public static void setThreadRoleAction(final ThreadRole role, final BlockingAction action) {
+    FelinePolicy.setAction(role.id, action.id);
+  }
+
+  public static BlockingAction getThreadRoleAction(final ThreadRole role) {
+    return BlockingAction.of(FelinePolicy.getAction(role.id));
+  }
+
+  /**
+   * Returns the number of blocking calls that were reported on threads with the given role.
+   *
+   * @param role the thread role
+   * @return the number of reported blocking calls
+   */
+  public static long getBlockingCallCount(final ThreadRole role) {
+    return FelinePolicy.getCount(role.id);
+  }
+
+  /**
+   * Removes all thread role rules and configured actions. Roles that were cached for existing
+   * threads, or set explicitly, are forgotten as well.
+   */
+  public static void resetThreadRoles() {
+    FelinePolicy.reset();
+  }
+
+  /**
+   * Returns what the agent itself costs, to tell its overhead apart from that of the application.
+   *
+   * <p>The map has the following fields: "installNanos" (the time it took to install the agent,
+   * excluding retransformation when it is paced, as that then happens on a daemon thread),
+   * "bootstrapInjectionNanos" (the part of that spent injecting the runtime into the bootstrap
+   * class loader), "bootstrapInjectedClasses" (the number of classes injected, which is 0 if they
+   * already were on the bootstrap class path), "bootstrapInjectionInMemory" (1 if the classes were
+   * defined in memory, or 0 if they were appended to the bootstrap class path as a jar),
+   * "classLoads" (the number of classes the agent matched, or transformed, as they were loaded or
+   * retransformed), "classLoadNanos" (the time spent doing so), "transformedClasses" (the number of
+   * classes that were transformed), "retransformedClasses", "retransformationBatches" and
+   * "retransformationFailures" (the number of classes that were loaded before the agent was
+   * installed, or before allowances that apply to them were changed, and were retransformed, the
+   * number of batches that took, and the number of classes that could not be retransformed) and
+   * "retransformationNanos" (the time that took, including pauses between batches)
+   *
+   * <p>Which classes are matched can be narrowed with the "feline.include" and "feline.exclude"
+   * system properties, each a comma-separated list of class name prefixes. JDK classes are always
+   * matched.
+   *
+   * @return the statistics of the agent
+   */
+  public static Map<String, Long> getAgentStats() {
+    return FelineAgentStats.stats();
+  }
+
+  /**
+   * Installs Feline, unless it is already installed. Any other method of this class also installs
+   * it, so this is only needed before code that uses the Feline runtime directly, as the runtime
+   * must be injected into the bootstrap class loader before it is first used.
+   */
+  public static void install() {
+    // installed by the static initializer
+  }
+
   static {
-    final Instrumentation instrumentation = ByteBuddyAgent.install();
+    final long installStart = System.nanoTime();
+    final Instrumentation instrumentation = FelineAgent.instrumentation();
 
+    final long injectionStart = System.nanoTime();
     try {
-      BytecodeUtils.injectBootstrapClasses(
-          instrumentation, Feline.class.getName().replace('.', '/') + "Runtime");
+      BytecodeUtils.injectBootstrapClasses(instrumentation, BytecodeUtils.RUNTIME_CLASSES);
     } catch (IOException e) {
       throw new RuntimeException("Failed to inject Feline runtime", e);
     }
+    FelineAgentStats.setBootstrapInjectionNanos(System.nanoTime() - injectionStart);
+    FelineRuntime.setObjectSizer(instrumentation::getObjectSize);
+
+    final FelineConfig config = FelineAgent.config();
+    final AgentBuilder agentBuilder = agentBuilder(config);
+    if (config.retransformPauseMillis() > 0) {
+      // pausing between batches in this static initializer would keep every other thread that uses
+      // Feline waiting until all batches are done, so the agent is installed on a daemon thread,
+      // and instrumentation takes effect shortly after Feline is initialized
+      final Thread installer =
+          new Thread(() -> install(agentBuilder, instrumentation), "feline-installer");
+      installer.setDaemon(true);
+      installer.start();
+    } else {
+      install(agentBuilder, instrumentation);
+    }
+    FelineAgentStats.setInstallNanos(System.nanoTime() - installStart);
+    FelineCrac.register();
+  }
 
-    new AgentBuilder.Default()
-        .with(new ThreadLocalCircularityLock())
+  private static AgentBuilder agentBuilder(final FelineConfig config) {
+    return new AgentBuilder.Default()
+        .with(new FelineCircularityLock())
+        .with(new WeakTypePoolCache())
         .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+        // retransform already loaded classes in batches, as each batch stops the application
+        .with(
+            AgentBuilder.RedefinitionStrategy.BatchAllocator.ForFixedSize.ofSize(
+                config.retransformBatchSize()))
+        // classes that are loaded while retransforming, e.g. by the verifier, are otherwise missed
+        .with(AgentBuilder.RedefinitionStrategy.DiscoveryStrategy.Reiterating.INSTANCE)
+        .with(
+            config.retransformPauseMillis() > 0
+                ? AgentBuilder.RedefinitionStrategy.Listener.Pausing.of(
+                    config.retransformPauseMillis(), TimeUnit.MILLISECONDS)
+                : AgentBuilder.RedefinitionStrategy.Listener.NoOp.INSTANCE)
+        // retry the classes of a failed batch in smaller batches, so one class can not fail others
+        .with(AgentBuilder.RedefinitionStrategy.Listener.BatchReallocator.splitting())
+        .with(new FelineAgentStats.RetransformationListener())
         .with(AgentBuilder.TypeStrategy.Default.DECORATE)
         .with(AgentBuilder.InitializationStrategy.NoOp.INSTANCE)
         // note: for debugging, it may help to remove .withErrorsOnly()
         .with(AgentBuilder.Listener.StreamWriting.toSystemError().withErrorsOnly())
+        .with(new FelineAgentStats.Listener())
 
-        // Do not ignore JDK classes
-        .ignore(ElementMatchers.nameStartsWith("com.intellij.rt."))
+        // Do not ignore JDK classes, but reject generated classes and out of scope classes by name
+        .ignore(config.scope().ignored())
+
+        // instrument synchronizers (not terminal, as some of these are also matched below)
+        .type(ElementMatchers.failSafe(ElementMatchers.is(CountDownLatch.class)))
+        .transform(FelineSynchronizerTransformer.forCountDownLatch())
+        .type(ElementMatchers.failSafe(ElementMatchers.is(Semaphore.class)))
+        .transform(FelineSynchronizerTransformer.forSemaphore())
+        .transform(FelineSynchronizerTransformer.forSemaphorePermits())
+        .type(ElementMatchers.failSafe(ElementMatchers.isSubTypeOf(BlockingQueue.class)))
+        .transform(FelineSynchronizerTransformer.forBlockingQueueTake())
+        .transform(FelineSynchronizerTransformer.forBlockingQueuePut())
+        .type(ElementMatchers.failSafe(ElementMatchers.is(CyclicBarrier.class)))
+        .transform(FelineSynchronizerTransformer.forCyclicBarrier())
+        .type(ElementMatchers.failSafe(ElementMatchers.is(Thread.class)))
+        .transform(FelineSynchronizerTransformer.forThread())
+        .transform(FelineSleepTransformer.forSleep())
+        .transform(FelineSleepTransformer.forSleepNanos())
+        .transform(FelineSleepTransformer.forSleepDuration())
+        .type(ElementMatchers.failSafe(ElementMatchers.is(LockSupport.class)))
+        .transform(FelineSleepTransformer.forPark())
+        .transform(FelineSleepTransformer.forParkBlocker())
+        .transform(FelineSleepTransformer.forParkNanos())
+        .transform(FelineSleepTransformer.forParkNanosBlocker())
+        .transform(FelineSleepTransformer.forParkUntil())
+        .transform(FelineSleepTransformer.forParkUntilBlocker())
+        .type(ElementMatchers.failSafe(ElementMatchers.isSubTypeOf(ExecutorService.class)))
+        .transform(FelineSynchronizerTransformer.forExecutorServiceInvokeAll())
+        .transform(FelineSynchronizerTransformer.forExecutorServiceAwaitTermination())
+        .type(ElementMatchers.failSafe(ElementMatchers.is(ThreadPoolExecutor.class)))
+        .transform(FelineSynchronizerTransformer.forThreadPoolExecutor())
+        .type(ElementMatchers.failSafe(ElementMatchers.is(ForkJoinPool.class)))
+        .transform(FelineSynchronizerTransformer.forForkJoinPool())
+
+        // track the locks held by each thread
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.namedOneOf(
+                    "java.util.concurrent.locks.ReentrantLock",
+                    "java.util.concurrent.locks.ReentrantReadWriteLock$ReadLock",
+                    "java.util.concurrent.locks.ReentrantReadWriteLock$WriteLock")))
+        .transform(FelineLockTransformer.forLock())
+        .transform(FelineLockTransformer.forTryLock())
+        .transform(FelineLockTransformer.forUnlock())
+
+        // instrument blocking I/O (not terminal, as channels are also matched below)
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.namedOneOf(
+                    "java.io.FileInputStream",
+                    "java.io.FileOutputStream",
+                    "java.io.RandomAccessFile")))
+        .transform(FelineIoTransformer.forFile())
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.<TypeDescription>isSubTypeOf(FileChannel.class)
+                    .and(ElementMatchers.not(ElementMatchers.isAbstract()))))
+        .transform(FelineIoTransformer.forFileChannel())
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.<TypeDescription>isSubTypeOf(SocketChannel.class)
+                    .and(ElementMatchers.not(ElementMatchers.isAbstract()))))
+        .transform(FelineIoTransformer.forSocketChannel())
+        .type(ElementMatchers.failSafe(ElementMatchers.named("java.nio.file.Files")))
+        .transform(FelineIoTransformer.forFiles())
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.<TypeDescription>nameStartsWith("jdk.internal.net.http.")
+                    .and(
+                        ElementMatchers.hasSuperType(
+                            ElementMatchers.named("java.net.http.HttpClient")))))
+        .transform(FelineIoTransformer.forHttpClient())
+
+        // instrument virtual threads (Java 21+)
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.<TypeDescription>named("java.lang.VirtualThread")
+                    .and(ElementMatchers.declaresField(ElementMatchers.named("scheduler")))))
+        .transform(FelineVirtualThreadTransformer.forPinnedPark())
+        .transform(FelineVirtualThreadTransformer.forConstructor())
+
+        // track workers added by ForkJoinPool.managedBlock
+        .type(ElementMatchers.failSafe(ElementMatchers.is(ForkJoinPool.class)))
+        .transform(FelineTransformer.forForkJoinPool())
+        .asTerminalTransformation()
 
         // instrument CompletableFuture
         .type(ElementMatchers.failSafe(ElementMatchers.is(CompletableFuture.class)))
         .transform(FelineTransformer.forCompletableFuture())
+        .transform(FelineTransformer.forTimedGet())
+        .transform(FelineCommonPoolTransformer.forCompletableFuture())
         .asTerminalTransformation()
 
+        // time the async tasks of CompletableFuture (not terminal, as these are also Futures)
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.namedOneOf(
+                    "java.util.concurrent.CompletableFuture$AsyncSupply",
+                    "java.util.concurrent.CompletableFuture$AsyncRun")))
+        .transform(FelineCommonPoolTransformer.forTaskCreation())
+        .transform(FelineCommonPoolTransformer.forAsyncTask())
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.<TypeDescription>nameStartsWith(
+                        "java.util.concurrent.CompletableFuture$")
+                    .and(
+                        ElementMatchers.hasSuperType(
+                            ElementMatchers.named(
+                                "java.util.concurrent.CompletableFuture$UniCompletion")))))
+        .transform(FelineCommonPoolTransformer.forTaskCreation())
+        .transform(FelineCommonPoolTransformer.forCompletion())
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.<TypeDescription>nameStartsWith(
+                        "java.util.concurrent.CompletableFuture$")
+                    .and(ElementMatchers.declaresField(ElementMatchers.named("fn")))
+                    .and(
+                        ElementMatchers.hasSuperType(
+                            ElementMatchers.named(
+                                "java.util.concurrent.CompletableFuture$UniCompletion")))))
+        .transform(FelineCallbackTransformer.forCompletion())
+
+        // instrument ForkJoinTask.join and friends (not terminal, as it is also a Future)
+        .type(ElementMatchers.failSafe(ElementMatchers.is(ForkJoinTask.class)))
+        .transform(FelineTransformer.forForkJoinTask())
+        .transform(FelineTransformer.forForkJoinTaskInvokeAll())
+        .transform(FelineTransformer.forForkJoinTaskWaits())
+
         // instrument all subtypes of Future, except for CompletableFuture (as the above
-        // transformation is terminal)
-        .type(ElementMatchers.failSafe(ElementMatchers.isSubTypeOf(Future.class)))
+        // transformation is terminal), and except for those instrumented at build time
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.<TypeDescription>isSubTypeOf(Future.class)
+                    .and(FUTURE_NOT_INSTRUMENTED)))
         .transform(FelineTransformer.forFuture())
+        .transform(FelineTransformer.forTimedGet())
         .asTerminalTransformation()
 
-        // Instrument allowed/disallowed methods
+        // Instrument allowed/disallowed methods, including those of classes instrumented at build
+        // time, as allowances can be added at runtime
         .type(ElementMatchers.failSafe(allowancesTransformer))
         .transform(allowancesTransformer)
         .asTerminalTransformation()
 
         // instrument ThreadLocal
-        .type(ElementMatchers.failSafe(ElementMatchers.isSubTypeOf(ThreadLocal.class)))
+        // (except for the one caching thread roles, as it is used while reporting blocking calls)
+        .type(
+            ElementMatchers.failSafe(
+                ElementMatchers.<TypeDescription>isSubTypeOf(ThreadLocal.class)
+                    .and(THREAD_LOCAL_NOT_INSTRUMENTED)
+                    .and(
+                        ElementMatchers.not(
+                            ElementMatchers.named("com.spotify.feline.FelinePolicy$RoleCache")))))
         .transform(FelineThreadLocalTransformer.forThreadLocal())
-        .asTerminalTransformation()
-        .installOn(instrumentation);
+        .asTerminalTransformation();
+  }
+
+  private static void install(
+      final AgentBuilder agentBuilder, final Instrumentation instrumentation) {
+    agentBuilder.installOn(instrumentation);
+
+    // before Java 19, Thread.sleep(long) is native and can only be wrapped by renaming it, which
+    // requires rebasing Thread rather than decorating it
+    if (FelineSleepTransformer.canWrapNativeSleep(instrumentation)) {
+      new AgentBuilder.Default()
+          .with(new FelineCircularityLock())
+          .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+          .with(AgentBuilder.TypeStrategy.Default.REBASE)
+          .with(AgentBuilder.InitializationStrategy.NoOp.INSTANCE)
+          .with(AgentBuilder.Listener.StreamWriting.toSystemError().withErrorsOnly())
+          .enableNativeMethodPrefix(FelineSleepTransformer.NATIVE_METHOD_PREFIX)
+          .ignore(ElementMatchers.none())
+          .type(ElementMatchers.is(Thread.class))
+          .transform(FelineSleepTransformer.forNativeSleep())
+          .installOn(instrumentation);
+    }
   }
 
   /**
-   * This is equivalent to AgentBuilder.CircularityLock.Default except it avoids using ThreadLocal.
-   *
-   * <p>We can not use ThreadLocal since we are also instrumenting it.
+   * Caches the type descriptions that matching resolves, e.g. the super types of classes matched
+   * with isSubTypeOf, per class loader. Class loaders are weakly referenced, so that the cache does
+   * not keep them from being unloaded, and each cache is softly referenced, so that the
+   * descriptions of all classes ever matched can be reclaimed when memory runs low.
    */
-  private static class ThreadLocalCircularityLock implements AgentBuilder.CircularityLock {
-    private final Set<Long> threadLocal = ConcurrentHashMap.newKeySet();
+  private static class WeakTypePoolCache extends AgentBuilder.PoolStrategy.WithTypePoolCache {
+    private final Map<ClassLoader, TypePool.CacheProvider> cacheProviders =
+        Collections.synchronizedMap(new WeakHashMap<>());
 
-    @Override
-    public boolean acquire() {
-      return threadLocal.add(Thread.currentThread().getId());
+    WeakTypePoolCache() {
+      super(TypePool.Default.ReaderMode.FAST);
     }
 
     @Override
-    public void release() {
-      threadLocal.remove(Thread.currentThread().getId());
+    protected TypePool.CacheProvider locate(final ClassLoader classLoader) {
+      return cacheProviders.computeIfAbsent(
+          classLoader, ignored -> new TypePool.CacheProvider.Simple.UsingSoftReference());
     }
   }
 }
@@ -0,0 +1,121 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Paths;
+import net.bytebuddy.agent.ByteBuddyAgent;
+
+/**
+ * Entry point for running Feline as a Java agent, e.g. {@code
+ * -javaagent:futuristic-feline.jar=detectors=BLOCKING_IO,HELD_LOCKS;include=com.example.}
+ *
+ * <p>When started with the JVM, classes are instrumented as they are first loaded, instead of being
+ * retransformed when {@link Feline} is first used, and the attach mechanism is not needed. Without
+ * the agent, Feline attaches itself as before.
+ *
+ * <p>The agent arguments are options separated by ";", see {@link FelineConfig}.
+ */
+public final class FelineAgent {
+
+  private static Instrumentation instrumentation;
+  private static volatile FelineConfig config = FelineConfig.empty();
+
+  private FelineAgent() {}
+
+  public static void premain(final String agentArgs, final Instrumentation instrumentation)
+      throws IOException {
+    start(agentArgs, instrumentation);
+  }
+
+  public static void agentmain(final String agentArgs, final Instrumentation instrumentation)
+      throws IOException {
+    start(agentArgs, instrumentation);
+  }
+
+  private static void start(final String agentArgs, final Instrumentation instrumentation)
+      throws IOException {
+    final FelineConfig config = FelineConfig.parse(agentArgs);
+    synchronized (FelineAgent.class) {
+      if (FelineAgent.instrumentation == null) {
+        FelineAgent.instrumentation = instrumentation;
+        FelineAgent.config = config;
+      }
+    }
+    // installs the agent, unless Feline already attached itself
+    try {
+      Class.forName(Feline.class.getName(), true, FelineAgent.class.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+    config.apply();
+  }
+
+  /**
+   * Writes the runtime that Feline injects into the bootstrap class loader to a jar in a directory,
+   * and prints the path of the jar. With the jar on the bootstrap class path (-Xbootclasspath/a),
+   * nothing is injected at runtime, and the runtime can be archived with class data sharing.
+   *
+   * @param args the directory to write the jar to
+   */
+  public static void main(final String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: " + FelineAgent.class.getName() + " <directory>");
+      System.exit(1);
+    }
+    System.out.println(
+        BytecodeUtils.cachedJar(
+            Paths.get(args[0]), BytecodeUtils.readClasses(BytecodeUtils.RUNTIME_CLASSES)));
+  }
+
+  /**
+   * Returns the instrumentation the agent was started with, or attaches to the running JVM to get
+   * one if it was not.
+   */
+  static synchronized Instrumentation instrumentation() {
+    if (instrumentation == null) {
+      instrumentation = ByteBuddyAgent.install();
+    }
+    return instrumentation;
+  }
+
+  /** Returns the configuration the agent was started with, which is empty if it was not. */
+  static FelineConfig config() {
+    return config;
+  }
+}
@@ -0,0 +1,178 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.utility.JavaModule;
+
+/** What the agent costs: the time it takes to install, and the time it adds to class loading. */
+final class FelineAgentStats {
+
+  private static final LongAdder CLASS_LOADS = new LongAdder();
+  private static final LongAdder CLASS_LOAD_NANOS = new LongAdder();
+  private static final LongAdder TRANSFORMED_CLASSES = new LongAdder();
+  private static final LongAdder RETRANSFORMED_CLASSES = new LongAdder();
+  private static final LongAdder RETRANSFORMATION_BATCHES = new LongAdder();
+  private static final LongAdder RETRANSFORMATION_FAILURES = new LongAdder();
+  private static final LongAdder RETRANSFORMATION_NANOS = new LongAdder();
+
+  private static volatile long bootstrapInjectionNanos;
+  private static volatile long bootstrapInjectedClasses;
+  private static volatile boolean bootstrapInjectionInMemory;
+  private static volatile long installNanos;
+
+  private FelineAgentStats() {}
+
+  static void acceptClassLoad(final long nanos) {
+    CLASS_LOADS.increment();
+    CLASS_LOAD_NANOS.add(nanos);
+  }
+
+  /** Counts classes that are retransformed after the agent is installed. */
+  static void acceptRetransformation(
+      final int classes, final int batches, final int failures, final long nanos) {
+    RETRANSFORMED_CLASSES.add(classes);
+    RETRANSFORMATION_BATCHES.add(batches);
+    RETRANSFORMATION_FAILURES.add(failures);
+    RETRANSFORMATION_NANOS.add(nanos);
+  }
+
+  static void acceptBootstrapInjection(final int classes, final boolean inMemory) {
+    bootstrapInjectedClasses = classes;
+    bootstrapInjectionInMemory = inMemory;
+  }
+
+  static void setBootstrapInjectionNanos(final long nanos) {
+    bootstrapInjectionNanos = nanos;
+  }
+
+  static void setInstallNanos(final long nanos) {
+    installNanos = nanos;
+  }
+
+  static Map<String, Long> stats() {
+    final Map<String, Long> stats = new HashMap<>();
+    stats.put("bootstrapInjectionNanos", bootstrapInjectionNanos);
+    stats.put("bootstrapInjectedClasses", bootstrapInjectedClasses);
+    stats.put("bootstrapInjectionInMemory", bootstrapInjectionInMemory ? 1L : 0L);
+    stats.put("installNanos", installNanos);
+    stats.put("classLoads", CLASS_LOADS.sum());
+    stats.put("classLoadNanos", CLASS_LOAD_NANOS.sum());
+    stats.put("transformedClasses", TRANSFORMED_CLASSES.sum());
+    stats.put("retransformedClasses", RETRANSFORMED_CLASSES.sum());
+    stats.put("retransformationBatches", RETRANSFORMATION_BATCHES.sum());
+    stats.put("retransformationFailures", RETRANSFORMATION_FAILURES.sum());
+    stats.put("retransformationNanos", RETRANSFORMATION_NANOS.sum());
+    return stats;
+  }
+
+  /** Counts the classes that are transformed, i.e. that matched at least one rule. */
+  static class Listener extends AgentBuilder.Listener.Adapter {
+
+    @Override
+    public void onTransformation(
+        final TypeDescription typeDescription,
+        final ClassLoader classLoader,
+        final JavaModule module,
+        final boolean loaded,
+        final DynamicType dynamicType) {
+      TRANSFORMED_CLASSES.increment();
+    }
+  }
+
+  /**
+   * Counts the already loaded classes that are retransformed when the agent is installed, and the
+   * time that takes, including any pauses between batches. A failed batch is retried in smaller
+   * batches, so only classes that fail on their own are counted as failures.
+   */
+  static class RetransformationListener extends AgentBuilder.RedefinitionStrategy.Listener.Adapter {
+
+    private long startTime;
+    private List<Class<?>> batch;
+    private boolean failed;
+
+    @Override
+    public void onBatch(final int index, final List<Class<?>> batch, final List<Class<?>> types) {
+      if (startTime == 0) {
+        startTime = System.nanoTime();
+      }
+      completeBatch();
+      this.batch = batch;
+      RETRANSFORMATION_BATCHES.increment();
+    }
+
+    @Override
+    public Iterable<? extends List<Class<?>>> onError(
+        final int index,
+        final List<Class<?>> batch,
+        final Throwable throwable,
+        final List<Class<?>> types) {
+      failed = true;
+      return super.onError(index, batch, throwable, types);
+    }
+
+    @Override
+    public void onComplete(
+        final int amount,
+        final List<Class<?>> types,
+        final Map<List<Class<?>>, Throwable> failures) {
+      completeBatch();
+      if (startTime != 0) {
+        RETRANSFORMATION_NANOS.add(System.nanoTime() - startTime);
+        startTime = 0;
+      }
+    }
+
+    private void completeBatch() {
+      if (batch != null) {
+        if (!failed) {
+          RETRANSFORMED_CLASSES.add(batch.size());
+        } else if (batch.size() == 1) {
+          RETRANSFORMATION_FAILURES.increment();
+        }
+      }
+      batch = null;
+      failed = false;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static net.bytebuddy.matcher.ElementMatchers.failSafe;
+import static net.bytebuddy.matcher.ElementMatchers.isAnnotatedWith;
+import static net.bytebuddy.matcher.ElementMatchers.isInterface;
+import static net.bytebuddy.matcher.ElementMatchers.isSubTypeOf;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+
+import com.spotify.feline.FelineInstrumented.Transformation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.build.Plugin;
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.enumeration.EnumerationDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.matcher.ElementMatcher;
+
+/**
+ * Applies the transformations that the agent applies to application classes at build time instead:
+ * the instrumentation of Future implementations, of methods that are allowed to block, and of
+ * ThreadLocal subclasses. Instrumented classes are annotated with {@link FelineInstrumented}, which
+ * records the transformation that was applied, so that the agent does not apply it again. The agent
+ * still applies allowances to instrumented classes, as allowances can be added at runtime.
+ *
+ * <p>Instrumented classes call into the Feline runtime, which the agent injects into the bootstrap
+ * class loader. The agent should be started with the JVM (see {@link FelineAgent}), so that it is
+ * injected before any instrumented class runs.
+ *
+ * <p>This can be used by Byte Buddy's own build plugins, or through futuristic-feline-maven-plugin.
+ */
+public class FelineBuildPlugin implements Plugin {
+
+  private final AllowancesTransformer allowancesTransformer = new AllowancesTransformer();
+
+  private final ElementMatcher<TypeDescription> future =
+      failSafe(isSubTypeOf(Future.class).and(not(isInterface())));
+  private final ElementMatcher<TypeDescription> threadLocal =
+      failSafe(isSubTypeOf(ThreadLocal.class));
+
+  public FelineBuildPlugin() {
+    this(Collections.emptyList());
+  }
+
+  /**
+   * @param allowances methods to allow blocking calls inside, as patterns like
+   *     "com.example.Cache#load", see {@link Feline#allowBlockingCalls(String...)}
+   */
+  public FelineBuildPlugin(final List<String> allowances) {
+    final List<Allowance> parsed = new ArrayList<>();
+    for (final String allowance : allowances) {
+      parsed.add(Allowance.parse(allowance));
+    }
+    allowancesTransformer.allow(parsed);
+  }
+
+  @Override
+  public boolean matches(final TypeDescription typeDescription) {
+    return !isAnnotatedWith(FelineInstrumented.class).matches(typeDescription)
+        && (future.matches(typeDescription)
+            || allowancesTransformer.matches(typeDescription)
+            || threadLocal.matches(typeDescription));
+  }
+
+  @Override
+  public DynamicType.Builder<?> apply(
+      final DynamicType.Builder<?> builder,
+      final TypeDescription typeDescription,
+      final ClassFileLocator classFileLocator) {
+    DynamicType.Builder<?> instrumented;
+    final Transformation transformation;
+    // the first matching of these, like the terminal transformations of the agent
+    if (future.matches(typeDescription)) {
+      instrumented = transform(builder, typeDescription, FelineTransformer.forFuture());
+      instrumented = transform(instrumented, typeDescription, FelineTransformer.forTimedGet());
+      transformation = Transformation.FUTURE;
+    } else if (allowancesTransformer.matches(typeDescription)) {
+      instrumented = transform(builder, typeDescription, allowancesTransformer);
+      transformation = Transformation.ALLOWANCES;
+    } else {
+      instrumented =
+          transform(builder, typeDescription, FelineThreadLocalTransformer.forThreadLocal());
+      transformation = Transformation.THREAD_LOCAL;
+    }
+    return instrumented.annotateType(
+        AnnotationDescription.Builder.ofType(FelineInstrumented.class)
+            .defineEnumerationArray("value", Transformation.class, transformation)
+            .build());
+  }
+
+  /** Matches classes to which the given transformation was applied at build time. */
+  static ElementMatcher.Junction<TypeDescription> isInstrumentedWith(
+      final Transformation transformation) {
+    return new ElementMatcher.Junction.AbstractBase<TypeDescription>() {
+      @Override
+      public boolean matches(final TypeDescription typeDescription) {
+        final AnnotationDescription annotation =
+            typeDescription.getDeclaredAnnotations().ofType(FelineInstrumented.class);
+        if (annotation == null) {
+          return false;
+        }
+        for (final EnumerationDescription applied :
+            annotation.getValue("value").resolve(EnumerationDescription[].class)) {
+          if (applied.getValue().equals(transformation.name())) {
+            return true;
+          }
+        }
+        return false;
+      }
+    };
+  }
+
+  private static DynamicType.Builder<?> transform(
+      final DynamicType.Builder<?> builder,
+      final TypeDescription typeDescription,
+      final AgentBuilder.Transformer transformer) {
+    return transformer.transform(builder, typeDescription, null, null, null);
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,99 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+
+import java.security.ProtectionDomain;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.utility.JavaModule;
+
+/**
+ * Measures the dependent-stage callbacks of CompletableFuture (e.g. the function passed to
+ * thenApply) that run inline on the thread that completes the future.
+ */
+class FelineCallbackTransformer implements AgentBuilder.Transformer {
+
+  public static AgentBuilder.Transformer forCompletion() {
+    return new FelineCallbackTransformer();
+  }
+
+  private FelineCallbackTransformer() {}
+
+  @Override
+  public Builder<?> transform(
+      final Builder<?> builder,
+      final TypeDescription typeDescription,
+      final ClassLoader classLoader,
+      final JavaModule javaModule,
+      final ProtectionDomain protectionDomain) {
+    return builder.visit(
+        Advice.to(CallbackAdvice.class).on(named("tryFire").and(not(isAbstract()))));
+  }
+
+  static class CallbackAdvice {
+
+    @Advice.OnMethodEnter
+    static long onEnter(
+        @Advice.Argument(0) final int mode,
+        @Advice.FieldValue("fn") final Object fn,
+        @Advice.Local("callback") Object callback) {
+      if (mode == FelineCommonPoolTransformer.ASYNC || fn == null) {
+        // runs on the executor of the stage, or has already run
+        return Long.MIN_VALUE;
+      }
+      // the completion clears its fields when it fires, so keep a reference to the callback
+      callback = fn;
+      return FelineRuntime.callbackStart();
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(
+        @Advice.Enter final long startTimeNanos,
+        @Advice.Origin("#t") final String stage,
+        @Advice.Local("callback") final Object callback) {
+      if (startTimeNanos != Long.MIN_VALUE) {
+        FelineRuntime.acceptCallback(stage, callback, startTimeNanos);
+      }
+    }
+  }
+}
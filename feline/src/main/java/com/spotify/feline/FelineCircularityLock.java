@@ -0,0 +1,94 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import net.bytebuddy.agent.builder.AgentBuilder;
+
+/**
+ * This is equivalent to AgentBuilder.CircularityLock.Default except it avoids using ThreadLocal.
+ *
+ * <p>We can not use ThreadLocal since we are also instrumenting it. The lock is taken on every
+ * class load, so it does not allocate: each thread is placed in a slot chosen by its id, and only
+ * threads whose slot is taken by another thread fall back to a set. As the lock is held while a
+ * class is matched and transformed, it also measures the time the agent adds to class loading.
+ */
+class FelineCircularityLock implements AgentBuilder.CircularityLock {
+
+  private static final int SLOTS = 256;
+
+  private final AtomicReferenceArray<Thread> slots = new AtomicReferenceArray<>(SLOTS);
+  private final long[] startTimes = new long[SLOTS];
+  private final Set<Thread> overflow = ConcurrentHashMap.newKeySet();
+
+  @Override
+  public boolean acquire() {
+    final Thread thread = Thread.currentThread();
+    final int slot = slot(thread);
+    final Thread owner = slots.get(slot);
+    if (owner == thread || (!overflow.isEmpty() && overflow.contains(thread))) {
+      // already transforming a class on this thread
+      return false;
+    }
+    if (owner == null && slots.compareAndSet(slot, null, thread)) {
+      // only the thread that holds a slot uses its start time
+      startTimes[slot] = System.nanoTime();
+      return true;
+    }
+    return overflow.add(thread);
+  }
+
+  @Override
+  public void release() {
+    final Thread thread = Thread.currentThread();
+    final int slot = slot(thread);
+    if (slots.get(slot) == thread) {
+      FelineAgentStats.acceptClassLoad(System.nanoTime() - startTimes[slot]);
+      slots.set(slot, null);
+    } else {
+      // not timed, as this is rare
+      FelineAgentStats.acceptClassLoad(0);
+      overflow.remove(thread);
+    }
+  }
+
+  private static int slot(final Thread thread) {
+    return (int) (thread.getId() & (SLOTS - 1));
+  }
+}
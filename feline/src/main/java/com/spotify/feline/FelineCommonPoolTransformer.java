@@ -0,0 +1,191 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static net.bytebuddy.matcher.ElementMatchers.hasParameters;
+import static net.bytebuddy.matcher.ElementMatchers.hasType;
+import static net.bytebuddy.matcher.ElementMatchers.is;
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract;
+import static net.bytebuddy.matcher.ElementMatchers.isConstructor;
+import static net.bytebuddy.matcher.ElementMatchers.isDeclaredBy;
+import static net.bytebuddy.matcher.ElementMatchers.isPublic;
+import static net.bytebuddy.matcher.ElementMatchers.nameEndsWith;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.namedOneOf;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
+import static net.bytebuddy.matcher.ElementMatchers.whereNone;
+
+import java.security.ProtectionDomain;
+import java.util.concurrent.Executor;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.utility.JavaModule;
+
+/**
+ * Detects async CompletableFuture tasks that are submitted without an explicit executor, and thus
+ * run on the default executor of CompletableFuture (typically ForkJoinPool.commonPool()).
+ */
+class FelineCommonPoolTransformer implements AgentBuilder.Transformer {
+
+  // Value of CompletableFuture.ASYNC, the mode of tryFire() when a stage runs on its executor
+  static final int ASYNC = 1;
+
+  private final Class<?> advice;
+  private final ElementMatcher.Junction<MethodDescription> matcher;
+
+  /** Applies to the *Async methods of CompletableFuture that do not take an executor. */
+  public static AgentBuilder.Transformer forCompletableFuture() {
+    return new FelineCommonPoolTransformer(
+        SubmitAdvice.class,
+        isPublic()
+            .and(nameEndsWith("Async"))
+            .and(hasParameters(whereNone(hasType(is(Executor.class))))));
+  }
+
+  /**
+   * Applies to the constructors of AsyncRun, AsyncSupply and UniCompletion, to track the tasks that
+   * the *Async methods create before they are submitted.
+   */
+  public static AgentBuilder.Transformer forTaskCreation() {
+    return new FelineCommonPoolTransformer(
+        TaskCreationAdvice.class,
+        isConstructor()
+            .and(
+                isDeclaredBy(
+                    namedOneOf(
+                        "java.util.concurrent.CompletableFuture$AsyncSupply",
+                        "java.util.concurrent.CompletableFuture$AsyncRun",
+                        "java.util.concurrent.CompletableFuture$UniCompletion"))));
+  }
+
+  /** Applies to the tasks that runAsync and supplyAsync submit, i.e. AsyncRun and AsyncSupply. */
+  public static AgentBuilder.Transformer forAsyncTask() {
+    return new FelineCommonPoolTransformer(
+        AsyncTaskAdvice.class, named("run").and(takesArguments(0)));
+  }
+
+  /** Applies to the completions that the async stage methods, e.g. thenApplyAsync, submit. */
+  public static AgentBuilder.Transformer forCompletion() {
+    return new FelineCommonPoolTransformer(
+        CompletionAdvice.class, named("tryFire").and(not(isAbstract())));
+  }
+
+  private FelineCommonPoolTransformer(
+      final Class<?> advice, final ElementMatcher.Junction<MethodDescription> matcher) {
+    this.advice = advice;
+    this.matcher = matcher;
+  }
+
+  @Override
+  public Builder<?> transform(
+      final Builder<?> builder,
+      final TypeDescription typeDescription,
+      final ClassLoader classLoader,
+      final JavaModule javaModule,
+      final ProtectionDomain protectionDomain) {
+    return builder.visit(Advice.to(advice).on(matcher));
+  }
+
+  static class SubmitAdvice {
+
+    @Advice.OnMethodEnter
+    static boolean onEnter(@Advice.Origin("#t.#m#s") final String method) {
+      return FelineRuntime.beginCommonPoolSubmission(method);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final boolean begun) {
+      FelineRuntime.endCommonPoolSubmission(begun);
+    }
+  }
+
+  static class TaskCreationAdvice {
+
+    @Advice.OnMethodExit
+    static void onExit(@Advice.FieldValue("dep") final Object dep) {
+      FelineRuntime.acceptCommonPoolTask(dep);
+    }
+  }
+
+  static class AsyncTaskAdvice {
+
+    @Advice.OnMethodEnter
+    static long onEnter(
+        @Advice.FieldValue("dep") final Object dep, @Advice.Local("future") Object future) {
+      // the task clears its fields when it runs, so keep a reference to the future
+      future = dep;
+      return FelineRuntime.commonPoolTaskStart(future);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(
+        @Advice.Enter final long startTimeNanos, @Advice.Local("future") final Object future) {
+      if (startTimeNanos != Long.MIN_VALUE) {
+        FelineRuntime.acceptCommonPoolExecution(future, startTimeNanos);
+      }
+    }
+  }
+
+  static class CompletionAdvice {
+
+    @Advice.OnMethodEnter
+    static long onEnter(
+        @Advice.Argument(0) final int mode,
+        @Advice.FieldValue("dep") final Object dep,
+        @Advice.Local("future") Object future) {
+      if (mode != ASYNC) {
+        return Long.MIN_VALUE;
+      }
+      // the completion clears its fields when it fires, so keep a reference to the future
+      future = dep;
+      return FelineRuntime.commonPoolTaskStart(future);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(
+        @Advice.Enter final long startTimeNanos, @Advice.Local("future") final Object future) {
+      if (startTimeNanos != Long.MIN_VALUE) {
+        FelineRuntime.acceptCommonPoolExecution(future, startTimeNanos);
+      }
+    }
+  }
+}
@@ -0,0 +1,293 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Configuration of Feline, read from agent arguments or a properties file. Agent arguments are
+ * options separated by ";", e.g. {@code detectors=BLOCKING_IO,HELD_LOCKS;config=feline.properties},
+ * where options override those of the properties file. A ";" that is part of a value, as in the
+ * method descriptors of "allow", is escaped as "\;" in agent arguments, and needs no escaping in
+ * the properties file. The options are:
+ *
+ * <ul>
+ *   <li>"config": path of a properties file with more options
+ *   <li>"detectors": comma-separated {@link Detector} names to enable
+ *   <li>"include" and "exclude": comma-separated class name prefixes to match or to ignore, which
+ *       default to the "feline.include" and "feline.exclude" system properties
+ *   <li>"allow": comma-separated methods to allow blocking calls inside, as patterns like
+ *       "com.example.batch.**" or "com.example.Cache#load", see {@link
+ *       Feline#allowBlockingCalls(String...)}
+ *   <li>"threadLocalSampleRate", "threadLocalCreationSiteSampleRate", "heldMonitorSampleRate" and
+ *       "callSiteSampleRate": sample rates, see the corresponding setters of {@link Feline}
+ *   <li>"slowCallbackThresholdMillis": see {@link Feline#setSlowCallbackThreshold}
+ *   <li>"forkJoinCompensation": true or false, see {@link Feline#setForkJoinCompensation}
+ *   <li>"retransformBatchSize" and "retransformPauseMillis": the number of already loaded classes
+ *       to retransform at a time when the agent is installed (by default, 100), and how long to
+ *       pause between batches (by default, not at all; with a pause, classes are retransformed on a
+ *       daemon thread), which default to the "feline.retransformBatchSize" and
+ *       "feline.retransformPauseMillis" system properties
+ *   <li>"role.&lt;ThreadRole&gt;": a pattern of the names of threads to assign the role to
+ *   <li>"action.&lt;ThreadRole&gt;": the {@link BlockingAction} for blocking calls made by threads
+ *       with the role
+ * </ul>
+ */
+final class FelineConfig {
+
+  private static final String CONFIG = "config";
+  private static final String DETECTORS = "detectors";
+  private static final String INCLUDE = "include";
+  private static final String EXCLUDE = "exclude";
+  private static final String ALLOW = "allow";
+  private static final String THREAD_LOCAL_SAMPLE_RATE = "threadLocalSampleRate";
+  private static final String THREAD_LOCAL_CREATION_SITE_SAMPLE_RATE =
+      "threadLocalCreationSiteSampleRate";
+  private static final String HELD_MONITOR_SAMPLE_RATE = "heldMonitorSampleRate";
+  private static final String CALL_SITE_SAMPLE_RATE = "callSiteSampleRate";
+  private static final String SLOW_CALLBACK_THRESHOLD_MILLIS = "slowCallbackThresholdMillis";
+  private static final String FORK_JOIN_COMPENSATION = "forkJoinCompensation";
+  private static final String RETRANSFORM_BATCH_SIZE = "retransformBatchSize";
+  private static final String RETRANSFORM_PAUSE_MILLIS = "retransformPauseMillis";
+  private static final String ROLE_PREFIX = "role.";
+  private static final String ACTION_PREFIX = "action.";
+
+  private final Properties properties;
+
+  FelineConfig(final Properties properties) {
+    this.properties = properties;
+    for (final String key : properties.stringPropertyNames()) {
+      checkKey(key);
+    }
+  }
+
+  static FelineConfig empty() {
+    return new FelineConfig(new Properties());
+  }
+
+  /**
+   * Parses agent arguments.
+   *
+   * @throws IllegalArgumentException if an option is malformed or unknown
+   * @throws IOException if the properties file can not be read
+   */
+  static FelineConfig parse(final String agentArgs) throws IOException {
+    final Properties options = new Properties();
+    if (agentArgs != null) {
+      for (final String option : splitOptions(agentArgs)) {
+        if (option.trim().isEmpty()) {
+          continue;
+        }
+        final int separator = option.indexOf('=');
+        if (separator < 0) {
+          throw new IllegalArgumentException("Feline option without a value: " + option);
+        }
+        options.setProperty(
+            option.substring(0, separator).trim(), option.substring(separator + 1).trim());
+      }
+    }
+
+    final Properties properties = new Properties();
+    final String config = options.getProperty(CONFIG);
+    if (config != null) {
+      try (InputStream in = Files.newInputStream(Paths.get(config))) {
+        properties.load(in);
+      }
+      properties.remove(CONFIG);
+    }
+    properties.putAll(options);
+    return new FelineConfig(properties);
+  }
+
+  /** Splits agent arguments at each ";" that is not escaped as "\;". */
+  private static List<String> splitOptions(final String agentArgs) {
+    final List<String> options = new ArrayList<>();
+    final StringBuilder option = new StringBuilder();
+    for (int i = 0; i < agentArgs.length(); i++) {
+      final char c = agentArgs.charAt(i);
+      if (c == '\\' && i + 1 < agentArgs.length() && agentArgs.charAt(i + 1) == ';') {
+        option.append(';');
+        i++;
+      } else if (c == ';') {
+        options.add(option.toString());
+        option.setLength(0);
+      } else {
+        option.append(c);
+      }
+    }
+    options.add(option.toString());
+    return options;
+  }
+
+  private static void checkKey(final String key) {
+    switch (key) {
+      case CONFIG:
+      case DETECTORS:
+      case INCLUDE:
+      case EXCLUDE:
+      case ALLOW:
+      case THREAD_LOCAL_SAMPLE_RATE:
+      case THREAD_LOCAL_CREATION_SITE_SAMPLE_RATE:
+      case HELD_MONITOR_SAMPLE_RATE:
+      case CALL_SITE_SAMPLE_RATE:
+      case SLOW_CALLBACK_THRESHOLD_MILLIS:
+      case FORK_JOIN_COMPENSATION:
+      case RETRANSFORM_BATCH_SIZE:
+      case RETRANSFORM_PAUSE_MILLIS:
+        return;
+      default:
+        if (key.startsWith(ROLE_PREFIX)) {
+          role(key.substring(ROLE_PREFIX.length()));
+        } else if (key.startsWith(ACTION_PREFIX)) {
+          role(key.substring(ACTION_PREFIX.length()));
+        } else {
+          throw new IllegalArgumentException("Unknown Feline option: " + key);
+        }
+    }
+  }
+
+  FelineScope scope() {
+    return new FelineScope(
+        FelineScope.prefixes(
+            properties.getProperty(INCLUDE, System.getProperty(FelineScope.INCLUDE_PROPERTY))),
+        FelineScope.prefixes(
+            properties.getProperty(EXCLUDE, System.getProperty(FelineScope.EXCLUDE_PROPERTY))));
+  }
+
+  int retransformBatchSize() {
+    final int batchSize = installOption(RETRANSFORM_BATCH_SIZE, 100);
+    if (batchSize < 1) {
+      throw new IllegalArgumentException(
+          "Feline option " + RETRANSFORM_BATCH_SIZE + " must be positive");
+    }
+    return batchSize;
+  }
+
+  int retransformPauseMillis() {
+    return Math.max(0, installOption(RETRANSFORM_PAUSE_MILLIS, 0));
+  }
+
+  /** Returns an option that is used when installing the agent, or its system property. */
+  private int installOption(final String key, final int defaultValue) {
+    final String value = properties.getProperty(key, System.getProperty("feline." + key));
+    return value == null ? defaultValue : parseInt(key, value);
+  }
+
+  List<String> allowances() {
+    return values(properties.getProperty(ALLOW));
+  }
+
+  /** Applies the options to Feline, which must already be installed. */
+  void apply() {
+    for (final String detector : values(properties.getProperty(DETECTORS))) {
+      Feline.enableDetector(Detector.valueOf(detector.toUpperCase(Locale.ROOT)));
+    }
+
+    Feline.allowBlockingCalls(allowances().toArray(new String[0]));
+
+    if (properties.containsKey(THREAD_LOCAL_SAMPLE_RATE)) {
+      Feline.setThreadLocalSampleRate(intProperty(THREAD_LOCAL_SAMPLE_RATE));
+    }
+    if (properties.containsKey(THREAD_LOCAL_CREATION_SITE_SAMPLE_RATE)) {
+      Feline.setThreadLocalCreationSiteSampleRate(
+          intProperty(THREAD_LOCAL_CREATION_SITE_SAMPLE_RATE));
+    }
+    if (properties.containsKey(HELD_MONITOR_SAMPLE_RATE)) {
+      Feline.setHeldMonitorSampleRate(intProperty(HELD_MONITOR_SAMPLE_RATE));
+    }
+    if (properties.containsKey(CALL_SITE_SAMPLE_RATE)) {
+      Feline.setCallSiteSampleRate(intProperty(CALL_SITE_SAMPLE_RATE));
+    }
+    if (properties.containsKey(SLOW_CALLBACK_THRESHOLD_MILLIS)) {
+      Feline.setSlowCallbackThreshold(
+          Duration.ofMillis(intProperty(SLOW_CALLBACK_THRESHOLD_MILLIS)));
+    }
+    if (properties.containsKey(FORK_JOIN_COMPENSATION)) {
+      Feline.setForkJoinCompensation(
+          Boolean.parseBoolean(properties.getProperty(FORK_JOIN_COMPENSATION)));
+    }
+
+    for (final String key : properties.stringPropertyNames()) {
+      if (key.startsWith(ROLE_PREFIX)) {
+        Feline.assignThreadRole(
+            Pattern.compile(properties.getProperty(key)),
+            role(key.substring(ROLE_PREFIX.length())));
+      } else if (key.startsWith(ACTION_PREFIX)) {
+        Feline.setThreadRoleAction(
+            role(key.substring(ACTION_PREFIX.length())),
+            BlockingAction.valueOf(properties.getProperty(key).toUpperCase(Locale.ROOT)));
+      }
+    }
+  }
+
+  private static List<String> values(final String value) {
+    final List<String> values = new ArrayList<>();
+    if (value != null) {
+      for (final String element : value.split(",")) {
+        if (!element.trim().isEmpty()) {
+          values.add(element.trim());
+        }
+      }
+    }
+    return values;
+  }
+
+  private int intProperty(final String key) {
+    return parseInt(key, properties.getProperty(key));
+  }
+
+  private static int parseInt(final String key, final String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Feline option " + key + " is not a number: " + value, e);
+    }
+  }
+
+  private static ThreadRole role(final String name) {
+    return ThreadRole.valueOf(name.toUpperCase(Locale.ROOT));
+  }
+}
@@ -0,0 +1,124 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prepares Feline for checkpoint/restore (CRaC) on JVMs that support it: periodic sampling is
+ * stopped before a checkpoint and started again after restore, and the bootstrap runtime jar is
+ * written again if it is missing after restore.
+ *
+ * <p>The CRaC API is only used through reflection, as it is not part of the JDK. Both the JDK's own
+ * jdk.crac and the org.crac library are supported.
+ */
+final class FelineCrac {
+
+  private static final String[] CORE_CLASSES = {"jdk.crac.Core", "org.crac.Core"};
+
+  // contexts may only keep weak references to their resources
+  private static Object resource;
+
+  private static long samplingPeriodNanos;
+
+  private FelineCrac() {}
+
+  /** Registers Feline with the global CRaC context, if there is one. */
+  static synchronized boolean register() {
+    if (resource != null) {
+      return true;
+    }
+    for (final String coreClass : CORE_CLASSES) {
+      try {
+        final Class<?> core = Class.forName(coreClass, true, Feline.class.getClassLoader());
+        final Class<?> resourceClass =
+            Class.forName(
+                coreClass.replace("Core", "Resource"), true, Feline.class.getClassLoader());
+        final Object context = core.getMethod("getGlobalContext").invoke(null);
+        final Object proxy =
+            Proxy.newProxyInstance(
+                Feline.class.getClassLoader(), new Class<?>[] {resourceClass}, new Handler());
+        context.getClass().getMethod("register", resourceClass).invoke(context, proxy);
+        resource = proxy;
+        return true;
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // not available
+      }
+    }
+    return false;
+  }
+
+  static synchronized void beforeCheckpoint() {
+    samplingPeriodNanos = ThreadLocalMapSampler.periodNanos();
+    ThreadLocalMapSampler.stop();
+  }
+
+  static synchronized void afterRestore() throws IOException {
+    BytecodeUtils.restoreBootstrapJar();
+    if (samplingPeriodNanos > 0) {
+      ThreadLocalMapSampler.start(samplingPeriodNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private static class Handler implements InvocationHandler {
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+        throws Throwable {
+      switch (method.getName()) {
+        case "beforeCheckpoint":
+          beforeCheckpoint();
+          return null;
+        case "afterRestore":
+          afterRestore();
+          return null;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Feline";
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract;
+import static net.bytebuddy.matcher.ElementMatchers.isNative;
+import static net.bytebuddy.matcher.ElementMatchers.isPublic;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+
+import java.nio.channels.SelectableChannel;
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.Map;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.utility.JavaModule;
+
+/**
+ * Detects blocking I/O on threads that must never block, i.e. threads with the event loop role. On
+ * any other thread, the cost is a check of the detector and of the thread role.
+ *
+ * <p>Native methods can not be instrumented, so e.g. RandomAccessFile.read() is not covered on Java
+ * 8, where it is native. The public methods that delegate to native ones are covered.
+ */
+class FelineIoTransformer implements AgentBuilder.Transformer {
+
+  private final Class<?> advice;
+  private final ElementMatcher.Junction<MethodDescription> matcher;
+
+  /** Applies to FileInputStream, FileOutputStream and RandomAccessFile. */
+  public static AgentBuilder.Transformer forFile() {
+    return new FelineIoTransformer(
+        IoAdvice.class,
+        isPublic()
+            .and(not(isNative()))
+            .and(
+                named("read")
+                    .or(named("readAllBytes"))
+                    .or(named("readNBytes"))
+                    .or(named("readFully"))
+                    .or(named("write"))));
+  }
+
+  /** Applies to FileChannel, which is always blocking. */
+  public static AgentBuilder.Transformer forFileChannel() {
+    return new FelineIoTransformer(IoAdvice.class, named("read").and(not(isAbstract())));
+  }
+
+  /** Applies to SocketChannel, which is only blocking in blocking mode. */
+  public static AgentBuilder.Transformer forSocketChannel() {
+    return new FelineIoTransformer(
+        SelectableChannelAdvice.class, named("read").and(not(isAbstract())));
+  }
+
+  public static AgentBuilder.Transformer forFiles() {
+    return new FelineIoTransformer(
+        IoAdvice.class, named("readAllBytes").or(named("readAllLines")).or(named("readString")));
+  }
+
+  /** Applies to the synchronous send of java.net.http.HttpClient (Java 11+). */
+  public static AgentBuilder.Transformer forHttpClient() {
+    return new FelineIoTransformer(IoAdvice.class, named("send").and(not(isAbstract())));
+  }
+
+  private FelineIoTransformer(
+      final Class<?> advice, final ElementMatcher.Junction<MethodDescription> matcher) {
+    this.advice = advice;
+    this.matcher = matcher;
+  }
+
+  @Override
+  public Builder<?> transform(
+      final Builder<?> builder,
+      final TypeDescription typeDescription,
+      final ClassLoader classLoader,
+      final JavaModule javaModule,
+      final ProtectionDomain protectionDomain) {
+    return builder.visit(Advice.to(advice).on(matcher));
+  }
+
+  static class IoAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(@Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_BLOCKING_IO)
+          || !FelinePolicy.isNonBlockingThread()) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "IO");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class SelectableChannelAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.This final SelectableChannel channel,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_BLOCKING_IO)
+          || !FelinePolicy.isNonBlockingThread()
+          || !channel.isBlocking()) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "IO");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+}
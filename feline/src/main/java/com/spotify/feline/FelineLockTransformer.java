@@ -0,0 +1,118 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
+
+import java.security.ProtectionDomain;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.utility.JavaModule;
+
+/**
+ * Tracks the ReentrantLocks and ReentrantReadWriteLocks held by each thread while {@link
+ * Detector#HELD_LOCKS} is enabled, so that blocking calls made while holding them can be reported.
+ */
+class FelineLockTransformer implements AgentBuilder.Transformer {
+
+  private final Class<?> advice;
+  private final ElementMatcher.Junction<MethodDescription> matcher;
+
+  public static AgentBuilder.Transformer forLock() {
+    return new FelineLockTransformer(
+        LockAdvice.class, named("lock").or(named("lockInterruptibly")).and(takesArguments(0)));
+  }
+
+  public static AgentBuilder.Transformer forTryLock() {
+    return new FelineLockTransformer(TryLockAdvice.class, named("tryLock"));
+  }
+
+  public static AgentBuilder.Transformer forUnlock() {
+    return new FelineLockTransformer(UnlockAdvice.class, named("unlock").and(takesArguments(0)));
+  }
+
+  private FelineLockTransformer(
+      final Class<?> advice, final ElementMatcher.Junction<MethodDescription> matcher) {
+    this.advice = advice;
+    this.matcher = matcher;
+  }
+
+  @Override
+  public Builder<?> transform(
+      final Builder<?> builder,
+      final TypeDescription typeDescription,
+      final ClassLoader classLoader,
+      final JavaModule javaModule,
+      final ProtectionDomain protectionDomain) {
+    return builder.visit(Advice.to(advice).on(matcher));
+  }
+
+  static class LockAdvice {
+
+    @Advice.OnMethodExit
+    static void onExit(@Advice.This final Object lock) {
+      if (FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_HELD_LOCKS)) {
+        FelineRuntime.acceptLockAcquired(lock);
+      }
+    }
+  }
+
+  static class TryLockAdvice {
+
+    @Advice.OnMethodExit
+    static void onExit(@Advice.This final Object lock, @Advice.Return final boolean acquired) {
+      if (acquired && FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_HELD_LOCKS)) {
+        FelineRuntime.acceptLockAcquired(lock);
+      }
+    }
+  }
+
+  static class UnlockAdvice {
+
+    @Advice.OnMethodExit
+    static void onExit(@Advice.This final Object lock) {
+      if (FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_HELD_LOCKS)) {
+        FelineRuntime.acceptLockReleased(lock);
+      }
+    }
+  }
+}
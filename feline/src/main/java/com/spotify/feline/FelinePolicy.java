@@ -0,0 +1,259 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Decides what to do with a blocking call based on the role of the thread it is made on.
+ *
+ * <p>Like {@link FelineRuntime}, this is injected into the bootstrap class loader, and only uses
+ * JDK types in its API.
+ */
+public final class FelinePolicy {
+
+  // roles
+  public static final int UNASSIGNED = 0;
+  public static final int EVENT_LOOP = 1;
+  public static final int REQUEST_WORKER = 2;
+  public static final int BACKGROUND = 3;
+  public static final int BLOCKING_ALLOWED = 4;
+
+  // actions
+  public static final int IGNORE = 0;
+  public static final int COUNT = 1;
+  public static final int LOG = 2;
+  public static final int THROW = 3;
+
+  private static final String[] ROLE_NAMES = {
+    "unassigned", "event-loop", "request-worker", "background", "blocking-allowed"
+  };
+
+  private static final List<Map.Entry<Predicate<Thread>, Integer>> rules =
+      new CopyOnWriteArrayList<>();
+
+  private static volatile RoleCache roles = new RoleCache();
+
+  // A direct-mapped cache of the roles in RoleCache, indexed by thread id. Unlike RoleCache, a hit
+  // is an array read rather than a probe of the ThreadLocalMap of the thread. Thread ids are never
+  // reused, so a slot that was overwritten by another thread is a miss rather than a wrong role.
+  private static final int CACHED_ROLES = 1024;
+  private static volatile CachedRole[] cachedRoles = new CachedRole[CACHED_ROLES];
+
+  private static final LongAdder[] counts = {
+    new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()
+  };
+
+  private static volatile int[] actions = {COUNT, COUNT, COUNT, COUNT, IGNORE};
+
+  // false until a role or an action is configured, which keeps the default policy to a field read
+  private static volatile boolean active = false;
+
+  private FelinePolicy() {}
+
+  /**
+   * Adds a rule that assigns a role to threads, which is evaluated once for every thread that has
+   * not been assigned a role yet. Rules are evaluated in the order they were added.
+   */
+  public static void addRule(final Predicate<Thread> predicate, final int role) {
+    rules.add(new AbstractMap.SimpleImmutableEntry<>(predicate, role));
+    active = true;
+  }
+
+  /** Removes all rules, explicitly assigned roles and configured actions. */
+  public static void reset() {
+    active = false;
+    rules.clear();
+    roles = new RoleCache();
+    cachedRoles = new CachedRole[CACHED_ROLES];
+    actions = new int[] {COUNT, COUNT, COUNT, COUNT, IGNORE};
+  }
+
+  public static void setAction(final int role, final int action) {
+    final int[] newActions = actions.clone();
+    newActions[role] = action;
+    actions = newActions;
+    active = true;
+  }
+
+  public static int getAction(final int role) {
+    return actions[role];
+  }
+
+  public static void setCurrentThreadRole(final int role) {
+    roles.set(role);
+    final long threadId = Thread.currentThread().getId();
+    cachedRoles[slot(threadId)] = new CachedRole(threadId, role);
+    active = true;
+  }
+
+  public static int getCurrentThreadRole() {
+    return currentRole();
+  }
+
+  public static String roleName(final int role) {
+    return ROLE_NAMES[role];
+  }
+
+  public static long getCount(final int role) {
+    return counts[role].sum();
+  }
+
+  /**
+   * Returns true if the current thread has the {@link #EVENT_LOOP} role, i.e. it must never block.
+   * Until a role is configured, this is a single field read.
+   */
+  public static boolean isNonBlockingThread() {
+    return active && currentRole() == EVENT_LOOP;
+  }
+
+  /** Returns the action for a blocking call on the current thread. */
+  public static int currentAction() {
+    if (!active) {
+      return COUNT;
+    }
+    return actions[currentRole()];
+  }
+
+  /**
+   * Applies the action for a blocking call on the current thread, after consumers have been
+   * notified.
+   *
+   * @throws IllegalStateException if the action is {@link #THROW}
+   */
+  public static void enforce(final int action, final String blockingCall) {
+    if (!active) {
+      counts[UNASSIGNED].increment();
+      return;
+    }
+    final int role = currentRole();
+    counts[role].increment();
+    if (action == LOG) {
+      log(role, blockingCall);
+    } else if (action == THROW) {
+      throw new IllegalStateException(message(role, blockingCall));
+    }
+  }
+
+  private static int currentRole() {
+    final long threadId = Thread.currentThread().getId();
+    // read the cache before the roles, as reset replaces them in the opposite order
+    final CachedRole[] cache = cachedRoles;
+    final int slot = slot(threadId);
+    final CachedRole cached = cache[slot];
+    if (cached != null && cached.threadId == threadId) {
+      return cached.role;
+    }
+    final int role = roles.get();
+    cache[slot] = new CachedRole(threadId, role);
+    return role;
+  }
+
+  private static int slot(final long threadId) {
+    return (int) threadId & (CACHED_ROLES - 1);
+  }
+
+  private static void log(final int role, final String blockingCall) {
+    final long threadId = Thread.currentThread().getId();
+    // printing may block as well, which must not be reported again
+    final boolean marked = FelineRuntime.BLOCKED_THREADS.add(threadId);
+    try {
+      new Throwable(message(role, blockingCall)).printStackTrace();
+    } finally {
+      if (marked) {
+        FelineRuntime.BLOCKED_THREADS.remove(threadId);
+      }
+    }
+  }
+
+  private static String message(final int role, final String blockingCall) {
+    return "Blocking call to "
+        + blockingCall
+        + " on "
+        + ROLE_NAMES[role]
+        + " thread "
+        + Thread.currentThread().getName();
+  }
+
+  /**
+   * Caches the role of each thread. This ThreadLocal is excluded from the instrumentation of
+   * ThreadLocal, as computing the role must not trigger consumers.
+   */
+  static final class RoleCache extends ThreadLocal<Integer> {
+
+    // Threads that are evaluating rules. A rule may make a call that checks the role again, e.g.
+    // by loading a class, which then sees the thread as unassigned.
+    private final Set<Long> evaluating = ConcurrentHashMap.newKeySet();
+
+    @Override
+    protected Integer initialValue() {
+      final Thread thread = Thread.currentThread();
+      final Long threadId = thread.getId();
+      if (!evaluating.add(threadId)) {
+        return UNASSIGNED;
+      }
+      try {
+        for (final Map.Entry<Predicate<Thread>, Integer> rule : rules) {
+          if (rule.getKey().test(thread)) {
+            return rule.getValue();
+          }
+        }
+        return UNASSIGNED;
+      } finally {
+        evaluating.remove(threadId);
+      }
+    }
+  }
+
+  private static final class CachedRole {
+
+    final long threadId;
+    final int role;
+
+    CachedRole(final long threadId, final int role) {
+      this.threadId = threadId;
+      this.role = role;
+    }
+  }
+}
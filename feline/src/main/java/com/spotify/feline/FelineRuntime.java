@@ -36,18 +36,81 @@
 
 package com.spotify.feline;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.AbstractQueuedLongSynchronizer;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public class FelineRuntime {
+  public static final int DETECT_COMMON_POOL_ASYNC = 1;
+  public static final int DETECT_SLOW_CALLBACKS = 1 << 1;
+  public static final int DETECT_SYNCHRONIZERS = 1 << 2;
+  public static final int DETECT_FORK_JOIN_TASKS = 1 << 3;
+  public static final int DETECT_BLOCKING_IO = 1 << 4;
+  public static final int DETECT_SLEEP_AND_PARK = 1 << 5;
+  public static final int DETECT_VIRTUAL_THREADS = 1 << 6;
+  public static final int DETECT_THREAD_LOCAL_FOOTPRINT = 1 << 7;
+  public static final int DETECT_THREAD_LOCAL_MAPS = 1 << 8;
+  public static final int DETECT_HELD_LOCKS = 1 << 9;
+  public static final int DETECT_BLOCKING_RATIO = 1 << 10;
+
+  // Indexes of the counters kept for each ThreadLocal class
+  private static final int PLATFORM_INITIALIZATIONS = 0;
+  private static final int VIRTUAL_INITIALIZATIONS = 1;
+  private static final int SAMPLED_INITIALIZATIONS = 2;
+  private static final int SAMPLED_BYTES = 3;
+  private static final int SETS = 4;
+  private static final int REMOVES = 5;
+
+  // Elements of an initial value array, collection or map that are measured
+  private static final int MAX_SAMPLED_ELEMENTS = 256;
+
   // This is equivalent to using a ThreadLocal<Boolean>, but since we are instrumenting the
   // ThreadLocal class we instead use custom set keyed on thread id
   public static final Set<Long> BLOCKED_THREADS = ConcurrentHashMap.newKeySet();
 
+  // Threads that are joining a ForkJoinTask, mapped to the innermost join. A worker may run other
+  // tasks while it joins, which may join tasks of their own.
+  private static final Map<Long, ForkJoin> FORK_JOINS = new ConcurrentHashMap<>();
+
+  // The blocking call that each blocked thread is currently inside, if it is known
+  private static final Map<Long, String> BLOCKING_CALLS = new ConcurrentHashMap<>();
+
   private static final List<Consumer<String>> onEnterConsumers = new CopyOnWriteArrayList<>();
 
   private static final List<Consumer<Map<String, Object>>> onExitConsumers =
@@ -56,6 +119,95 @@ public class FelineRuntime {
   private static final List<Runnable> threadLocalInitialValueConsumers =
       new CopyOnWriteArrayList<>();
 
+  private static final List<Consumer<Map<String, Object>>> forkJoinCompensationConsumers =
+      new CopyOnWriteArrayList<>();
+
+  private static final List<Consumer<Map<String, Object>>> commonPoolSubmissionConsumers =
+      new CopyOnWriteArrayList<>();
+
+  private static final List<Consumer<Map<String, Object>>> commonPoolExecutionConsumers =
+      new CopyOnWriteArrayList<>();
+
+  // Threads inside an async CompletableFuture method without an executor, mapped to the method
+  private static final Map<Long, String> COMMON_POOL_SUBMITTERS = new ConcurrentHashMap<>();
+
+  // Dependent futures of async tasks submitted without an executor, mapped to the submitting
+  // method. The tasks are tracked when they are created, i.e. before they are submitted. Weak
+  // keys, since the tasks may never run.
+  private static final Map<Object, String> COMMON_POOL_TASKS =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private static final List<Consumer<Map<String, Object>>> slowCallbackConsumers =
+      new CopyOnWriteArrayList<>();
+
+  // Threads that are running dependent-stage callbacks, mapped to the nesting depth and the run
+  // time of the nested callbacks that completed so far. Entries are removed when the outermost
+  // callback completes.
+  private static final Map<Long, long[]> CALLBACK_THREADS = new ConcurrentHashMap<>();
+
+  private static volatile long slowCallbackThresholdNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+  // Thread.isVirtual(), or null before Java 21
+  private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+  // Virtual threads that pinned their carrier while inside a blocking call
+  private static final Set<Long> PINNED_THREADS = ConcurrentHashMap.newKeySet();
+
+  // Virtual threads whose pinning is being reported, as consumers may pin the carrier again
+  private static final Set<Long> REPORTING_PINNED_THREADS = ConcurrentHashMap.newKeySet();
+
+  private static final List<Consumer<Map<String, Object>>> pinnedVirtualThreadConsumers =
+      new CopyOnWriteArrayList<>();
+
+  // The scheduler of virtual threads, once one has been created
+  private static volatile ForkJoinPool carrierPool;
+
+  // Initializations, sets and removes of ThreadLocals, keyed by the ThreadLocal class (or the class
+  // of the supplier passed to ThreadLocal.withInitial). Keyed by name, so classes can still be
+  // unloaded.
+  private static final Map<String, LongAdder[]> THREAD_LOCAL_FOOTPRINT = new ConcurrentHashMap<>();
+
+  // Threads reporting the creation or initialization of a ThreadLocal, as measuring the initial
+  // value or notifying consumers may initialize other ThreadLocals
+  private static final Set<Long> THREAD_LOCAL_THREADS = ConcurrentHashMap.newKeySet();
+
+  // Where sampled ThreadLocals were created. Weak keys, as ThreadLocals are often short-lived.
+  private static final Map<Object, String> THREAD_LOCAL_CREATION_SITES =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private static final List<Consumer<Map<String, Object>>> threadLocalInitializationConsumers =
+      new CopyOnWriteArrayList<>();
+
+  private static volatile int threadLocalCreationSiteSampleRate = 0;
+
+  // Maps a ThreadLocal to the class it is counted under, e.g. the supplier passed to withInitial
+  private static volatile Function<Object, Class<?>> threadLocalClassResolver = Object::getClass;
+
+  private static volatile ToLongFunction<Object> objectSizer;
+
+  private static volatile int threadLocalSampleRate = 100;
+
+  // The java.util.concurrent locks held by each thread, while held locks are detected. Each entry
+  // is only used by its own thread, and entries of threads that terminated while holding a lock
+  // are swept when the map has doubled in size since the last sweep.
+  private static final Map<Long, HeldLocks> HELD_LOCKS = new ConcurrentHashMap<>();
+
+  private static final int MIN_HELD_LOCKS_SWEEP_SIZE = 64;
+  private static volatile int heldLocksSweepSize = MIN_HELD_LOCKS_SWEEP_SIZE;
+
+  private static volatile int heldMonitorSampleRate = 1000;
+
+  // Calls to Future.get and CompletableFuture.join by method, and for a sample of calls, by call
+  // site. Each has two counters: all calls, and calls to futures that were not done.
+  private static final Map<String, LongAdder[]> FUTURE_CALLS = new ConcurrentHashMap<>();
+  private static final Map<String, LongAdder[]> FUTURE_CALL_SITES = new ConcurrentHashMap<>();
+
+  private static volatile int callSiteSampleRate = 100;
+
+  private static volatile int detectors = 0;
+
+  private static volatile boolean forkJoinCompensation = false;
+
   public static void addOnExitConsumerFirst(
       final Consumer<Map<String, Object>> blockingCallConsumer) {
     onExitConsumers.add(0, blockingCallConsumer);
@@ -86,6 +238,536 @@ public class FelineRuntime {
   public static void clearConsumers() {
     onEnterConsumers.clear();
     onExitConsumers.clear();
+    forkJoinCompensationConsumers.clear();
+    commonPoolSubmissionConsumers.clear();
+    commonPoolExecutionConsumers.clear();
+    slowCallbackConsumers.clear();
+    pinnedVirtualThreadConsumers.clear();
+    threadLocalInitializationConsumers.clear();
+  }
+
+  public static synchronized void enableDetectors(final int mask) {
+    detectors |= mask;
+  }
+
+  public static synchronized void disableDetectors(final int mask) {
+    detectors &= ~mask;
+    if ((mask & DETECT_HELD_LOCKS) != 0) {
+      // locks that are released while disabled would otherwise be reported as held
+      HELD_LOCKS.clear();
+    }
+  }
+
+  public static boolean isDetectorEnabled(final int detector) {
+    return (detectors & detector) != 0;
+  }
+
+  public static void exitBlockingCall() {
+    final long threadId = Thread.currentThread().getId();
+    BLOCKING_CALLS.remove(threadId);
+    BLOCKED_THREADS.remove(threadId);
+  }
+
+  /**
+   * Reports a call that is about to block, unless the current thread is already inside a blocking
+   * call or its role ignores blocking calls.
+   *
+   * @param blockingCall the blocking method
+   * @param primitive the kind of synchronizer, e.g. Future or CountDownLatch
+   * @return the data to pass to {@link #endBlockingCall(Map)}, which is empty if the call was not
+   *     reported
+   */
+  public static Map<String, Object> beginBlockingCall(
+      final String blockingCall, final String primitive) {
+    return beginBlockingCall(blockingCall, primitive, true);
+  }
+
+  private static Map<String, Object> beginBlockingCall(
+      final String blockingCall, final String primitive, final boolean enforce) {
+    final long threadId = Thread.currentThread().getId();
+    if (!BLOCKED_THREADS.add(threadId)) {
+      // Already inside a blocking operation, e.g. where one Future delegates to another
+      return Collections.emptyMap();
+    }
+
+    final int action = FelinePolicy.currentAction();
+    if (action == FelinePolicy.IGNORE) {
+      // Blocking is allowed on this thread
+      BLOCKED_THREADS.remove(threadId);
+      return Collections.emptyMap();
+    }
+
+    // The thread is marked while consumers run, so that blocking calls made by consumers (e.g.
+    // writing to a log file) are not reported again. Consumers can throw exceptions, in which case
+    // the state must be reset here as it would not be reset on exit.
+    try {
+      accept(blockingCall);
+      if (enforce) {
+        FelinePolicy.enforce(action, blockingCall);
+      }
+    } catch (RuntimeException | Error e) {
+      BLOCKED_THREADS.remove(threadId);
+      throw e;
+    }
+    BLOCKING_CALLS.put(threadId, blockingCall);
+
+    final Map<String, Object> data = new HashMap<>(16);
+    data.put("method", blockingCall);
+    data.put("primitive", primitive);
+    data.put("virtual", isVirtual(Thread.currentThread()));
+    if (isDetectorEnabled(DETECT_HELD_LOCKS)) {
+      addHeldLocks(data);
+    }
+    data.put("startTimeNanos", System.nanoTime());
+    return data;
+  }
+
+  public static void setCallSiteSampleRate(final int sampleRate) {
+    if (sampleRate < 1) {
+      throw new IllegalArgumentException("sampleRate must be positive");
+    }
+    callSiteSampleRate = sampleRate;
+  }
+
+  /** Counts a call to a future, whether or not it blocks, and samples its call site. */
+  public static void countFutureCall(final String method, final boolean blocking) {
+    countFutureCall(method, blocking, 1);
+  }
+
+  /**
+   * Counts a call to a future, like {@link #countFutureCall(String, boolean)}, where the call site
+   * is the given number of frames below the runtime rather than the caller of the instrumented
+   * method.
+   */
+  public static void countFutureCall(
+      final String method, final boolean blocking, final int callSiteDepth) {
+    countCall(FUTURE_CALLS, method, blocking);
+    if (ThreadLocalRandom.current().nextInt(callSiteSampleRate) == 0) {
+      final String callSite = callSite(callSiteDepth);
+      if (callSite != null) {
+        countCall(FUTURE_CALL_SITES, callSite, blocking);
+      }
+    }
+  }
+
+  private static void countCall(
+      final Map<String, LongAdder[]> calls, final String key, final boolean blocking) {
+    // get first, as computeIfAbsent locks even if the key is present in Java 8
+    LongAdder[] counters = calls.get(key);
+    if (counters == null) {
+      counters = calls.computeIfAbsent(key, k -> newCounters(2));
+    }
+    counters[0].increment();
+    if (blocking) {
+      counters[1].increment();
+    }
+  }
+
+  /** Returns the frame the given number of frames below the runtime. */
+  private static String callSite(final int depth) {
+    final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+    int i = 0;
+    while (i < stackTrace.length
+        && stackTrace[i].getClassName().equals(FelineRuntime.class.getName())) {
+      i++;
+    }
+    // skip the instrumented method, or whatever called into the runtime on its behalf
+    i += depth;
+    if (i >= stackTrace.length) {
+      return null;
+    }
+    return stackTrace[i].getClassName() + "." + stackTrace[i].getMethodName();
+  }
+
+  public static Map<String, Map<String, Long>> futureCalls() {
+    return callCounts(FUTURE_CALLS);
+  }
+
+  public static Map<String, Map<String, Long>> futureCallSites() {
+    return callCounts(FUTURE_CALL_SITES);
+  }
+
+  private static Map<String, Map<String, Long>> callCounts(final Map<String, LongAdder[]> calls) {
+    final Map<String, Map<String, Long>> counts = new HashMap<>();
+    calls.forEach(
+        (key, counters) -> {
+          final Map<String, Long> stats = new HashMap<>(4);
+          stats.put("calls", counters[0].sum());
+          stats.put("blockingCalls", counters[1].sum());
+          counts.put(key, stats);
+        });
+    return counts;
+  }
+
+  public static double blockingRatio(final String callSite) {
+    final LongAdder[] counters = FUTURE_CALL_SITES.get(callSite);
+    if (counters == null) {
+      return Double.NaN;
+    }
+    final long calls = counters[0].sum();
+    return calls == 0 ? Double.NaN : (double) counters[1].sum() / calls;
+  }
+
+  public static void resetFutureCalls() {
+    FUTURE_CALLS.clear();
+    FUTURE_CALL_SITES.clear();
+  }
+
+  public static void setHeldMonitorSampleRate(final int sampleRate) {
+    if (sampleRate < 0) {
+      throw new IllegalArgumentException("sampleRate must not be negative");
+    }
+    heldMonitorSampleRate = sampleRate;
+  }
+
+  public static void acceptLockAcquired(final Object lock) {
+    final Thread thread = Thread.currentThread();
+    HeldLocks heldLocks = HELD_LOCKS.get(thread.getId());
+    if (heldLocks == null) {
+      heldLocks = new HeldLocks(thread);
+      HELD_LOCKS.put(thread.getId(), heldLocks);
+      if (HELD_LOCKS.size() >= heldLocksSweepSize) {
+        sweepHeldLocks();
+      }
+    }
+    heldLocks.locks.add(lock);
+  }
+
+  public static void acceptLockReleased(final Object lock) {
+    final long threadId = Thread.currentThread().getId();
+    final HeldLocks heldLocks = HELD_LOCKS.get(threadId);
+    if (heldLocks != null && heldLocks.locks.remove(lock) && heldLocks.locks.isEmpty()) {
+      HELD_LOCKS.remove(threadId);
+    }
+  }
+
+  /** Removes the held locks of threads that terminated without releasing them. */
+  private static void sweepHeldLocks() {
+    HELD_LOCKS.values().removeIf(HeldLocks::isTerminated);
+    heldLocksSweepSize = Math.max(MIN_HELD_LOCKS_SWEEP_SIZE, HELD_LOCKS.size() * 2);
+  }
+
+  /** Returns the number of threads with tracked java.util.concurrent locks. */
+  public static int heldLocksThreadCount() {
+    return HELD_LOCKS.size();
+  }
+
+  /**
+   * Adds the locks held by the current thread to the data of a blocking call: the tracked
+   * java.util.concurrent locks, and for a sample of calls, the monitors reported by ThreadMXBean
+   * (which does not support virtual threads).
+   */
+  private static void addHeldLocks(final Map<String, Object> data) {
+    final long threadId = Thread.currentThread().getId();
+    final Set<String> heldLocks = new LinkedHashSet<>();
+    final HeldLocks locks = HELD_LOCKS.get(threadId);
+    if (locks != null) {
+      for (final Object lock : locks.locks) {
+        heldLocks.add(
+            lock.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(lock)));
+      }
+    }
+    data.put("heldLocks", new ArrayList<>(heldLocks));
+    boolean amplified = !heldLocks.isEmpty();
+
+    final int sampleRate = heldMonitorSampleRate;
+    if (sampleRate != 0 && ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+      final ThreadInfo[] threadInfos =
+          ManagementFactory.getThreadMXBean().getThreadInfo(new long[] {threadId}, true, false);
+      if (threadInfos[0] != null) {
+        final Set<String> heldMonitors = new LinkedHashSet<>();
+        for (final MonitorInfo monitor : threadInfos[0].getLockedMonitors()) {
+          heldMonitors.add(
+              monitor.getClassName() + "@" + Integer.toHexString(monitor.getIdentityHashCode()));
+        }
+        data.put("heldMonitors", new ArrayList<>(heldMonitors));
+        amplified |= !heldMonitors.isEmpty();
+      }
+    }
+    data.put("amplified", amplified);
+  }
+
+  /**
+   * Like {@link #beginBlockingCall(String, String)}, for calls that wait for a requested time.
+   *
+   * @param requestedNanos the requested time, or -1 if the call waits until it is woken up
+   */
+  public static Map<String, Object> beginTimedBlockingCall(
+      final String blockingCall, final String primitive, final long requestedNanos) {
+    final Map<String, Object> data = beginBlockingCall(blockingCall, primitive);
+    if (!data.isEmpty()) {
+      data.put("requestedNanos", requestedNanos);
+    }
+    return data;
+  }
+
+  /**
+   * Like {@link #beginTimedBlockingCall(String, String, long)}, for LockSupport.park and its
+   * variants. Parks of AbstractQueuedSynchronizer based locks, conditions and queues, and of the
+   * futures, queues and pools that are detected on their own, are not reported.
+   *
+   * @param blocker the blocker passed to the park, or null to use the blocker of the thread
+   */
+  public static Map<String, Object> beginPark(
+      final String blockingCall, final Object blocker, final long requestedNanos) {
+    final Object parkBlocker =
+        blocker != null ? blocker : LockSupport.getBlocker(Thread.currentThread());
+    if (isSynchronizerPark(parkBlocker)) {
+      return Collections.emptyMap();
+    }
+    return beginTimedBlockingCall(blockingCall, "LockSupport", requestedNanos);
+  }
+
+  private static boolean isSynchronizerPark(final Object blocker) {
+    if (blocker == null) {
+      return false;
+    }
+    if (blocker instanceof AbstractQueuedSynchronizer
+        || blocker instanceof AbstractQueuedLongSynchronizer
+        || blocker instanceof AbstractQueuedSynchronizer.ConditionObject
+        || blocker instanceof AbstractQueuedLongSynchronizer.ConditionObject
+        || blocker instanceof Future
+        || blocker instanceof BlockingQueue
+        || blocker instanceof ForkJoinPool) {
+      return true;
+    }
+    // the waiters of CompletableFuture and SynchronousQueue are nested classes
+    final String className = blocker.getClass().getName();
+    return className.startsWith("java.util.concurrent.CompletableFuture$")
+        || className.startsWith("java.util.concurrent.SynchronousQueue$");
+  }
+
+  /**
+   * Invoked when a thread starts to join a ForkJoinTask that is not done, through join, invoke,
+   * invokeAll or their quiet variants. The join is only reported if the thread then waits, see
+   * {@link #forkJoinPark()}, as the task may instead run inline or complete while the thread helps
+   * to run other tasks.
+   *
+   * @param blockingCall the joining method
+   * @return the join to pass to {@link #endForkJoin(Object)}
+   */
+  public static Object beginForkJoin(final String blockingCall) {
+    final long threadId = Thread.currentThread().getId();
+    final ForkJoin join = new ForkJoin(blockingCall, FORK_JOINS.get(threadId));
+    FORK_JOINS.put(threadId, join);
+    return join;
+  }
+
+  /**
+   * Ends a join begun by {@link #beginForkJoin(String)}. If it waited, it is reported to on-exit
+   * consumers with the time it spent waiting, and the action for the thread role is applied.
+   *
+   * @throws IllegalStateException if the action is {@link FelinePolicy#THROW}, which is not applied
+   *     while the thread waits as the pool may be compensating for it
+   */
+  public static void endForkJoin(final Object forkJoin) {
+    final ForkJoin join = (ForkJoin) forkJoin;
+    final long threadId = Thread.currentThread().getId();
+    if (join.enclosing == null) {
+      FORK_JOINS.remove(threadId);
+    } else {
+      FORK_JOINS.put(threadId, join.enclosing);
+    }
+    final Map<String, Object> data = join.data;
+    if (data == null || data.isEmpty()) {
+      return;
+    }
+    data.remove("startTimeNanos");
+    data.put("blockedTimeNanos", join.waitNanos);
+    acceptOnExit(data);
+    FelinePolicy.enforce(FelinePolicy.currentAction(), join.blockingCall);
+  }
+
+  /** Replaces Object.wait(long) in ForkJoinTask, which waits for a task in Java 8 to 16. */
+  public static void forkJoinWait(final Object monitor, final long millis)
+      throws InterruptedException {
+    final ForkJoin join = beginForkJoinWait();
+    final long startTimeNanos = System.nanoTime();
+    try {
+      monitor.wait(millis);
+    } finally {
+      endForkJoinWait(join, startTimeNanos);
+    }
+  }
+
+  /** Replaces LockSupport.park() in ForkJoinTask, which waits for a task since Java 17. */
+  public static void forkJoinPark() {
+    final ForkJoin join = beginForkJoinWait();
+    final long startTimeNanos = System.nanoTime();
+    try {
+      LockSupport.park();
+    } finally {
+      endForkJoinWait(join, startTimeNanos);
+    }
+  }
+
+  /** Replaces LockSupport.parkNanos(long) in ForkJoinTask. */
+  public static void forkJoinParkNanos(final long nanos) {
+    final ForkJoin join = beginForkJoinWait();
+    final long startTimeNanos = System.nanoTime();
+    try {
+      LockSupport.parkNanos(nanos);
+    } finally {
+      endForkJoinWait(join, startTimeNanos);
+    }
+  }
+
+  // Reports the join in progress on its first wait, and marks the thread as blocked for the
+  // duration of each wait only, so that the tasks it runs in between are still checked
+  private static ForkJoin beginForkJoinWait() {
+    final long threadId = Thread.currentThread().getId();
+    final ForkJoin join = FORK_JOINS.get(threadId);
+    if (join == null) {
+      // e.g. ForkJoinTask.get, which is reported as a Future
+      return null;
+    }
+    if (join.data == null) {
+      join.data = beginBlockingCall(join.blockingCall, "ForkJoinTask", false);
+      return join.data.isEmpty() ? null : join;
+    }
+    if (join.data.isEmpty() || !BLOCKED_THREADS.add(threadId)) {
+      return null;
+    }
+    BLOCKING_CALLS.put(threadId, join.blockingCall);
+    return join;
+  }
+
+  private static void endForkJoinWait(final ForkJoin join, final long startTimeNanos) {
+    if (join != null) {
+      join.waitNanos += System.nanoTime() - startTimeNanos;
+      exitBlockingCall();
+    }
+  }
+
+  /**
+   * Ends a blocking call with the outcome of the wait: "completed", "timedOut", "interrupted" or
+   * "failed" (e.g. an ExecutionException or a cancelled future).
+   */
+  public static void endBlockingCall(final Map<String, Object> data, final Throwable thrown) {
+    if (!data.isEmpty()) {
+      final String outcome;
+      if (thrown == null) {
+        outcome = "completed";
+      } else if (thrown instanceof TimeoutException) {
+        outcome = "timedOut";
+      } else if (thrown instanceof InterruptedException) {
+        outcome = "interrupted";
+      } else {
+        outcome = "failed";
+      }
+      data.put("outcome", outcome);
+    }
+    endBlockingCall(data);
+  }
+
+  /** Reports the end of a call that was reported by {@link #beginBlockingCall(String, String)}. */
+  public static void endBlockingCall(final Map<String, Object> data) {
+    final Object startTimeNanosObj = data.remove("startTimeNanos");
+    if (startTimeNanosObj != null) {
+      exitBlockingCall();
+      final long startTimeNanos = (Long) startTimeNanosObj;
+      data.put("blockedTimeNanos", System.nanoTime() - startTimeNanos);
+      if (Boolean.TRUE.equals(data.get("virtual"))) {
+        final boolean pinned = PINNED_THREADS.remove(Thread.currentThread().getId());
+        if (isDetectorEnabled(DETECT_VIRTUAL_THREADS)) {
+          data.put("pinned", pinned);
+        }
+      }
+      acceptOnExit(data);
+    }
+  }
+
+  public static boolean isVirtual(final Thread thread) {
+    if (IS_VIRTUAL == null) {
+      return false;
+    }
+    try {
+      return (boolean) IS_VIRTUAL.invokeExact(thread);
+    } catch (Throwable e) {
+      return false;
+    }
+  }
+
+  private static MethodHandle isVirtualHandle() {
+    try {
+      return MethodHandles.publicLookup()
+          .findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  public static void addPinnedVirtualThreadConsumer(final Consumer<Map<String, Object>> consumer) {
+    pinnedVirtualThreadConsumers.add(consumer);
+  }
+
+  public static boolean removePinnedVirtualThreadConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return pinnedVirtualThreadConsumers.remove(consumer);
+  }
+
+  /**
+   * Returns the start time of a park of a virtual thread that could not unmount from its carrier,
+   * or Long.MIN_VALUE if it should not be tracked.
+   */
+  public static long pinnedParkStart() {
+    if (!isDetectorEnabled(DETECT_VIRTUAL_THREADS)) {
+      return Long.MIN_VALUE;
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * Invoked when a virtual thread has parked while pinned to its carrier thread, e.g. because it
+   * holds a monitor.
+   *
+   * @param startTimeNanos the start time from {@link #pinnedParkStart()}
+   */
+  public static void acceptPinnedPark(final long startTimeNanos) {
+    final long pinnedTimeNanos = System.nanoTime() - startTimeNanos;
+    final long threadId = Thread.currentThread().getId();
+    final String blockingCall = BLOCKING_CALLS.get(threadId);
+    if (blockingCall != null) {
+      PINNED_THREADS.add(threadId);
+    }
+
+    if (!REPORTING_PINNED_THREADS.add(threadId)) {
+      return;
+    }
+    try {
+      final Map<String, Object> data = new HashMap<>(4);
+      data.put("method", blockingCall);
+      data.put("thread", Thread.currentThread().getName());
+      data.put("pinnedTimeNanos", pinnedTimeNanos);
+      notifyConsumers(pinnedVirtualThreadConsumers, data);
+    } finally {
+      REPORTING_PINNED_THREADS.remove(threadId);
+    }
+  }
+
+  /** Invoked when a virtual thread is created, with the executor that schedules it. */
+  public static void trackCarrierPool(final Executor scheduler) {
+    if (carrierPool == null && scheduler instanceof ForkJoinPool) {
+      carrierPool = (ForkJoinPool) scheduler;
+    }
+  }
+
+  /**
+   * Returns statistics of the pool of carrier threads that run virtual threads, or an empty map if
+   * no virtual thread has been created yet.
+   */
+  public static Map<String, Object> carrierPoolStats() {
+    final ForkJoinPool pool = carrierPool;
+    if (pool == null) {
+      return Collections.emptyMap();
+    }
+    final Map<String, Object> stats = new HashMap<>(8);
+    stats.put("parallelism", pool.getParallelism());
+    stats.put("poolSize", pool.getPoolSize());
+    stats.put("activeThreads", pool.getActiveThreadCount());
+    stats.put("runningThreads", pool.getRunningThreadCount());
+    stats.put("queuedTasks", pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount());
+    return stats;
   }
 
   public static void accept(final String blockingCall) {
@@ -120,4 +802,555 @@ public class FelineRuntime {
       }
     }
   }
+
+  public static void setObjectSizer(final ToLongFunction<Object> sizer) {
+    objectSizer = sizer;
+  }
+
+  public static void setThreadLocalSampleRate(final int sampleRate) {
+    if (sampleRate < 1) {
+      throw new IllegalArgumentException("sampleRate must be positive");
+    }
+    threadLocalSampleRate = sampleRate;
+  }
+
+  public static void addThreadLocalInitializationConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    threadLocalInitializationConsumers.add(consumer);
+  }
+
+  public static boolean removeThreadLocalInitializationConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return threadLocalInitializationConsumers.remove(consumer);
+  }
+
+  public static void setThreadLocalCreationSiteSampleRate(final int sampleRate) {
+    if (sampleRate < 0) {
+      throw new IllegalArgumentException("sampleRate must not be negative");
+    }
+    threadLocalCreationSiteSampleRate = sampleRate;
+  }
+
+  public static void trackThreadLocalCreation(final Object threadLocal) {
+    final int sampleRate = threadLocalCreationSiteSampleRate;
+    if (sampleRate == 0 || ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+      return;
+    }
+    final long threadId = Thread.currentThread().getId();
+    if (!THREAD_LOCAL_THREADS.add(threadId)) {
+      return;
+    }
+    try {
+      final String creationSite = creationSite(threadLocal.getClass());
+      if (creationSite != null) {
+        THREAD_LOCAL_CREATION_SITES.put(threadLocal, creationSite);
+      }
+    } finally {
+      THREAD_LOCAL_THREADS.remove(threadId);
+    }
+  }
+
+  /** Finds the first frame outside of the constructors of the ThreadLocal and of Feline. */
+  private static String creationSite(final Class<?> threadLocalClass) {
+    final Set<String> skipped = new HashSet<>();
+    skipped.add(FelineRuntime.class.getName());
+    for (Class<?> c = threadLocalClass; c != null; c = c.getSuperclass()) {
+      skipped.add(c.getName());
+    }
+    for (final StackTraceElement element : new Throwable().getStackTrace()) {
+      if (!skipped.contains(element.getClassName())) {
+        return element.getClassName() + "." + element.getMethodName();
+      }
+    }
+    return null;
+  }
+
+  public static void acceptThreadLocalInitialization(
+      final Object threadLocal, final Class<?> threadLocalClass, final Object value) {
+    final boolean footprint = isDetectorEnabled(DETECT_THREAD_LOCAL_FOOTPRINT);
+    if (!footprint && threadLocalInitializationConsumers.isEmpty()) {
+      return;
+    }
+    final Thread thread = Thread.currentThread();
+    final long threadId = thread.getId();
+    if (!THREAD_LOCAL_THREADS.add(threadId)) {
+      return;
+    }
+    try {
+      final String name = threadLocalName(threadLocalClass);
+      final boolean virtual = isVirtual(thread);
+
+      if (footprint) {
+        trackThreadLocalFootprint(name, virtual, value);
+      }
+
+      if (!threadLocalInitializationConsumers.isEmpty()) {
+        final Map<String, Object> data = new HashMap<>(8);
+        data.put("threadLocal", name);
+        data.put("thread", thread);
+        data.put("virtual", virtual);
+        if (thread instanceof ForkJoinWorkerThread) {
+          data.put("pool", ((ForkJoinWorkerThread) thread).getPool());
+        }
+        if (threadLocalCreationSiteSampleRate != 0) {
+          final String creationSite = THREAD_LOCAL_CREATION_SITES.get(threadLocal);
+          if (creationSite != null) {
+            data.put("creationSite", creationSite);
+          }
+        }
+        notifyConsumers(threadLocalInitializationConsumers, data);
+      }
+    } finally {
+      THREAD_LOCAL_THREADS.remove(threadId);
+    }
+  }
+
+  public static void setThreadLocalClassResolver(final Function<Object, Class<?>> resolver) {
+    threadLocalClassResolver = resolver;
+  }
+
+  public static String threadLocalName(final Object threadLocal) {
+    return threadLocalName(threadLocalClassResolver.apply(threadLocal));
+  }
+
+  private static String threadLocalName(final Class<?> threadLocalClass) {
+    final String className = threadLocalClass.getName();
+    final int index = className.indexOf("$$Lambda");
+    return index < 0 ? className : className.substring(0, index);
+  }
+
+  public static void acceptThreadLocalSet(final Object threadLocal) {
+    countThreadLocalUpdate(threadLocal, SETS);
+  }
+
+  public static void acceptThreadLocalRemove(final Object threadLocal) {
+    countThreadLocalUpdate(threadLocal, REMOVES);
+  }
+
+  private static void countThreadLocalUpdate(final Object threadLocal, final int counter) {
+    final long threadId = Thread.currentThread().getId();
+    if (!THREAD_LOCAL_THREADS.add(threadId)) {
+      return;
+    }
+    try {
+      THREAD_LOCAL_FOOTPRINT
+          .computeIfAbsent(threadLocalName(threadLocal), k -> newCounters(6))[counter].increment();
+    } finally {
+      THREAD_LOCAL_THREADS.remove(threadId);
+    }
+  }
+
+  private static void trackThreadLocalFootprint(
+      final String name, final boolean virtual, final Object value) {
+    final LongAdder[] counters = THREAD_LOCAL_FOOTPRINT.computeIfAbsent(name, k -> newCounters(6));
+    counters[virtual ? VIRTUAL_INITIALIZATIONS : PLATFORM_INITIALIZATIONS].increment();
+
+    final ToLongFunction<Object> sizer = objectSizer;
+    if (sizer == null || ThreadLocalRandom.current().nextInt(threadLocalSampleRate) != 0) {
+      return;
+    }
+    try {
+      final long bytes = estimateSize(sizer, value);
+      counters[SAMPLED_BYTES].add(bytes);
+      counters[SAMPLED_INITIALIZATIONS].increment();
+    } catch (Exception e) {
+      // Ignore values that can not be measured
+    }
+  }
+
+  private static LongAdder[] newCounters(final int count) {
+    final LongAdder[] counters = new LongAdder[count];
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] = new LongAdder();
+    }
+    return counters;
+  }
+
+  /**
+   * Estimates the size of an initial value: the value itself plus its elements, if it is an array,
+   * collection or map. Large containers are extrapolated from their first elements.
+   */
+  private static long estimateSize(final ToLongFunction<Object> sizer, final Object value) {
+    if (value == null) {
+      return 0;
+    }
+    long bytes = sizer.applyAsLong(value);
+    if (value instanceof Object[]) {
+      final Object[] array = (Object[]) value;
+      bytes += estimateElements(sizer, Arrays.asList(array), array.length);
+    } else if (value instanceof Collection) {
+      final Collection<?> collection = (Collection<?>) value;
+      bytes += estimateElements(sizer, collection, collection.size());
+    } else if (value instanceof Map) {
+      final Map<?, ?> map = (Map<?, ?>) value;
+      bytes += estimateElements(sizer, map.keySet(), map.size());
+      bytes += estimateElements(sizer, map.values(), map.size());
+    }
+    return bytes;
+  }
+
+  private static long estimateElements(
+      final ToLongFunction<Object> sizer, final Iterable<?> elements, final int size) {
+    long bytes = 0;
+    int sampled = 0;
+    for (final Object element : elements) {
+      if (sampled == MAX_SAMPLED_ELEMENTS) {
+        return bytes * size / sampled;
+      }
+      if (element != null) {
+        bytes += sizer.applyAsLong(element);
+      }
+      sampled++;
+    }
+    return bytes;
+  }
+
+  public static Map<String, Map<String, Long>> threadLocalFootprint() {
+    final Map<String, Map<String, Long>> footprint = new HashMap<>();
+    THREAD_LOCAL_FOOTPRINT.forEach(
+        (threadLocalClass, counters) -> {
+          final long sampled = counters[SAMPLED_INITIALIZATIONS].sum();
+          final long sampledBytes = counters[SAMPLED_BYTES].sum();
+          final Map<String, Long> stats = new HashMap<>();
+          stats.put("platformInitializations", counters[PLATFORM_INITIALIZATIONS].sum());
+          stats.put("virtualInitializations", counters[VIRTUAL_INITIALIZATIONS].sum());
+          stats.put("sampledInitializations", sampled);
+          stats.put("sampledBytes", sampledBytes);
+          stats.put("averageBytes", sampled == 0 ? 0 : sampledBytes / sampled);
+          stats.put("sets", counters[SETS].sum());
+          stats.put("removes", counters[REMOVES].sum());
+          footprint.put(threadLocalClass, stats);
+        });
+    return footprint;
+  }
+
+  public static void resetThreadLocalFootprint() {
+    THREAD_LOCAL_FOOTPRINT.clear();
+  }
+
+  public static void addForkJoinCompensationConsumer(final Consumer<Map<String, Object>> consumer) {
+    forkJoinCompensationConsumers.add(consumer);
+  }
+
+  public static boolean removeForkJoinCompensationConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return forkJoinCompensationConsumers.remove(consumer);
+  }
+
+  /**
+   * Returns the size of the pool of the current ForkJoinPool worker thread, or -1 if the current
+   * thread is not a worker or if nobody is interested in compensation events.
+   */
+  public static int forkJoinPoolSize() {
+    if (forkJoinCompensationConsumers.isEmpty()) {
+      return -1;
+    }
+    final Thread thread = Thread.currentThread();
+    if (!(thread instanceof ForkJoinWorkerThread)) {
+      return -1;
+    }
+    return ((ForkJoinWorkerThread) thread).getPool().getPoolSize();
+  }
+
+  /**
+   * Invoked when a worker returns from {@link ForkJoinPool#managedBlock}. If the pool grew while
+   * the worker was blocked, the new workers are attributed to the blocking call of this thread.
+   */
+  public static void acceptForkJoinCompensation(final int poolSizeBefore) {
+    final ForkJoinPool pool = ((ForkJoinWorkerThread) Thread.currentThread()).getPool();
+    final int poolSize = pool.getPoolSize();
+    if (poolSize <= poolSizeBefore) {
+      return;
+    }
+
+    String blockingCall = BLOCKING_CALLS.get(Thread.currentThread().getId());
+    if (blockingCall == null) {
+      blockingCall =
+          "java.util.concurrent.ForkJoinPool.managedBlock"
+              + "(java.util.concurrent.ForkJoinPool$ManagedBlocker)";
+    }
+
+    final Map<String, Object> data = new HashMap<>(8);
+    data.put("method", blockingCall);
+    data.put("pool", pool);
+    data.put("compensatedWorkers", poolSize - poolSizeBefore);
+    data.put("poolSize", poolSize);
+    notifyConsumers(forkJoinCompensationConsumers, data);
+  }
+
+  public static void setForkJoinCompensation(final boolean enabled) {
+    forkJoinCompensation = enabled;
+  }
+
+  /**
+   * Waits for the future through {@link ForkJoinPool#managedBlock} if compensation is enabled and
+   * the current thread is a ForkJoinPool worker, which lets the pool activate a spare worker while
+   * this one is blocked. Once this returns, the future is done, the timeout has elapsed or the
+   * thread was interrupted, so the original call returns without blocking if it is made with a
+   * timeout of 0.
+   *
+   * @param timeoutNanos the timeout of the call, or -1 if it waits until the future is done
+   * @return true if the wait was routed through managedBlock
+   */
+  public static boolean compensate(final Future<?> future, final long timeoutNanos) {
+    if (!forkJoinCompensation
+        || !(Thread.currentThread() instanceof ForkJoinWorkerThread)
+        // CompletableFuture already waits through managedBlock, and ForkJoinTask helps or
+        // compensates by itself
+        || future instanceof CompletableFuture
+        || future instanceof ForkJoinTask) {
+      return false;
+    }
+
+    try {
+      ForkJoinPool.managedBlock(new FutureBlocker(future, timeoutNanos));
+    } catch (InterruptedException e) {
+      // restore the flag so that the original call throws instead
+      Thread.currentThread().interrupt();
+    } catch (RejectedExecutionException e) {
+      // the pool could not add a spare worker, fall back to a regular blocking call
+      return false;
+    }
+    return true;
+  }
+
+  static final class FutureBlocker implements ForkJoinPool.ManagedBlocker {
+    private final Future<?> future;
+    private final boolean timed;
+    private final long deadlineNanos;
+
+    FutureBlocker(final Future<?> future, final long timeoutNanos) {
+      this.future = future;
+      this.timed = timeoutNanos >= 0;
+      this.deadlineNanos = timed ? System.nanoTime() + timeoutNanos : 0;
+    }
+
+    @Override
+    public boolean block() throws InterruptedException {
+      try {
+        if (!timed) {
+          future.get();
+        } else {
+          final long remainingNanos = deadlineNanos - System.nanoTime();
+          if (remainingNanos > 0) {
+            future.get(remainingNanos, TimeUnit.NANOSECONDS);
+          }
+        }
+      } catch (ExecutionException | TimeoutException | RuntimeException e) {
+        // Ignore, the original call reports the failure or the timeout
+      }
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      return future.isDone() || (timed && deadlineNanos - System.nanoTime() <= 0);
+    }
+  }
+
+  public static void addCommonPoolSubmissionConsumer(final Consumer<Map<String, Object>> consumer) {
+    commonPoolSubmissionConsumers.add(consumer);
+  }
+
+  public static boolean removeCommonPoolSubmissionConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return commonPoolSubmissionConsumers.remove(consumer);
+  }
+
+  public static void addCommonPoolExecutionConsumer(final Consumer<Map<String, Object>> consumer) {
+    commonPoolExecutionConsumers.add(consumer);
+  }
+
+  public static boolean removeCommonPoolExecutionConsumer(
+      final Consumer<Map<String, Object>> consumer) {
+    return commonPoolExecutionConsumers.remove(consumer);
+  }
+
+  /**
+   * Invoked when an async CompletableFuture method that does not take an executor is entered.
+   *
+   * @param method the submitting method
+   * @return true if the submission was begun, and must be ended by {@link
+   *     #endCommonPoolSubmission(boolean)}
+   */
+  public static boolean beginCommonPoolSubmission(final String method) {
+    if (!isDetectorEnabled(DETECT_COMMON_POOL_ASYNC)) {
+      return false;
+    }
+    // only the outermost method submits, e.g. when a subclass delegates to its superclass
+    return COMMON_POOL_SUBMITTERS.putIfAbsent(Thread.currentThread().getId(), method) == null;
+  }
+
+  public static void endCommonPoolSubmission(final boolean begun) {
+    if (begun) {
+      COMMON_POOL_SUBMITTERS.remove(Thread.currentThread().getId());
+    }
+  }
+
+  /**
+   * Invoked when an async CompletableFuture task is created. The task is tracked if it is created
+   * by a method that submits it without an explicit executor.
+   *
+   * @param future the dependent future, which is completed by the task
+   */
+  public static void acceptCommonPoolTask(final Object future) {
+    if (COMMON_POOL_SUBMITTERS.isEmpty() || future == null) {
+      return;
+    }
+    final String method = COMMON_POOL_SUBMITTERS.get(Thread.currentThread().getId());
+    if (method == null) {
+      return;
+    }
+    final Map<String, Object> data = new HashMap<>(4);
+    data.put("method", method);
+    data.put("future", future);
+    notifyConsumers(commonPoolSubmissionConsumers, data);
+
+    // the task is not submitted yet, so it can not have run
+    COMMON_POOL_TASKS.put(future, method);
+  }
+
+  /**
+   * Returns the start time of an async CompletableFuture task, or Long.MIN_VALUE if the task should
+   * not be timed.
+   */
+  public static long commonPoolTaskStart(final Object future) {
+    if (!isDetectorEnabled(DETECT_COMMON_POOL_ASYNC)
+        || future == null
+        || !onDefaultAsyncExecutor()) {
+      return Long.MIN_VALUE;
+    }
+    return System.nanoTime();
+  }
+
+  // Whether the current thread may run tasks of the default executor of CompletableFuture, to
+  // avoid looking up tasks that were submitted to other executors
+  private static boolean onDefaultAsyncExecutor() {
+    final Thread thread = Thread.currentThread();
+    if (thread instanceof ForkJoinWorkerThread) {
+      return ((ForkJoinWorkerThread) thread).getPool() == ForkJoinPool.commonPool();
+    }
+    // without common pool parallelism, CompletableFuture starts a new thread for each task
+    return ForkJoinPool.getCommonPoolParallelism() <= 1;
+  }
+
+  public static void acceptCommonPoolExecution(final Object future, final long startTimeNanos) {
+    final long runTimeNanos = System.nanoTime() - startTimeNanos;
+    final String method = COMMON_POOL_TASKS.remove(future);
+    if (method == null) {
+      // submitted with an explicit executor, or before the detector was enabled
+      return;
+    }
+    notifyCommonPoolExecution(method, future, runTimeNanos);
+  }
+
+  private static void notifyCommonPoolExecution(
+      final String method, final Object future, final long runTimeNanos) {
+    final Map<String, Object> data = new HashMap<>(4);
+    data.put("method", method);
+    data.put("future", future);
+    data.put("runTimeNanos", runTimeNanos);
+    notifyConsumers(commonPoolExecutionConsumers, data);
+  }
+
+  public static void addSlowCallbackConsumer(final Consumer<Map<String, Object>> consumer) {
+    slowCallbackConsumers.add(consumer);
+  }
+
+  public static boolean removeSlowCallbackConsumer(final Consumer<Map<String, Object>> consumer) {
+    return slowCallbackConsumers.remove(consumer);
+  }
+
+  public static void setSlowCallbackThresholdNanos(final long thresholdNanos) {
+    slowCallbackThresholdNanos = thresholdNanos;
+  }
+
+  /**
+   * Returns the start time of a dependent-stage callback, less the time of the callbacks that
+   * already ran nested on the current thread, or Long.MIN_VALUE if it should not be timed.
+   * Callbacks are not timed on threads whose role ignores blocking calls.
+   */
+  public static long callbackStart() {
+    if (!isDetectorEnabled(DETECT_SLOW_CALLBACKS)
+        || FelinePolicy.currentAction() == FelinePolicy.IGNORE) {
+      return Long.MIN_VALUE;
+    }
+    final long[] nested =
+        CALLBACK_THREADS.computeIfAbsent(Thread.currentThread().getId(), id -> new long[2]);
+    nested[0]++;
+    return System.nanoTime() - nested[1];
+  }
+
+  /**
+   * Invoked when a dependent-stage callback ran inline, on the thread that completed its source.
+   * Firing a stage also completes its dependent future, which may run further callbacks on the same
+   * thread; their time is not included in the run time of this callback.
+   *
+   * @param stage the completion type, e.g. java.util.concurrent.CompletableFuture$UniApply
+   * @param callback the function, consumer or runnable of the stage
+   * @param startTimeNanos the start time from {@link #callbackStart()}
+   */
+  public static void acceptCallback(
+      final String stage, final Object callback, final long startTimeNanos) {
+    final long threadId = Thread.currentThread().getId();
+    final long[] nested = CALLBACK_THREADS.get(threadId);
+    final long runTimeNanos = System.nanoTime() - nested[1] - startTimeNanos;
+    if (--nested[0] == 0) {
+      CALLBACK_THREADS.remove(threadId);
+    } else {
+      // exclude this callback, including its nested callbacks, from the enclosing one
+      nested[1] += runTimeNanos;
+    }
+    if (runTimeNanos < slowCallbackThresholdNanos) {
+      return;
+    }
+
+    final Map<String, Object> data = new HashMap<>(8);
+    data.put("stage", stage);
+    // for lambdas, the class name identifies where the callback was registered
+    data.put("callback", callback.getClass().getName());
+    data.put("thread", Thread.currentThread().getName());
+    data.put("runTimeNanos", runTimeNanos);
+    notifyConsumers(slowCallbackConsumers, data);
+  }
+
+  private static void notifyConsumers(
+      final List<Consumer<Map<String, Object>>> consumers, final Map<String, Object> data) {
+    for (final Consumer<Map<String, Object>> consumer : consumers) {
+      try {
+        consumer.accept(data);
+      } catch (Exception e) {
+        // Ignore
+      }
+    }
+  }
+
+  private static final class HeldLocks {
+    final WeakReference<Thread> thread;
+    final List<Object> locks = new ArrayList<>(4);
+
+    HeldLocks(final Thread thread) {
+      this.thread = new WeakReference<>(thread);
+    }
+
+    boolean isTerminated() {
+      final Thread thread = this.thread.get();
+      return thread == null || !thread.isAlive();
+    }
+  }
+
+  private static final class ForkJoin {
+
+    final String blockingCall;
+    final ForkJoin enclosing;
+
+    // null until the first wait, and empty if the join is not reported
+    Map<String, Object> data;
+    long waitNanos;
+
+    ForkJoin(final String blockingCall, final ForkJoin enclosing) {
+      this.blockingCall = blockingCall;
+      this.enclosing = enclosing;
+    }
+  }
 }
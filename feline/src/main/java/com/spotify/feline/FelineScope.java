@@ -0,0 +1,120 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static net.bytebuddy.matcher.ElementMatchers.nameContains;
+import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith;
+import static net.bytebuddy.matcher.ElementMatchers.none;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+
+/**
+ * The classes that the agent ignores. Ignored classes are rejected by name, before any of the (more
+ * expensive) type matchers of the agent runs.
+ *
+ * <p>Generated classes, such as reflection accessors and proxies, are always ignored. Classes of
+ * the JDK are always matched, while other classes can be excluded, or limited to an included set,
+ * by name prefix.
+ */
+final class FelineScope {
+
+  static final String INCLUDE_PROPERTY = "feline.include";
+  static final String EXCLUDE_PROPERTY = "feline.exclude";
+
+  private static final String[] JDK_PREFIXES = {"java.", "javax.", "jdk.", "sun.", "com.sun."};
+
+  private static final String[] GENERATED_PREFIXES = {
+    "com.intellij.rt.",
+    "net.bytebuddy.",
+    "sun.reflect.Generated",
+    "jdk.internal.reflect.Generated",
+    "com.sun.proxy.$Proxy",
+    "jdk.proxy"
+  };
+
+  private static final String[] GENERATED_INFIXES = {"$$Lambda", "$$EnhancerBy", "$$FastClassBy"};
+
+  private final List<String> include;
+  private final List<String> exclude;
+
+  FelineScope(final List<String> include, final List<String> exclude) {
+    this.include = include;
+    this.exclude = exclude;
+  }
+
+  static List<String> prefixes(final String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<String> prefixes = new ArrayList<>();
+    for (final String prefix : value.split(",")) {
+      if (!prefix.trim().isEmpty()) {
+        prefixes.add(prefix.trim());
+      }
+    }
+    return prefixes;
+  }
+
+  ElementMatcher.Junction<TypeDescription> ignored() {
+    ElementMatcher.Junction<TypeDescription> ignored = none();
+    for (final String prefix : GENERATED_PREFIXES) {
+      ignored = ignored.or(nameStartsWith(prefix));
+    }
+    for (final String infix : GENERATED_INFIXES) {
+      ignored = ignored.or(nameContains(infix));
+    }
+    for (final String prefix : exclude) {
+      ignored = ignored.or(nameStartsWith(prefix));
+    }
+    if (!include.isEmpty()) {
+      ElementMatcher.Junction<TypeDescription> included = none();
+      for (final String prefix : JDK_PREFIXES) {
+        included = included.or(nameStartsWith(prefix));
+      }
+      for (final String prefix : include) {
+        included = included.or(nameStartsWith(prefix));
+      }
+      ignored = ignored.or(not(included));
+    }
+    return ignored;
+  }
+}
@@ -0,0 +1,333 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static net.bytebuddy.matcher.ElementMatchers.isNative;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Modifier;
+import java.security.ProtectionDomain;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.bytebuddy.ClassFileVersion;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.implementation.SuperMethodCall;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.utility.JavaModule;
+
+/**
+ * Detects Thread.sleep and LockSupport.park, and records how long the thread asked to wait.
+ *
+ * <p>Native methods can not be instrumented directly: before Java 19, Thread.sleep(long) is native
+ * and is wrapped by {@link #forNativeSleep()} instead, where the JVM allows it.
+ */
+class FelineSleepTransformer implements AgentBuilder.Transformer {
+
+  /** The prefix of native methods that are wrapped by a method with their original name. */
+  static final String NATIVE_METHOD_PREFIX = "feline$native$";
+
+  private final Class<?> advice;
+  private final ElementMatcher.Junction<MethodDescription> matcher;
+
+  public static AgentBuilder.Transformer forSleep() {
+    return new FelineSleepTransformer(
+        SleepAdvice.class, named("sleep").and(takesArguments(long.class)).and(not(isNative())));
+  }
+
+  /**
+   * Applies to Thread.sleep(long) where it is native. The native method is renamed with {@link
+   * #NATIVE_METHOD_PREFIX}, and a method with the original name that calls it is added, which
+   * requires a rebasing agent with that native method prefix.
+   */
+  public static AgentBuilder.Transformer forNativeSleep() {
+    return (builder, typeDescription, classLoader, javaModule, protectionDomain) ->
+        builder
+            .method(named("sleep").and(takesArguments(long.class)).and(isNative()))
+            .intercept(Advice.to(SleepAdvice.class).wrap(SuperMethodCall.INSTANCE));
+  }
+
+  /**
+   * Returns true if Thread.sleep(long) is native and can be wrapped. Wrapping adds a method to
+   * Thread, which is already loaded, and retransformation may only add methods up to Java 12.
+   */
+  static boolean canWrapNativeSleep(final Instrumentation instrumentation) {
+    try {
+      return Modifier.isNative(Thread.class.getMethod("sleep", long.class).getModifiers())
+          && ClassFileVersion.ofThisVm().isLessThan(ClassFileVersion.JAVA_V13)
+          && instrumentation.isNativeMethodPrefixSupported();
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  public static AgentBuilder.Transformer forSleepNanos() {
+    return new FelineSleepTransformer(
+        SleepNanosAdvice.class,
+        named("sleep").and(takesArguments(long.class, int.class)).and(not(isNative())));
+  }
+
+  /** Applies to Thread.sleep(Duration), which exists since Java 19. */
+  public static AgentBuilder.Transformer forSleepDuration() {
+    return new FelineSleepTransformer(
+        SleepDurationAdvice.class, named("sleep").and(takesArguments(Duration.class)));
+  }
+
+  /** Applies to park(), which waits until unparked. */
+  public static AgentBuilder.Transformer forPark() {
+    return new FelineSleepTransformer(ParkAdvice.class, named("park").and(takesArguments(0)));
+  }
+
+  public static AgentBuilder.Transformer forParkBlocker() {
+    return new FelineSleepTransformer(
+        ParkBlockerAdvice.class, named("park").and(takesArguments(Object.class)));
+  }
+
+  public static AgentBuilder.Transformer forParkNanos() {
+    return new FelineSleepTransformer(
+        ParkNanosAdvice.class, named("parkNanos").and(takesArguments(long.class)));
+  }
+
+  public static AgentBuilder.Transformer forParkNanosBlocker() {
+    return new FelineSleepTransformer(
+        ParkNanosBlockerAdvice.class,
+        named("parkNanos").and(takesArguments(Object.class, long.class)));
+  }
+
+  public static AgentBuilder.Transformer forParkUntil() {
+    return new FelineSleepTransformer(
+        ParkUntilAdvice.class, named("parkUntil").and(takesArguments(long.class)));
+  }
+
+  public static AgentBuilder.Transformer forParkUntilBlocker() {
+    return new FelineSleepTransformer(
+        ParkUntilBlockerAdvice.class,
+        named("parkUntil").and(takesArguments(Object.class, long.class)));
+  }
+
+  private FelineSleepTransformer(
+      final Class<?> advice, final ElementMatcher.Junction<MethodDescription> matcher) {
+    this.advice = advice;
+    this.matcher = matcher;
+  }
+
+  @Override
+  public Builder<?> transform(
+      final Builder<?> builder,
+      final TypeDescription typeDescription,
+      final ClassLoader classLoader,
+      final JavaModule javaModule,
+      final ProtectionDomain protectionDomain) {
+    return builder.visit(Advice.to(advice).on(matcher));
+  }
+
+  static class SleepAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.Argument(0) final long millis, @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SLEEP_AND_PARK) || millis <= 0) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginTimedBlockingCall(
+          methodCall, "Thread", TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class SleepNanosAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.Argument(0) final long millis,
+        @Advice.Argument(1) final int nanos,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SLEEP_AND_PARK)
+          || (millis <= 0 && nanos <= 0)) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginTimedBlockingCall(
+          methodCall, "Thread", TimeUnit.MILLISECONDS.toNanos(millis) + nanos);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class SleepDurationAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.Argument(0) final Duration duration,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SLEEP_AND_PARK)
+          || duration.isNegative()
+          || duration.isZero()) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginTimedBlockingCall(methodCall, "Thread", duration.toNanos());
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class ParkAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(@Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SLEEP_AND_PARK)) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginPark(methodCall, null, -1);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class ParkBlockerAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.Argument(0) final Object blocker,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SLEEP_AND_PARK)) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginPark(methodCall, blocker, -1);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class ParkNanosAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.Argument(0) final long nanos, @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SLEEP_AND_PARK) || nanos <= 0) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginPark(methodCall, null, nanos);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class ParkNanosBlockerAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.Argument(0) final Object blocker,
+        @Advice.Argument(1) final long nanos,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SLEEP_AND_PARK) || nanos <= 0) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginPark(methodCall, blocker, nanos);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class ParkUntilAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.Argument(0) final long deadline,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      final long millis = deadline - System.currentTimeMillis();
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SLEEP_AND_PARK) || millis <= 0) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginPark(methodCall, null, TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class ParkUntilBlockerAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.Argument(0) final Object blocker,
+        @Advice.Argument(1) final long deadline,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      final long millis = deadline - System.currentTimeMillis();
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SLEEP_AND_PARK) || millis <= 0) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginPark(methodCall, blocker, TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+}
@@ -0,0 +1,338 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
+
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.utility.JavaModule;
+
+/**
+ * Detects blocking calls to java.util.concurrent synchronizers other than Future, such as
+ * CountDownLatch.await and BlockingQueue.take. Like {@link FelineTransformer.FutureCallAdvice},
+ * each advice first checks if the call would block, where that can be done cheaply.
+ */
+class FelineSynchronizerTransformer implements AgentBuilder.Transformer {
+
+  private final Class<?> advice;
+  private final ElementMatcher.Junction<MethodDescription> matcher;
+
+  public static AgentBuilder.Transformer forCountDownLatch() {
+    return new FelineSynchronizerTransformer(LatchAdvice.class, named("await"));
+  }
+
+  /** Applies to the methods of Semaphore that acquire a single permit. */
+  public static AgentBuilder.Transformer forSemaphore() {
+    return new FelineSynchronizerTransformer(
+        SemaphoreAdvice.class,
+        named("acquire")
+            .or(named("acquireUninterruptibly"))
+            .and(takesArguments(0))
+            .or(named("tryAcquire").and(takesArguments(long.class, TimeUnit.class))));
+  }
+
+  /** Applies to the methods of Semaphore that acquire a number of permits. */
+  public static AgentBuilder.Transformer forSemaphorePermits() {
+    return new FelineSynchronizerTransformer(
+        SemaphorePermitsAdvice.class,
+        named("acquire")
+            .or(named("acquireUninterruptibly"))
+            .and(takesArguments(int.class))
+            .or(named("tryAcquire").and(takesArguments(int.class, long.class, TimeUnit.class))));
+  }
+
+  public static AgentBuilder.Transformer forBlockingQueueTake() {
+    return new FelineSynchronizerTransformer(
+        TakeAdvice.class, named("take").and(takesArguments(0)).and(not(isAbstract())));
+  }
+
+  public static AgentBuilder.Transformer forBlockingQueuePut() {
+    return new FelineSynchronizerTransformer(
+        PutAdvice.class, named("put").and(takesArguments(1)).and(not(isAbstract())));
+  }
+
+  public static AgentBuilder.Transformer forCyclicBarrier() {
+    return new FelineSynchronizerTransformer(BarrierAdvice.class, named("await"));
+  }
+
+  public static AgentBuilder.Transformer forThread() {
+    return new FelineSynchronizerTransformer(JoinAdvice.class, named("join"));
+  }
+
+  public static AgentBuilder.Transformer forExecutorServiceInvokeAll() {
+    return new FelineSynchronizerTransformer(
+        InvokeAllAdvice.class, named("invokeAll").and(not(isAbstract())));
+  }
+
+  public static AgentBuilder.Transformer forExecutorServiceAwaitTermination() {
+    return new FelineSynchronizerTransformer(
+        AwaitTerminationAdvice.class, named("awaitTermination").and(not(isAbstract())));
+  }
+
+  /**
+   * Applies to ThreadPoolExecutor.getTask, where idle workers wait for tasks. That is how a pool is
+   * meant to work, so it should not be reported as blocking.
+   */
+  public static AgentBuilder.Transformer forThreadPoolExecutor() {
+    return new FelineSynchronizerTransformer(IdleWorkerAdvice.class, named("getTask"));
+  }
+
+  /** Applies to ForkJoinPool.awaitWork, where idle workers wait for tasks. */
+  public static AgentBuilder.Transformer forForkJoinPool() {
+    return new FelineSynchronizerTransformer(IdleWorkerAdvice.class, named("awaitWork"));
+  }
+
+  private FelineSynchronizerTransformer(
+      final Class<?> advice, final ElementMatcher.Junction<MethodDescription> matcher) {
+    this.advice = advice;
+    this.matcher = matcher;
+  }
+
+  @Override
+  public Builder<?> transform(
+      final Builder<?> builder,
+      final TypeDescription typeDescription,
+      final ClassLoader classLoader,
+      final JavaModule javaModule,
+      final ProtectionDomain protectionDomain) {
+    return builder.visit(Advice.to(advice).on(matcher));
+  }
+
+  static class LatchAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.This final CountDownLatch latch,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SYNCHRONIZERS)
+          || latch.getCount() == 0) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "CountDownLatch");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class SemaphoreAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.This final Semaphore semaphore, @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SYNCHRONIZERS)
+          || semaphore.availablePermits() > 0) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "Semaphore");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class SemaphorePermitsAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.This final Semaphore semaphore,
+        @Advice.Argument(0) final int permits,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SYNCHRONIZERS)
+          || semaphore.availablePermits() >= permits) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "Semaphore");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class TakeAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.This final BlockingQueue<?> queue,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SYNCHRONIZERS)
+          || !queue.isEmpty()) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "BlockingQueue");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class PutAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.This final BlockingQueue<?> queue,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SYNCHRONIZERS)
+          || queue.remainingCapacity() > 0) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "BlockingQueue");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class BarrierAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.This final CyclicBarrier barrier,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      // the last party to arrive trips the barrier, and does not wait
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SYNCHRONIZERS)
+          || barrier.isBroken()
+          || barrier.getNumberWaiting() + 1 >= barrier.getParties()) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "CyclicBarrier");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class JoinAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.This final Thread thread, @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SYNCHRONIZERS)
+          || !thread.isAlive()) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "Thread");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class InvokeAllAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(@Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SYNCHRONIZERS)) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "ExecutorService");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class AwaitTerminationAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.This final ExecutorService executor,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_SYNCHRONIZERS)
+          || executor.isTerminated()) {
+        return Collections.emptyMap();
+      }
+      return FelineRuntime.beginBlockingCall(methodCall, "ExecutorService");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Map<String, Object> data) {
+      FelineRuntime.endBlockingCall(data);
+    }
+  }
+
+  static class IdleWorkerAdvice {
+
+    @Advice.OnMethodEnter
+    static boolean onEnter() {
+      // returns false if the thread was already marked, in which case it must stay marked
+      return FelineRuntime.isDetectorEnabled(
+              FelineRuntime.DETECT_SYNCHRONIZERS | FelineRuntime.DETECT_SLEEP_AND_PARK)
+          && FelineRuntime.BLOCKED_THREADS.add(Thread.currentThread().getId());
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final boolean marked) {
+      if (marked) {
+        FelineRuntime.BLOCKED_THREADS.remove(Thread.currentThread().getId());
+      }
+    }
+  }
+}
@@ -36,26 +36,36 @@
 
 package com.spotify.feline;
 
+import static net.bytebuddy.matcher.ElementMatchers.isBridge;
+import static net.bytebuddy.matcher.ElementMatchers.isConstructor;
+import static net.bytebuddy.matcher.ElementMatchers.isPublic;
 import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
 
 import java.security.ProtectionDomain;
 import net.bytebuddy.agent.builder.AgentBuilder;
 import net.bytebuddy.asm.Advice;
-import net.bytebuddy.description.NamedElement;
+import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
 import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.utility.JavaModule;
 
 class FelineThreadLocalTransformer implements AgentBuilder.Transformer {
 
-  private final ElementMatcher.Junction<NamedElement> matcher;
+  // The ThreadLocal created by ThreadLocal.withInitial, which is better identified by its supplier
+  private static final String SUPPLIED_THREAD_LOCAL = "java.lang.ThreadLocal$SuppliedThreadLocal";
+
+  private final ElementMatcher.Junction<MethodDescription> matcher;
 
   public static AgentBuilder.Transformer forThreadLocal() {
-    return new FelineThreadLocalTransformer(named("initialValue"));
+    // bridge methods of subclasses that narrow the return type call the actual initialValue
+    return new FelineThreadLocalTransformer(named("initialValue").and(not(isBridge())));
   }
 
-  private FelineThreadLocalTransformer(final ElementMatcher.Junction<NamedElement> matcher) {
+  private FelineThreadLocalTransformer(final ElementMatcher.Junction<MethodDescription> matcher) {
     this.matcher = matcher;
   }
 
@@ -67,14 +77,79 @@ class FelineThreadLocalTransformer implements AgentBuilder.Transformer {
       final JavaModule javaModule,
       final ProtectionDomain protectionDomain) {
 
-    return builder.visit(Advice.to(FutureCallAdvice.class).on(matcher));
+    final Class<?> advice =
+        typeDescription.getName().equals(SUPPLIED_THREAD_LOCAL)
+            ? SuppliedInitialValueAdvice.class
+            : InitialValueAdvice.class;
+    final Builder<?> initialValueBuilder = builder.visit(Advice.to(advice).on(matcher));
+    if (typeDescription.represents(ThreadLocal.class)) {
+      // every ThreadLocal, including subclasses, goes through these constructors and methods
+      return initialValueBuilder
+          .visit(Advice.to(ConstructorAdvice.class).on(isConstructor()))
+          .visit(Advice.to(SetAdvice.class).on(named("set").and(isPublic()).and(takesArguments(1))))
+          .visit(
+              Advice.to(RemoveAdvice.class)
+                  .on(named("remove").and(isPublic()).and(takesArguments(0))));
+    }
+    return initialValueBuilder;
+  }
+
+  static class InitialValueAdvice {
+
+    @Advice.OnMethodEnter
+    static void onEnter() {
+      FelineRuntime.acceptThreadLocalInitialValue();
+    }
+
+    @Advice.OnMethodExit
+    static void onExit(
+        @Advice.This final Object threadLocal,
+        @Advice.Return(typing = Assigner.Typing.DYNAMIC) final Object value) {
+      FelineRuntime.acceptThreadLocalInitialization(threadLocal, threadLocal.getClass(), value);
+    }
   }
 
-  static class FutureCallAdvice {
+  static class SuppliedInitialValueAdvice {
 
     @Advice.OnMethodEnter
     static void onEnter() {
       FelineRuntime.acceptThreadLocalInitialValue();
     }
+
+    @Advice.OnMethodExit
+    static void onExit(
+        @Advice.This final Object threadLocal,
+        @Advice.FieldValue("supplier") final Object supplier,
+        @Advice.Return(typing = Assigner.Typing.DYNAMIC) final Object value) {
+      FelineRuntime.acceptThreadLocalInitialization(threadLocal, supplier.getClass(), value);
+    }
+  }
+
+  static class ConstructorAdvice {
+
+    @Advice.OnMethodExit
+    static void onExit(@Advice.This final Object threadLocal) {
+      FelineRuntime.trackThreadLocalCreation(threadLocal);
+    }
+  }
+
+  static class SetAdvice {
+
+    @Advice.OnMethodEnter
+    static void onEnter(@Advice.This final Object threadLocal) {
+      if (FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_THREAD_LOCAL_MAPS)) {
+        FelineRuntime.acceptThreadLocalSet(threadLocal);
+      }
+    }
+  }
+
+  static class RemoveAdvice {
+
+    @Advice.OnMethodEnter
+    static void onEnter(@Advice.This final Object threadLocal) {
+      if (FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_THREAD_LOCAL_MAPS)) {
+        FelineRuntime.acceptThreadLocalRemove(threadLocal);
+      }
+    }
   }
 }
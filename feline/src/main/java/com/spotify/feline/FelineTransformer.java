@@ -36,16 +36,22 @@
 
 package com.spotify.feline;
 
+import static net.bytebuddy.matcher.ElementMatchers.isDeclaredBy;
+import static net.bytebuddy.matcher.ElementMatchers.isMethod;
 import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
 
 import java.security.ProtectionDomain;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import net.bytebuddy.agent.builder.AgentBuilder;
 import net.bytebuddy.asm.Advice;
-import net.bytebuddy.description.NamedElement;
+import net.bytebuddy.asm.MemberSubstitution;
+import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType.Builder;
 import net.bytebuddy.matcher.ElementMatcher;
@@ -53,17 +59,71 @@ import net.bytebuddy.utility.JavaModule;
 
 class FelineTransformer implements AgentBuilder.Transformer {
 
-  private final ElementMatcher.Junction<NamedElement> matcher;
+  private final Class<?> advice;
+  private final ElementMatcher.Junction<MethodDescription> matcher;
 
   public static FelineTransformer forCompletableFuture() {
-    return new FelineTransformer(named("get").or(named("join")));
+    return new FelineTransformer(
+        FutureCallAdvice.class, named("get").and(takesArguments(0)).or(named("join")));
   }
 
   public static AgentBuilder.Transformer forFuture() {
-    return new FelineTransformer(named("get"));
+    return new FelineTransformer(FutureCallAdvice.class, named("get").and(takesArguments(0)));
   }
 
-  private FelineTransformer(final ElementMatcher.Junction<NamedElement> matcher) {
+  /** Applies to get(long, TimeUnit) of any Future, including CompletableFuture. */
+  public static AgentBuilder.Transformer forTimedGet() {
+    return new FelineTransformer(
+        TimedFutureCallAdvice.class, named("get").and(takesArguments(long.class, TimeUnit.class)));
+  }
+
+  /**
+   * Applies to the methods of ForkJoinTask that wait for a task, other than get (which is covered
+   * by {@link #forFuture()}).
+   */
+  public static AgentBuilder.Transformer forForkJoinTask() {
+    return new FelineTransformer(
+        ForkJoinTaskAdvice.class,
+        named("join").or(named("invoke")).or(named("quietlyJoin")).or(named("quietlyInvoke")));
+  }
+
+  /** Applies to the static ForkJoinTask.invokeAll methods. */
+  public static AgentBuilder.Transformer forForkJoinTaskInvokeAll() {
+    return new FelineTransformer(ForkJoinInvokeAllAdvice.class, named("invokeAll"));
+  }
+
+  /**
+   * Replaces the calls that ForkJoinTask makes to wait for a task, i.e. Object.wait(long) up to
+   * Java 16 and LockSupport.park/parkNanos since Java 17, with the equivalents in FelineRuntime.
+   * These time the joins that {@link #forForkJoinTask()} begins.
+   */
+  public static AgentBuilder.Transformer forForkJoinTaskWaits() {
+    try {
+      final MemberSubstitution substitution =
+          MemberSubstitution.relaxed()
+              .method(named("wait").and(takesArguments(long.class)))
+              .replaceWith(FelineRuntime.class.getMethod("forkJoinWait", Object.class, long.class))
+              .method(named("park").and(takesArguments(0)).and(isDeclaredBy(LockSupport.class)))
+              .replaceWith(FelineRuntime.class.getMethod("forkJoinPark"))
+              .method(
+                  named("parkNanos")
+                      .and(takesArguments(long.class))
+                      .and(isDeclaredBy(LockSupport.class)))
+              .replaceWith(FelineRuntime.class.getMethod("forkJoinParkNanos", long.class));
+      return (builder, typeDescription, classLoader, javaModule, protectionDomain) ->
+          builder.visit(substitution.on(isMethod()));
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static AgentBuilder.Transformer forForkJoinPool() {
+    return new FelineTransformer(ManagedBlockAdvice.class, named("managedBlock"));
+  }
+
+  private FelineTransformer(
+      final Class<?> advice, final ElementMatcher.Junction<MethodDescription> matcher) {
+    this.advice = advice;
     this.matcher = matcher;
   }
 
@@ -74,17 +134,14 @@ class FelineTransformer implements AgentBuilder.Transformer {
       final ClassLoader classLoader,
       final JavaModule javaModule,
       final ProtectionDomain protectionDomain) {
-    return builder.visit(Advice.to(FutureCallAdvice.class).on(matcher));
+    return builder.visit(Advice.to(advice).on(matcher));
   }
 
   static class FutureCallAdvice {
 
     @Advice.OnMethodEnter
     static Map<String, Object> onEnter(
-        @Advice.This() final Object thisObject,
-        @Advice.Origin("#t") final String typeName,
-        @Advice.Origin("#m") final String methodName,
-        @Advice.Origin("#s") final String methodSig) {
+        @Advice.This() final Object thisObject, @Advice.Origin("#t.#m#s") final String methodCall) {
       final Future<?> future = (Future<?>) thisObject;
 
       boolean state = FelineRuntime.BLOCKED_THREADS.contains(Thread.currentThread().getId());
@@ -95,41 +152,138 @@ class FelineTransformer implements AgentBuilder.Transformer {
         return Collections.emptyMap();
       }
 
-      if (future.isDone()) {
+      final boolean done = future.isDone();
+      if (FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_BLOCKING_RATIO)) {
+        FelineRuntime.countFutureCall(methodCall, !done);
+      }
+
+      if (done) {
         // This method call is not actually blocking, so fast-exit
         // and keep state as false (i.e. do nothing)
         return Collections.emptyMap();
       }
 
-      final String methodCall = typeName + "." + methodName + methodSig;
-      FelineRuntime.accept(methodCall);
-
-      // Set state to true as to ignore any nested blocked calls, e.g. where one Future delegates
-      // to another.
-      // The state must be set after consumers are invoked above. Consumers can throw exceptions,
-      // in which case we
-      // must not have modified the state first as it would not be reset in onExit().
-      FelineRuntime.BLOCKED_THREADS.add(Thread.currentThread().getId());
-
       // Can't use custom classes here, since they won't be visible to classes in standard library
       // such as Future.
+      final Map<String, Object> data = FelineRuntime.beginBlockingCall(methodCall, "Future");
 
-      final Map<String, Object> data = new HashMap<>(2);
-      data.put("method", methodCall);
-      data.put("startTimeNanos", System.nanoTime());
+      if (!data.isEmpty() && FelineRuntime.compensate(future, -1)) {
+        data.put("mitigated", Boolean.TRUE);
+      }
+
+      return data;
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(
+        @Advice.Enter final Map<String, Object> data, @Advice.Thrown final Throwable thrown) {
+      FelineRuntime.endBlockingCall(data, thrown);
+    }
+  }
+
+  /**
+   * Like {@link FutureCallAdvice}, for timed calls to get. The requested timeout is passed to
+   * on-exit consumers as "timeoutNanos", which tells bounded waits from unbounded ones. When the
+   * wait is compensated, the timeout has been waited for already, so the original call is made with
+   * a timeout of 0.
+   */
+  static class TimedFutureCallAdvice {
+
+    @Advice.OnMethodEnter
+    static Map<String, Object> onEnter(
+        @Advice.This final Future<?> future,
+        @Advice.Argument(value = 0, readOnly = false) long timeout,
+        @Advice.Argument(1) final TimeUnit unit,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (FelineRuntime.BLOCKED_THREADS.contains(Thread.currentThread().getId())) {
+        return Collections.emptyMap();
+      }
+
+      final boolean done = future.isDone();
+      if (FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_BLOCKING_RATIO)) {
+        FelineRuntime.countFutureCall(methodCall, !done);
+      }
+      if (done) {
+        return Collections.emptyMap();
+      }
 
+      final Map<String, Object> data = FelineRuntime.beginBlockingCall(methodCall, "Future");
+      if (!data.isEmpty()) {
+        final long timeoutNanos = unit == null ? 0L : unit.toNanos(timeout);
+        data.put("timeoutNanos", timeoutNanos);
+        if (unit != null && FelineRuntime.compensate(future, Math.max(0L, timeoutNanos))) {
+          data.put("mitigated", Boolean.TRUE);
+          timeout = 0;
+        }
+      }
       return data;
     }
 
     @Advice.OnMethodExit(onThrowable = Throwable.class)
-    static void onExit(@Advice.Enter Map<String, Object> data) {
-      final Object startTimeNanosObj = data.remove("startTimeNanos");
-      if (startTimeNanosObj != null) {
-        FelineRuntime.BLOCKED_THREADS.remove(Thread.currentThread().getId());
-        final long startTimeNanos = (Long) startTimeNanosObj;
-        final long endTimeNanos = System.nanoTime();
-        data.put("blockedTimeNanos", endTimeNanos - startTimeNanos);
-        FelineRuntime.acceptOnExit(data);
+    static void onExit(
+        @Advice.Enter final Map<String, Object> data, @Advice.Thrown final Throwable thrown) {
+      FelineRuntime.endBlockingCall(data, thrown);
+    }
+  }
+
+  /**
+   * Detects joins of ForkJoinTasks. The join is only reported if the thread waits in one of the
+   * waits replaced by {@link #forForkJoinTaskWaits()}, rather than running the task inline or
+   * helping to run other tasks.
+   */
+  static class ForkJoinTaskAdvice {
+
+    @Advice.OnMethodEnter
+    static Object onEnter(
+        @Advice.This final ForkJoinTask<?> task,
+        @Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_FORK_JOIN_TASKS) || task.isDone()) {
+        return null;
+      }
+      return FelineRuntime.beginForkJoin(methodCall);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Object join) {
+      if (join != null) {
+        FelineRuntime.endForkJoin(join);
+      }
+    }
+  }
+
+  static class ForkJoinInvokeAllAdvice {
+
+    @Advice.OnMethodEnter
+    static Object onEnter(@Advice.Origin("#t.#m#s") final String methodCall) {
+      if (!FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_FORK_JOIN_TASKS)) {
+        return null;
+      }
+      return FelineRuntime.beginForkJoin(methodCall);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final Object join) {
+      if (join != null) {
+        FelineRuntime.endForkJoin(join);
+      }
+    }
+  }
+
+  /**
+   * Tracks the workers that a ForkJoinPool adds to compensate for a blocked worker. This applies to
+   * everything that blocks through managedBlock, including CompletableFuture.get/join.
+   */
+  static class ManagedBlockAdvice {
+
+    @Advice.OnMethodEnter
+    static int onEnter() {
+      return FelineRuntime.forkJoinPoolSize();
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final int poolSizeBefore) {
+      if (poolSizeBefore >= 0) {
+        FelineRuntime.acceptForkJoinCompensation(poolSizeBefore);
       }
     }
   }
@@ -0,0 +1,108 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static net.bytebuddy.matcher.ElementMatchers.isConstructor;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+
+import java.security.ProtectionDomain;
+import java.util.concurrent.Executor;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.utility.JavaModule;
+
+/**
+ * Instruments java.lang.VirtualThread (Java 21+) to detect virtual threads that park while pinned
+ * to their carrier thread, and to find the pool of carrier threads.
+ */
+class FelineVirtualThreadTransformer implements AgentBuilder.Transformer {
+
+  private final Class<?> advice;
+  private final ElementMatcher.Junction<MethodDescription> matcher;
+
+  /** Applies to parkOnCarrierThread, which a virtual thread calls when it can not unmount. */
+  public static AgentBuilder.Transformer forPinnedPark() {
+    return new FelineVirtualThreadTransformer(PinnedParkAdvice.class, named("parkOnCarrierThread"));
+  }
+
+  public static AgentBuilder.Transformer forConstructor() {
+    return new FelineVirtualThreadTransformer(ConstructorAdvice.class, isConstructor());
+  }
+
+  private FelineVirtualThreadTransformer(
+      final Class<?> advice, final ElementMatcher.Junction<MethodDescription> matcher) {
+    this.advice = advice;
+    this.matcher = matcher;
+  }
+
+  @Override
+  public Builder<?> transform(
+      final Builder<?> builder,
+      final TypeDescription typeDescription,
+      final ClassLoader classLoader,
+      final JavaModule javaModule,
+      final ProtectionDomain protectionDomain) {
+    return builder.visit(Advice.to(advice).on(matcher));
+  }
+
+  static class PinnedParkAdvice {
+
+    @Advice.OnMethodEnter
+    static long onEnter() {
+      return FelineRuntime.pinnedParkStart();
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void onExit(@Advice.Enter final long startTimeNanos) {
+      if (startTimeNanos != Long.MIN_VALUE) {
+        FelineRuntime.acceptPinnedPark(startTimeNanos);
+      }
+    }
+  }
+
+  static class ConstructorAdvice {
+
+    @Advice.OnMethodExit
+    static void onExit(@Advice.FieldValue("scheduler") final Executor scheduler) {
+      FelineRuntime.trackCarrierPool(scheduler);
+    }
+  }
+}
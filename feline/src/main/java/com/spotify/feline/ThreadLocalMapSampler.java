@@ -0,0 +1,331 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Samples the ThreadLocalMaps of platform threads, and reports threads whose maps keep growing.
+ *
+ * <p>The maps are private to java.lang, so reading them requires java.lang to be opened to Feline,
+ * which is done the first time they are needed.
+ */
+final class ThreadLocalMapSampler {
+
+  // The number of consecutive samples in which a map must grow to be reported
+  static final int GROWTH_SAMPLES = 3;
+
+  private static final List<Consumer<Map<String, Object>>> growthConsumers =
+      new CopyOnWriteArrayList<>();
+
+  // Guarded by the class lock
+  private static final Map<Thread, Growth> GROWTH = new WeakHashMap<>();
+
+  // Guarded by the class lock
+  private static ScheduledExecutorService executor;
+  private static long periodNanos;
+
+  private ThreadLocalMapSampler() {}
+
+  static void addGrowthConsumer(final Consumer<Map<String, Object>> consumer) {
+    growthConsumers.add(consumer);
+  }
+
+  static boolean removeGrowthConsumer(final Consumer<Map<String, Object>> consumer) {
+    return growthConsumers.remove(consumer);
+  }
+
+  /** Makes set and remove of ThreadLocals created by withInitial count under their supplier. */
+  static void resolveSuppliers() {
+    if (Fields.SUPPLIER != null) {
+      FelineRuntime.setThreadLocalClassResolver(ThreadLocalMapSampler::threadLocalClass);
+    }
+  }
+
+  static synchronized void start(final long period, final TimeUnit unit) {
+    stop();
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              final Thread thread = new Thread(runnable, "feline-thread-local-sampler");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.scheduleAtFixedRate(ThreadLocalMapSampler::sampleAndTrackGrowth, period, period, unit);
+    periodNanos = unit.toNanos(period);
+  }
+
+  /** Returns the period of periodic sampling, or 0 if it is not started. */
+  static synchronized long periodNanos() {
+    return executor == null ? 0 : periodNanos;
+  }
+
+  static synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    GROWTH.clear();
+  }
+
+  /**
+   * Samples the maps of all live platform threads, without changing the growth tracked by periodic
+   * sampling.
+   */
+  static List<Map<String, Object>> snapshot() {
+    return sample(false);
+  }
+
+  /**
+   * Samples the maps of all live platform threads, and notifies the growth consumers about the
+   * threads whose map has grown in each of the last {@link #GROWTH_SAMPLES} samples. Only periodic
+   * sampling advances the growth, so that snapshots taken in between do not shorten its period.
+   */
+  static void sampleAndTrackGrowth() {
+    sample(true);
+  }
+
+  private static synchronized List<Map<String, Object>> sample(final boolean trackGrowth) {
+    if (Fields.THREAD_LOCALS == null) {
+      return Collections.emptyList();
+    }
+
+    final List<Map<String, Object>> samples = new ArrayList<>();
+    for (final Thread thread : liveThreads()) {
+      final Map<String, Object> data;
+      try {
+        data = sample(thread);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        // The map may change while it is read, in which case this thread is sampled next time
+        continue;
+      }
+      if (data != null) {
+        samples.add(data);
+        if (trackGrowth) {
+          trackGrowth(thread, data);
+        }
+      }
+    }
+    return samples;
+  }
+
+  private static Map<String, Object> sample(final Thread thread)
+      throws ReflectiveOperationException {
+    final Object map = Fields.THREAD_LOCALS.get(thread);
+    if (map == null) {
+      return null;
+    }
+
+    final Object[] table = (Object[]) Fields.TABLE.get(map);
+    final Map<String, Integer> threadLocals = new HashMap<>();
+    int staleEntries = 0;
+    for (final Object entry : table) {
+      if (entry == null) {
+        continue;
+      }
+      final Object threadLocal = ((Reference<?>) entry).get();
+      if (threadLocal == null) {
+        // the ThreadLocal was collected, but its value is retained until the entry is expunged
+        staleEntries++;
+      } else {
+        threadLocals.merge(FelineRuntime.threadLocalName(threadLocal), 1, Integer::sum);
+      }
+    }
+
+    final Map<String, Object> data = new HashMap<>(8);
+    data.put("thread", thread);
+    data.put("size", Fields.SIZE.getInt(map));
+    data.put("staleEntries", staleEntries);
+    data.put("threadLocals", threadLocals);
+    return data;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void trackGrowth(final Thread thread, final Map<String, Object> data) {
+    final int size = (Integer) data.get("size");
+    final Map<String, Integer> threadLocals = (Map<String, Integer>) data.get("threadLocals");
+
+    final Growth growth = GROWTH.get(thread);
+    if (growth == null || size <= growth.lastSize) {
+      GROWTH.put(thread, new Growth(size, threadLocals));
+      return;
+    }
+    growth.lastSize = size;
+    growth.samples++;
+    if (growth.samples < GROWTH_SAMPLES || growthConsumers.isEmpty()) {
+      return;
+    }
+
+    // the ThreadLocal classes with more entries than when the map started to grow
+    final Map<String, Integer> growingThreadLocals = new HashMap<>();
+    threadLocals.forEach(
+        (threadLocal, count) -> {
+          final int added = count - growth.baseline.getOrDefault(threadLocal, 0);
+          if (added > 0) {
+            growingThreadLocals.put(threadLocal, added);
+          }
+        });
+
+    final Map<String, Object> report = new HashMap<>(data);
+    report.put("growth", size - growth.baselineSize);
+    report.put("growingThreadLocals", growingThreadLocals);
+    for (final Consumer<Map<String, Object>> consumer : growthConsumers) {
+      try {
+        consumer.accept(report);
+      } catch (Exception e) {
+        // Ignore
+      }
+    }
+  }
+
+  private static Thread[] liveThreads() {
+    ThreadGroup root = Thread.currentThread().getThreadGroup();
+    while (root.getParent() != null) {
+      root = root.getParent();
+    }
+    Thread[] threads;
+    int count;
+    do {
+      threads = new Thread[root.activeCount() * 2 + 16];
+      count = root.enumerate(threads, true);
+    } while (count == threads.length);
+    final Thread[] live = new Thread[count];
+    System.arraycopy(threads, 0, live, 0, count);
+    return live;
+  }
+
+  private static Class<?> threadLocalClass(final Object threadLocal) {
+    if (threadLocal.getClass() == Fields.SUPPLIED_THREAD_LOCAL) {
+      try {
+        return Fields.SUPPLIER.get(threadLocal).getClass();
+      } catch (IllegalAccessException e) {
+        // fall through
+      }
+    }
+    return threadLocal.getClass();
+  }
+
+  /** Resolved on first use, as this opens java.lang to Feline. */
+  private static class Fields {
+    static final Field THREAD_LOCALS;
+    static final Field TABLE;
+    static final Field SIZE;
+    static final Class<?> SUPPLIED_THREAD_LOCAL;
+    static final Field SUPPLIER;
+
+    static {
+      Field threadLocals = null;
+      Field table = null;
+      Field size = null;
+      Class<?> suppliedThreadLocal = null;
+      Field supplier = null;
+      try {
+        openJavaLang();
+        threadLocals = accessible(Thread.class.getDeclaredField("threadLocals"));
+        final Class<?> threadLocalMap = Class.forName("java.lang.ThreadLocal$ThreadLocalMap");
+        table = accessible(threadLocalMap.getDeclaredField("table"));
+        size = accessible(threadLocalMap.getDeclaredField("size"));
+        suppliedThreadLocal = Class.forName("java.lang.ThreadLocal$SuppliedThreadLocal");
+        supplier = accessible(suppliedThreadLocal.getDeclaredField("supplier"));
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        threadLocals = null;
+      }
+      THREAD_LOCALS = threadLocals;
+      TABLE = table;
+      SIZE = size;
+      SUPPLIED_THREAD_LOCAL = suppliedThreadLocal;
+      SUPPLIER = threadLocals == null ? null : supplier;
+    }
+
+    private static Field accessible(final Field field) {
+      field.setAccessible(true);
+      return field;
+    }
+
+    private static void openJavaLang() throws ReflectiveOperationException {
+      final Method getModule;
+      try {
+        getModule = Class.class.getMethod("getModule");
+      } catch (NoSuchMethodException e) {
+        // Before Java 9, setAccessible is enough
+        return;
+      }
+      // Modules do not exist in Java 8, which we compile for
+      final Class<?> moduleClass = Class.forName("java.lang.Module");
+      final Method redefineModule =
+          Instrumentation.class.getMethod(
+              "redefineModule", moduleClass, Set.class, Map.class, Map.class, Set.class, Map.class);
+      redefineModule.invoke(
+          FelineAgent.instrumentation(),
+          getModule.invoke(Thread.class),
+          Collections.emptySet(),
+          Collections.emptyMap(),
+          Collections.singletonMap(
+              "java.lang", Collections.singleton(getModule.invoke(ThreadLocalMapSampler.class))),
+          Collections.emptySet(),
+          Collections.emptyMap());
+    }
+  }
+
+  private static class Growth {
+    final int baselineSize;
+    final Map<String, Integer> baseline;
+    int lastSize;
+    int samples;
+
+    Growth(final int size, final Map<String, Integer> threadLocals) {
+      this.baselineSize = size;
+      this.baseline = threadLocals;
+      this.lastSize = size;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+/**
+ * The role of a thread, which decides what happens on a blocking call made on it.
+ *
+ * @see Feline#setThreadRoleAction(ThreadRole, BlockingAction)
+ */
+public enum ThreadRole {
+
+  /** Threads that have not been assigned a role. */
+  UNASSIGNED(FelinePolicy.UNASSIGNED),
+
+  /** Threads that serve many connections or tasks, e.g. network I/O threads. */
+  EVENT_LOOP(FelinePolicy.EVENT_LOOP),
+
+  /** Threads that handle requests, e.g. threads of a server's request pool. */
+  REQUEST_WORKER(FelinePolicy.REQUEST_WORKER),
+
+  /** Threads that run background work, e.g. scheduled jobs. */
+  BACKGROUND(FelinePolicy.BACKGROUND),
+
+  /** Threads that are meant to block, e.g. threads of a dedicated blocking pool. */
+  BLOCKING_ALLOWED(FelinePolicy.BLOCKING_ALLOWED);
+
+  final int id;
+
+  ThreadRole(final int id) {
+    this.id = id;
+  }
+
+  static ThreadRole of(final int id) {
+    return values()[id];
+  }
+}
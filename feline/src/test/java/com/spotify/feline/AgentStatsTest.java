@@ -0,0 +1,109 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.junit.jupiter.api.Test;
+
+public class AgentStatsTest {
+
+  @Test
+  public void stats() throws Exception {
+    final long classLoads = Feline.getAgentStats().get("classLoads");
+
+    // loaded again by a new class loader, as test discovery already loaded it
+    final URL location = getClass().getProtectionDomain().getCodeSource().getLocation();
+    try (URLClassLoader classLoader = new URLClassLoader(new URL[] {location}, null)) {
+      Class.forName(LoadedLater.class.getName(), false, classLoader);
+    }
+
+    final Map<String, Long> stats = Feline.getAgentStats();
+    assertTrue(stats.get("installNanos") > 0);
+    assertTrue(stats.get("bootstrapInjectionNanos") > 0);
+    assertTrue(stats.get("classLoads") > classLoads);
+    assertTrue(stats.get("classLoadNanos") > 0);
+    assertTrue(stats.get("transformedClasses") > 0);
+  }
+
+  @Test
+  public void retransformation() {
+    final Map<String, Long> stats = Feline.getAgentStats();
+    // e.g. ThreadLocal and CompletableFuture, which were loaded before the agent was installed
+    assertTrue(stats.get("retransformedClasses") > 0);
+    assertTrue(stats.get("retransformationBatches") > 0);
+    assertEquals(0L, stats.get("retransformationFailures"));
+    assertTrue(stats.get("retransformationNanos") > 0);
+  }
+
+  @Test
+  public void generatedClassesAreIgnored() {
+    final Runnable lambda = () -> {};
+    final ElementMatcher<TypeDescription> ignored =
+        new FelineScope(Collections.emptyList(), Collections.emptyList()).ignored();
+
+    assertTrue(ignored.matches(TypeDescription.ForLoadedType.of(lambda.getClass())));
+    assertFalse(ignored.matches(TypeDescription.ForLoadedType.of(getClass())));
+    assertFalse(ignored.matches(TypeDescription.ForLoadedType.of(String.class)));
+  }
+
+  @Test
+  public void scope() {
+    final ElementMatcher<TypeDescription> ignored =
+        new FelineScope(
+                Collections.singletonList("com.spotify."),
+                FelineScope.prefixes("com.spotify.feline.Feline, com.spotify.other."))
+            .ignored();
+
+    assertFalse(ignored.matches(TypeDescription.ForLoadedType.of(getClass())));
+    assertTrue(ignored.matches(TypeDescription.ForLoadedType.of(Feline.class)));
+    assertTrue(ignored.matches(TypeDescription.ForLoadedType.of(Test.class)));
+    // JDK classes are always in scope
+    assertFalse(ignored.matches(TypeDescription.ForLoadedType.of(Arrays.class)));
+  }
+
+  private static class LoadedLater {}
+}
@@ -0,0 +1,149 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class AllowanceMatcherTest {
+
+  @Test
+  public void exactClass() {
+    final AllowanceMatcher matcher = compile("com.example.Cache#load");
+
+    assertTrue(matcher.matches("com.example.Cache"));
+    assertFalse(matcher.matches("com.example.CacheLoader"));
+    assertFalse(matcher.matches("com.example.Cach"));
+  }
+
+  @Test
+  public void packages() {
+    final AllowanceMatcher matcher = compile("com.example.batch.*", "com.example.jobs.**");
+
+    assertTrue(matcher.matches("com.example.batch.Job"));
+    assertTrue(matcher.matches("com.example.batch.Job$Step"));
+    assertFalse(matcher.matches("com.example.batch.internal.Job"));
+    assertTrue(matcher.matches("com.example.jobs.Job"));
+    assertTrue(matcher.matches("com.example.jobs.internal.Job"));
+    assertFalse(matcher.matches("com.example.Job"));
+  }
+
+  @Test
+  public void classGlobs() {
+    final AllowanceMatcher matcher = compile("com.example.*Repository", "com.*.Cache");
+
+    assertTrue(matcher.matches("com.example.UserRepository"));
+    assertFalse(matcher.matches("com.example.UserRepositoryImpl"));
+    assertFalse(matcher.matches("com.example.users.UserRepository"));
+    assertTrue(matcher.matches("com.other.Cache"));
+    assertFalse(matcher.matches("com.other.more.Cache"));
+  }
+
+  @Test
+  public void allowancesOfClass() {
+    final AllowanceMatcher matcher =
+        compile("com.example.**", "com.example.Cache#load", "com.example.Store#save");
+
+    assertEquals(
+        Arrays.asList("com.example.**", "com.example.Cache#load"),
+        toStrings(matcher.allowances("com.example.Cache")));
+    assertEquals(Collections.emptyList(), matcher.allowances("org.example.Cache"));
+  }
+
+  @Test
+  public void methods() {
+    final Allowance allMethods = Allowance.parse("com.example.Cache");
+    assertTrue(allMethods.matchesMethod("load", "()V"));
+    assertFalse(allMethods.matchesMethod("<init>", "()V"));
+
+    final Allowance glob = Allowance.parse("com.example.Cache#load*");
+    assertTrue(glob.matchesMethod("load", "()V"));
+    assertTrue(glob.matchesMethod("loadAll", "()V"));
+    assertFalse(glob.matchesMethod("reload", "()V"));
+
+    final Allowance descriptor = Allowance.parse("com.example.Cache#load(Ljava/lang/String;)V");
+    assertTrue(descriptor.matchesMethod("load", "(Ljava/lang/String;)V"));
+    assertFalse(descriptor.matchesMethod("load", "()V"));
+
+    assertTrue(Allowance.parse("com.example.Cache#<init>").matchesMethod("<init>", "()V"));
+  }
+
+  @Test
+  public void invalid() {
+    assertThrows(IllegalArgumentException.class, () -> Allowance.parse("#load"));
+    assertThrows(IllegalArgumentException.class, () -> Allowance.parse("com.example.Cache#"));
+    assertThrows(IllegalArgumentException.class, () -> Allowance.parse("com.example.Cache#load("));
+  }
+
+  @Test
+  public void manyAllowances() {
+    final List<Allowance> allowances = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      allowances.add(Allowance.parse("com.example.service" + i + ".*Handler#handle*"));
+    }
+    final AllowanceMatcher matcher = AllowanceMatcher.compile(allowances);
+
+    assertTrue(matcher.matches("com.example.service1234.RequestHandler"));
+    assertFalse(matcher.matches("com.example.service1234.RequestHandlers"));
+    assertFalse(matcher.matches("com.example.service10000.RequestHandler"));
+    assertEquals(1, matcher.allowances("com.example.service9999.Handler").size());
+  }
+
+  private static AllowanceMatcher compile(final String... allowances) {
+    final List<Allowance> parsed = new ArrayList<>();
+    for (final String allowance : allowances) {
+      parsed.add(Allowance.parse(allowance));
+    }
+    return AllowanceMatcher.compile(parsed);
+  }
+
+  private static List<String> toStrings(final List<Allowance> allowances) {
+    final List<String> strings = new ArrayList<>();
+    for (final Allowance allowance : allowances) {
+      strings.add(allowance.toString());
+    }
+    return strings;
+  }
+}
@@ -51,4 +51,12 @@ public class AllowanceTester {
   private void nested2(final CompletableFuture<?> future) {
     future.join();
   }
+
+  public void allowedByPattern(final CompletableFuture<?> future) {
+    future.join();
+  }
+
+  public void notAllowed(final CompletableFuture<?> future) {
+    future.join();
+  }
 }
@@ -0,0 +1,157 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BlockingIoTest {
+
+  private final List<Map<String, Object>> blockingCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> consumer =
+      data -> {
+        if ("IO".equals(data.get("primitive"))) {
+          blockingCalls.add(data);
+        }
+      };
+  private Path file;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    file = Files.createTempFile("feline", ".txt");
+    Files.write(file, "meow".getBytes());
+    Feline.enableDetector(Detector.BLOCKING_IO);
+    Feline.addOnExitConsumerLast(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    Feline.resetThreadRoles();
+    Feline.disableDetector(Detector.BLOCKING_IO);
+    Feline.removeOnExitConsumer(consumer);
+    Files.delete(file);
+  }
+
+  @Test
+  public void filesOnEventLoop() throws IOException {
+    Feline.setCurrentThreadRole(ThreadRole.EVENT_LOOP);
+
+    Files.readAllBytes(file);
+
+    Feline.resetThreadRoles();
+    assertEquals(
+        Collections.singletonList("java.nio.file.Files.readAllBytes(java.nio.file.Path)"),
+        methods());
+  }
+
+  @Test
+  public void fileInputStreamOnEventLoop() throws IOException {
+    final File input = file.toFile();
+    Feline.setCurrentThreadRole(ThreadRole.EVENT_LOOP);
+
+    try (final InputStream inputStream = new FileInputStream(input)) {
+      inputStream.read(new byte[4]);
+    }
+
+    Feline.resetThreadRoles();
+    assertEquals(Collections.singletonList("java.io.FileInputStream.read([B)"), methods());
+  }
+
+  @Test
+  public void fileChannelOnEventLoop() throws IOException {
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      Feline.setCurrentThreadRole(ThreadRole.EVENT_LOOP);
+
+      channel.read(ByteBuffer.allocate(4));
+
+      Feline.resetThreadRoles();
+    }
+    assertEquals(1, blockingCalls.size(), blockingCalls.toString());
+  }
+
+  @Test
+  public void throwOnEventLoop() {
+    Feline.setCurrentThreadRole(ThreadRole.EVENT_LOOP);
+    Feline.setThreadRoleAction(ThreadRole.EVENT_LOOP, BlockingAction.THROW);
+
+    assertThrows(IllegalStateException.class, () -> Files.readAllBytes(file));
+  }
+
+  @Test
+  public void otherThreads() throws IOException {
+    Feline.setCurrentThreadRole(ThreadRole.REQUEST_WORKER);
+
+    Files.readAllBytes(file);
+
+    assertEquals(Collections.emptyList(), blockingCalls);
+  }
+
+  @Test
+  public void disabled() throws IOException {
+    Feline.disableDetector(Detector.BLOCKING_IO);
+    Feline.setCurrentThreadRole(ThreadRole.EVENT_LOOP);
+
+    Files.readAllBytes(file);
+
+    assertEquals(Collections.emptyList(), blockingCalls);
+  }
+
+  private List<String> methods() {
+    return blockingCalls.stream()
+        .map(data -> (String) data.get("method"))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,112 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BlockingRatioTest {
+
+  private static final String JOIN = "java.util.concurrent.CompletableFuture.join()";
+
+  @BeforeEach
+  public void setUp() {
+    Feline.resetFutureCallStats();
+    Feline.setCallSiteSampleRate(1);
+    Feline.enableDetector(Detector.BLOCKING_RATIO);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.disableDetector(Detector.BLOCKING_RATIO);
+    Feline.setCallSiteSampleRate(100);
+    Feline.resetFutureCallStats();
+  }
+
+  @Test
+  public void countsDoneAndBlockingCalls() {
+    for (int i = 0; i < 3; i++) {
+      joinDone();
+    }
+    joinBlocking();
+
+    final Map<String, Long> stats = Feline.getFutureCallStats().get(JOIN);
+    assertEquals(4L, stats.get("calls"));
+    assertEquals(1L, stats.get("blockingCalls"));
+
+    final Map<String, Map<String, Long>> callSites = Feline.getFutureCallSiteStats();
+    assertEquals(3L, callSites.get(getClass().getName() + ".joinDone").get("calls"));
+    assertEquals(0L, callSites.get(getClass().getName() + ".joinDone").get("blockingCalls"));
+    assertEquals(1L, callSites.get(getClass().getName() + ".joinBlocking").get("blockingCalls"));
+
+    assertEquals(0.0, Feline.getBlockingRatio(getClass().getName() + ".joinDone"));
+    assertEquals(1.0, Feline.getBlockingRatio(getClass().getName() + ".joinBlocking"));
+    assertTrue(Double.isNaN(Feline.getBlockingRatio(getClass().getName() + ".unknown")));
+  }
+
+  @Test
+  public void disabled() {
+    Feline.disableDetector(Detector.BLOCKING_RATIO);
+
+    joinDone();
+
+    assertFalse(Feline.getFutureCallStats().containsKey(JOIN));
+  }
+
+  private static void joinDone() {
+    CompletableFuture.completedFuture("done").join();
+  }
+
+  private static void joinBlocking() {
+    CompletableFuture.runAsync(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            })
+        .join();
+  }
+}
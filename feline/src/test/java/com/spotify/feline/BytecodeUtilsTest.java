@@ -0,0 +1,91 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.jar.JarFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BytecodeUtilsTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void bootstrapInjection() throws Exception {
+    // triggers the injection
+    Feline.getAgentStats();
+
+    final Class<?> runtime = Class.forName("com.spotify.feline.FelineRuntime$FutureBlocker");
+    assertNull(runtime.getClassLoader());
+    assertTrue(Feline.getAgentStats().get("bootstrapInjectedClasses") >= 4);
+  }
+
+  @Test
+  public void readNestedClasses() throws Exception {
+    final Map<String, byte[]> classes =
+        BytecodeUtils.readClasses("com.spotify.feline.FelinePolicy");
+
+    assertEquals(3, classes.size());
+    assertNotNull(classes.get("com.spotify.feline.FelinePolicy$RoleCache"));
+    assertNotNull(classes.get("com.spotify.feline.FelinePolicy$CachedRole"));
+  }
+
+  @Test
+  public void cachedJar() throws Exception {
+    final Map<String, byte[]> classes =
+        BytecodeUtils.readClasses("com.spotify.feline.FelineRuntime");
+
+    final Path jar = BytecodeUtils.cachedJar(tempDir, classes);
+    final long lastModified = Files.getLastModifiedTime(jar).toMillis();
+
+    assertEquals(jar, BytecodeUtils.cachedJar(tempDir, classes));
+    assertEquals(lastModified, Files.getLastModifiedTime(jar).toMillis());
+    // only the jar is left behind
+    assertEquals(1, tempDir.toFile().list().length);
+    try (JarFile jarFile = new JarFile(jar.toFile())) {
+      assertNotNull(jarFile.getEntry("com/spotify/feline/FelineRuntime$FutureBlocker.class"));
+    }
+  }
+}
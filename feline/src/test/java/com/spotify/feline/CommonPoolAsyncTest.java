@@ -0,0 +1,185 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CommonPoolAsyncTest {
+
+  private final List<Map<String, Object>> submissions = new CopyOnWriteArrayList<>();
+  private final List<Map<String, Object>> executions = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> submissionConsumer = submissions::add;
+  private final Consumer<Map<String, Object>> executionConsumer = executions::add;
+
+  @BeforeEach
+  public void setUp() {
+    Feline.enableDetector(Detector.COMMON_POOL_ASYNC);
+    Feline.addCommonPoolSubmissionConsumer(submissionConsumer);
+    Feline.addCommonPoolExecutionConsumer(executionConsumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.disableDetector(Detector.COMMON_POOL_ASYNC);
+    Feline.removeCommonPoolSubmissionConsumer(submissionConsumer);
+    Feline.removeCommonPoolExecutionConsumer(executionConsumer);
+  }
+
+  @Test
+  public void supplyAsync() {
+    final CompletableFuture<String> future =
+        CompletableFuture.supplyAsync(
+            () -> {
+              sleep(50);
+              return "done";
+            });
+    future.join();
+
+    final String method =
+        "java.util.concurrent.CompletableFuture.supplyAsync(java.util.function.Supplier)";
+    assertEquals(1, submissions.size());
+    assertEquals(method, submissions.get(0).get("method"));
+    assertSame(future, submissions.get(0).get("future"));
+
+    awaitExecutions(1);
+    assertEquals(method, executions.get(0).get("method"));
+    assertSame(future, executions.get(0).get("future"));
+    final long runTimeNanos = (Long) executions.get(0).get("runTimeNanos");
+    assertTrue(runTimeNanos >= TimeUnit.MILLISECONDS.toNanos(50), "ran for " + runTimeNanos);
+  }
+
+  @Test
+  public void thenApplyAsync() {
+    final CompletableFuture<String> source = new CompletableFuture<>();
+    final CompletableFuture<String> future = source.thenApplyAsync(String::toUpperCase);
+    source.complete("done");
+
+    assertEquals("DONE", future.join());
+
+    final String method =
+        "java.util.concurrent.CompletableFuture.thenApplyAsync(java.util.function.Function)";
+    assertEquals(1, submissions.size());
+    assertEquals(method, submissions.get(0).get("method"));
+
+    awaitExecutions(1);
+    assertEquals(method, executions.get(0).get("method"));
+    assertSame(future, executions.get(0).get("future"));
+  }
+
+  @Test
+  public void taskFinishesBeforeSubmissionReturns() {
+    final List<Object> events = new CopyOnWriteArrayList<>();
+    final Consumer<Map<String, Object>> submitted = data -> events.add("submitted");
+    final Consumer<Map<String, Object>> executed = data -> events.add(data.get("future"));
+    Feline.addCommonPoolSubmissionConsumer(submitted);
+    Feline.addCommonPoolExecutionConsumer(executed);
+    try {
+      // trivial tasks typically finish before supplyAsync returns
+      for (int i = 0; i < 100; i++) {
+        events.clear();
+        final CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> "done");
+        // do not join, as other tests may count blocking calls
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (events.size() < 2 && System.nanoTime() < deadline) {
+          Thread.yield();
+        }
+        assertEquals(2, events.size());
+        assertEquals("submitted", events.get(0));
+        assertSame(future, events.get(1));
+      }
+    } finally {
+      Feline.removeCommonPoolSubmissionConsumer(submitted);
+      Feline.removeCommonPoolExecutionConsumer(executed);
+    }
+  }
+
+  @Test
+  public void explicitExecutor() {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CompletableFuture.supplyAsync(() -> "done", executor)
+          .thenApplyAsync(String::toUpperCase, executor)
+          .join();
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(0, submissions.size());
+    assertEquals(0, executions.size());
+  }
+
+  @Test
+  public void disabled() {
+    Feline.disableDetector(Detector.COMMON_POOL_ASYNC);
+
+    CompletableFuture.supplyAsync(() -> "done").join();
+
+    assertEquals(0, submissions.size());
+    assertEquals(0, executions.size());
+  }
+
+  private void awaitExecutions(final int expected) {
+    // the execution is reported after the task completed its future
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (executions.size() < expected && System.nanoTime() < deadline) {
+      sleep(10);
+    }
+    assertEquals(expected, executions.size());
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
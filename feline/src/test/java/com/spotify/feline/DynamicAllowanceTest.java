@@ -0,0 +1,130 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DynamicAllowanceTest {
+
+  private static final String JOIN = "java.util.concurrent.CompletableFuture.join()";
+
+  private final List<String> blockingCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<String> consumer = blockingCalls::add;
+
+  @BeforeEach
+  public void setUp() {
+    Feline.addConsumerLast(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.removeConsumer(consumer);
+  }
+
+  @Test
+  public void allowAndDisallowLoadedClass() {
+    final String allowance = Blocker.class.getName() + "#block";
+
+    // loaded and reported before the allowance is added
+    Blocker.block();
+    assertEquals(Collections.singletonList(JOIN), blockingCalls);
+    final long retransformedClasses = Feline.getAgentStats().get("retransformedClasses");
+
+    Feline.allowBlockingCalls(allowance);
+    assertEquals(retransformedClasses + 1, Feline.getAgentStats().get("retransformedClasses"));
+    blockingCalls.clear();
+    Blocker.block();
+    assertTrue(blockingCalls.isEmpty());
+
+    assertTrue(Feline.disallowBlockingCalls(allowance));
+    Blocker.block();
+    assertEquals(Collections.singletonList(JOIN), blockingCalls);
+
+    assertFalse(Feline.disallowBlockingCalls(allowance));
+  }
+
+  @Test
+  public void otherAllowancesStillApply() {
+    final String pattern = DynamicAllowanceTest.class.getName() + "$Other*";
+    final String exact = OtherBlocker.class.getName() + "#block";
+    OtherBlocker.block();
+    blockingCalls.clear();
+
+    Feline.allowBlockingCalls(pattern, exact);
+    Feline.disallowBlockingCalls(pattern);
+    OtherBlocker.block();
+    assertTrue(blockingCalls.isEmpty());
+
+    Feline.disallowBlockingCalls(exact);
+    OtherBlocker.block();
+    assertEquals(Collections.singletonList(JOIN), blockingCalls);
+  }
+
+  private static CompletableFuture<Void> slowFuture() {
+    return CompletableFuture.runAsync(
+        () -> {
+          try {
+            Thread.sleep(50);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+  }
+
+  private static class Blocker {
+    static void block() {
+      slowFuture().join();
+    }
+  }
+
+  private static class OtherBlocker {
+    static void block() {
+      slowFuture().join();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import net.bytebuddy.description.type.TypeDescription;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FelineAgentTest {
+
+  @TempDir Path tempDir;
+
+  @AfterEach
+  public void tearDown() {
+    Feline.disableDetector(Detector.HELD_LOCKS);
+    Feline.disableDetector(Detector.BLOCKING_RATIO);
+    Feline.resetThreadRoles();
+  }
+
+  @Test
+  public void agentmainAppliesConfig() throws Exception {
+    // Feline is already installed, so this only applies the options
+    FelineAgent.agentmain(
+        "detectors=HELD_LOCKS, blocking_ratio; action.EVENT_LOOP=throw",
+        FelineAgent.instrumentation());
+
+    assertTrue(Feline.isDetectorEnabled(Detector.HELD_LOCKS));
+    assertTrue(Feline.isDetectorEnabled(Detector.BLOCKING_RATIO));
+    assertEquals(BlockingAction.THROW, Feline.getThreadRoleAction(ThreadRole.EVENT_LOOP));
+  }
+
+  @Test
+  public void optionsOverrideConfigFile() throws IOException {
+    final Path config = tempDir.resolve("feline.properties");
+    Files.write(
+        config,
+        Arrays.asList("include=com.example.", "exclude=com.example.generated."),
+        StandardCharsets.UTF_8);
+
+    final FelineScope scope =
+        FelineConfig.parse("config=" + config + ";include=com.spotify.").scope();
+
+    assertTrue(scope.ignored().matches(TypeDescription.ForLoadedType.of(Test.class)));
+    assertFalse(scope.ignored().matches(TypeDescription.ForLoadedType.of(FelineAgentTest.class)));
+  }
+
+  @Test
+  public void allowancesWithDescriptors() throws IOException {
+    final String allowance = "com.example.Cache#load(Ljava/lang/String;)Ljava/lang/Object;";
+
+    assertEquals(
+        Arrays.asList(allowance, "com.example.batch.**"),
+        FelineConfig.parse(
+                "allow=" + allowance.replace(";", "\\;") + ",com.example.batch.**;include=com.")
+            .allowances());
+
+    final Path config = tempDir.resolve("feline.properties");
+    Files.write(config, Arrays.asList("allow=" + allowance), StandardCharsets.UTF_8);
+    assertEquals(Arrays.asList(allowance), FelineConfig.parse("config=" + config).allowances());
+  }
+
+  @Test
+  public void invalidOptions() {
+    assertThrows(IllegalArgumentException.class, () -> FelineConfig.parse("detector=HELD_LOCKS"));
+    assertThrows(IllegalArgumentException.class, () -> FelineConfig.parse("detectors"));
+    assertThrows(IllegalArgumentException.class, () -> FelineConfig.parse("role.janitor=x"));
+    assertThrows(
+        IllegalArgumentException.class, () -> FelineConfig.parse("allow=#noClass").apply());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> FelineConfig.parse("heldMonitorSampleRate=often").apply());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> FelineConfig.parse("retransformBatchSize=0").retransformBatchSize());
+  }
+
+  @Test
+  public void emptyConfig() throws IOException {
+    final FelineScope scope = FelineConfig.parse(null).scope();
+
+    assertFalse(scope.ignored().matches(TypeDescription.ForLoadedType.of(String.class)));
+    assertFalse(scope.ignored().matches(TypeDescription.ForLoadedType.of(Test.class)));
+    assertEquals(100, FelineConfig.parse(null).retransformBatchSize());
+    assertEquals(0, FelineConfig.parse(null).retransformPauseMillis());
+  }
+}
@@ -0,0 +1,186 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class FelineBuildPluginTest {
+
+  private final List<String> blockingCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<String> consumer = blockingCalls::add;
+
+  @BeforeEach
+  public void setUp() {
+    Feline.addConsumerLast(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.removeConsumer(consumer);
+  }
+
+  @Test
+  public void instrumentFuture() throws Exception {
+    final Class<?> instrumented = instrument(NotDoneFuture.class);
+
+    assertArrayEquals(
+        new FelineInstrumented.Transformation[] {FelineInstrumented.Transformation.FUTURE},
+        instrumented.getAnnotation(FelineInstrumented.class).value());
+    assertEquals("value", ((Future<?>) instrumented.newInstance()).get());
+    assertEquals(
+        Collections.singletonList(NotDoneFuture.class.getName() + ".get()"), blockingCalls);
+  }
+
+  @Test
+  public void allowancesAddedAtRuntime() throws Exception {
+    final Class<?> instrumented =
+        instrument(
+            BlockingMethods.class,
+            new FelineBuildPlugin(
+                Collections.singletonList(BlockingMethods.class.getName() + "#allowedAtBuild")));
+    final Object instance = instrumented.newInstance();
+
+    Feline.allowBlockingCalls(BlockingMethods.class.getName() + "#allowedAtRuntime");
+    try {
+      instrumented.getMethod("allowedAtBuild").invoke(instance);
+      instrumented.getMethod("allowedAtRuntime").invoke(instance);
+      assertEquals(Collections.emptyList(), blockingCalls);
+
+      instrumented.getMethod("notAllowed").invoke(instance);
+      assertEquals(
+          Collections.singletonList(NotDoneFuture.class.getName() + ".get()"), blockingCalls);
+    } finally {
+      Feline.disallowBlockingCalls(BlockingMethods.class.getName() + "#allowedAtRuntime");
+    }
+  }
+
+  @Test
+  public void matches() {
+    final FelineBuildPlugin plugin =
+        new FelineBuildPlugin(Collections.singletonList(Allowed.class.getName() + "#run"));
+
+    assertTrue(plugin.matches(TypeDescription.ForLoadedType.of(NotDoneFuture.class)));
+    assertTrue(plugin.matches(TypeDescription.ForLoadedType.of(Allowed.class)));
+    assertTrue(plugin.matches(TypeDescription.ForLoadedType.of(MarkerThreadLocal.class)));
+    assertFalse(plugin.matches(TypeDescription.ForLoadedType.of(Future.class)));
+    assertFalse(plugin.matches(TypeDescription.ForLoadedType.of(getClass())));
+  }
+
+  private static Class<?> instrument(final Class<?> type) {
+    return instrument(type, new FelineBuildPlugin());
+  }
+
+  /** Instruments a class as the build plugin would, and loads it in a new class loader. */
+  private static Class<?> instrument(final Class<?> type, final FelineBuildPlugin plugin) {
+    final TypeDescription typeDescription = TypeDescription.ForLoadedType.of(type);
+    final ClassFileLocator classFileLocator =
+        ClassFileLocator.ForClassLoader.of(type.getClassLoader());
+    return plugin
+        .apply(
+            new ByteBuddy().redefine(typeDescription, classFileLocator),
+            typeDescription,
+            classFileLocator)
+        .make()
+        .load(type.getClassLoader(), ClassLoadingStrategy.Default.CHILD_FIRST)
+        .getLoaded();
+  }
+
+  public static class NotDoneFuture implements Future<String> {
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public boolean isDone() {
+      return false;
+    }
+
+    @Override
+    public String get() {
+      return "value";
+    }
+
+    @Override
+    public String get(final long timeout, final TimeUnit unit) {
+      return "value";
+    }
+  }
+
+  public static class Allowed {
+    public void run() {}
+  }
+
+  public static class BlockingMethods {
+    public void allowedAtBuild() {
+      new NotDoneFuture().get();
+    }
+
+    public void allowedAtRuntime() {
+      new NotDoneFuture().get();
+    }
+
+    public void notAllowed() {
+      new NotDoneFuture().get();
+    }
+  }
+
+  private static class MarkerThreadLocal extends ThreadLocal<String> {}
+}
@@ -0,0 +1,70 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class FelineCracTest {
+
+  @AfterEach
+  public void tearDown() {
+    Feline.stopThreadLocalMapSampling();
+  }
+
+  @Test
+  public void samplingIsRestartedAfterRestore() throws Exception {
+    Feline.startThreadLocalMapSampling(1, TimeUnit.HOURS);
+
+    FelineCrac.beforeCheckpoint();
+    assertEquals(0, ThreadLocalMapSampler.periodNanos());
+
+    FelineCrac.afterRestore();
+    assertEquals(TimeUnit.HOURS.toNanos(1), ThreadLocalMapSampler.periodNanos());
+  }
+
+  @Test
+  public void samplingIsNotStartedAfterRestore() throws Exception {
+    FelineCrac.beforeCheckpoint();
+    FelineCrac.afterRestore();
+
+    assertEquals(0, ThreadLocalMapSampler.periodNanos());
+  }
+}
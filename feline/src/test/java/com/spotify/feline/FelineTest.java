@@ -75,6 +75,7 @@ public class FelineTest {
 
     Feline.allowBlockingCallsInside("com.spotify.feline.AllowanceTester", "allowed");
     Feline.allowBlockingCallsInside("com.spotify.feline.AllowanceTester", "nested");
+    Feline.allowBlockingCalls("com.spotify.feline.Allowance*#*ByPattern");
   }
 
   @Test
@@ -163,6 +164,25 @@ public class FelineTest {
     assertCalls();
   }
 
+  @Test
+  public void completableFutureAllowedByPattern() {
+    final CompletableFuture<Void> future = CompletableFuture.runAsync(RUNNABLE);
+
+    // AllowanceTester is allow listed above
+    new AllowanceTester().allowedByPattern(future);
+
+    assertCalls();
+  }
+
+  @Test
+  public void completableFutureNotAllowed() {
+    final CompletableFuture<Void> future = CompletableFuture.runAsync(RUNNABLE);
+
+    new AllowanceTester().notAllowed(future);
+
+    assertCalls("java.util.concurrent.CompletableFuture.join()");
+  }
+
   @Test
   public void completableFutureBlockingGet() throws ExecutionException, InterruptedException {
     final CompletableFuture<Void> future = CompletableFuture.runAsync(RUNNABLE);
@@ -0,0 +1,209 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ForkJoinCompensationTest {
+
+  private final List<Map<String, Object>> blockedCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> consumer = blockedCalls::add;
+
+  @BeforeEach
+  public void setUp() {
+    Feline.addOnExitConsumerLast(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.setForkJoinCompensation(false);
+    Feline.removeOnExitConsumer(consumer);
+  }
+
+  @Test
+  public void compensatedBlockingGet() throws Exception {
+    Feline.setForkJoinCompensation(true);
+
+    final ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      // the only worker blocks on a task queued behind itself, which only completes if the pool
+      // activates a spare worker
+      assertEquals("done", blockOnQueuedTask(pool).get(10, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+
+    assertTrue(
+        blockedCalls.stream()
+            .anyMatch(
+                data ->
+                    "java.util.concurrent.FutureTask.get()".equals(data.get("method"))
+                        && Boolean.TRUE.equals(data.get("mitigated"))),
+        "Expected a mitigated call, got " + blockedCalls);
+  }
+
+  @Test
+  public void compensatedTimedGet() throws Exception {
+    Feline.setForkJoinCompensation(true);
+
+    final ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      final ForkJoinTask<String> outer =
+          pool.submit(
+              () -> {
+                final FutureTask<String> task = new FutureTask<>(() -> "done");
+                pool.execute(task);
+                return task.get(10, TimeUnit.SECONDS);
+              });
+      assertEquals("done", outer.get(10, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+
+    assertTrue(
+        blockedCalls.stream()
+            .anyMatch(
+                data ->
+                    "java.util.concurrent.FutureTask.get(long,java.util.concurrent.TimeUnit)"
+                            .equals(data.get("method"))
+                        && Boolean.TRUE.equals(data.get("mitigated"))
+                        && "completed".equals(data.get("outcome"))),
+        "Expected a mitigated call, got " + blockedCalls);
+  }
+
+  @Test
+  public void compensatedTimedGetTimesOutOnce() throws Exception {
+    Feline.setForkJoinCompensation(true);
+
+    final ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      final ForkJoinTask<Boolean> outer =
+          pool.submit(
+              () -> {
+                try {
+                  new FutureTask<>(() -> "never run").get(100, TimeUnit.MILLISECONDS);
+                  return false;
+                } catch (TimeoutException e) {
+                  return true;
+                }
+              });
+      assertTrue(outer.get(10, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+
+    final Map<String, Object> data =
+        blockedCalls.stream()
+            .filter(
+                call ->
+                    "java.util.concurrent.FutureTask.get(long,java.util.concurrent.TimeUnit)"
+                            .equals(call.get("method"))
+                        && "timedOut".equals(call.get("outcome")))
+            .findFirst()
+            .orElseThrow(
+                () -> new AssertionError("Expected a timed out call, got " + blockedCalls));
+    assertEquals(Boolean.TRUE, data.get("mitigated"));
+    // the original call does not wait for the timeout again
+    assertTrue((Long) data.get("blockedTimeNanos") < TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  @Test
+  public void trackedCompensation() throws Exception {
+    final List<Map<String, Object>> compensations = new CopyOnWriteArrayList<>();
+    final Consumer<Map<String, Object>> compensationConsumer = compensations::add;
+    Feline.addForkJoinCompensationConsumer(compensationConsumer);
+
+    final ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      final CompletableFuture<String> future = new CompletableFuture<>();
+      final ForkJoinTask<String> outer =
+          pool.submit(
+              () -> {
+                pool.execute(() -> future.complete("done"));
+                return future.join();
+              });
+      assertEquals("done", outer.get(10, TimeUnit.SECONDS));
+    } finally {
+      Feline.removeForkJoinCompensationConsumer(compensationConsumer);
+      pool.shutdownNow();
+    }
+
+    assertEquals(1, compensations.size(), "Expected one compensation, got " + compensations);
+    final Map<String, Object> compensation = compensations.get(0);
+    assertEquals("java.util.concurrent.CompletableFuture.join()", compensation.get("method"));
+    assertSame(pool, compensation.get("pool"));
+    assertEquals(1, compensation.get("compensatedWorkers"));
+    assertEquals(2, compensation.get("poolSize"));
+  }
+
+  @Test
+  public void starvesWithoutCompensation() {
+    final ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      final ForkJoinTask<String> outer = blockOnQueuedTask(pool);
+      assertThrows(TimeoutException.class, () -> outer.get(500, TimeUnit.MILLISECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static ForkJoinTask<String> blockOnQueuedTask(final ForkJoinPool pool) {
+    return pool.submit(
+        () -> {
+          final FutureTask<String> task = new FutureTask<>(() -> "done");
+          pool.execute(task);
+          return task.get();
+        });
+  }
+}
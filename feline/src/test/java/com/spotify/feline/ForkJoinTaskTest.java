@@ -0,0 +1,253 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ForkJoinTaskTest {
+
+  private final List<Map<String, Object>> blockingCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> consumer =
+      data -> {
+        if ("ForkJoinTask".equals(data.get("primitive"))) {
+          blockingCalls.add(data);
+        }
+      };
+  private ForkJoinPool pool;
+
+  @BeforeEach
+  public void setUp() {
+    pool = new ForkJoinPool(1);
+    Feline.enableDetector(Detector.FORK_JOIN_TASKS);
+    Feline.addOnExitConsumerLast(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.disableDetector(Detector.FORK_JOIN_TASKS);
+    Feline.removeOnExitConsumer(consumer);
+    pool.shutdown();
+  }
+
+  @Test
+  public void externalJoin() {
+    final ForkJoinTask<?> task = pool.submit(() -> sleep(50));
+
+    task.join();
+
+    expectBlockingCall("java.util.concurrent.ForkJoinTask.join()");
+  }
+
+  @Test
+  public void workerJoin() throws Exception {
+    final ForkJoinPool otherPool = new ForkJoinPool(1);
+    try {
+      final ForkJoinTask<?> task =
+          pool.submit(
+              () -> {
+                // the task runs in another pool, so this worker can not run it itself
+                otherPool.submit(() -> sleep(50)).join();
+              });
+
+      // get() is reported as a Future
+      task.get();
+    } finally {
+      otherPool.shutdown();
+    }
+
+    expectBlockingCall("java.util.concurrent.ForkJoinTask.join()");
+  }
+
+  @Test
+  public void workerJoinRunsForkedTask() throws Exception {
+    final List<String> futureCalls = new CopyOnWriteArrayList<>();
+    final Consumer<Map<String, Object>> futureConsumer =
+        data -> {
+          if ("Future".equals(data.get("primitive"))) {
+            futureCalls.add((String) data.get("method"));
+          }
+        };
+    Feline.addOnExitConsumerLast(futureConsumer);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final CompletableFuture<String> future = new CompletableFuture<>();
+      final ForkJoinTask<?> task =
+          pool.submit(
+              () -> {
+                // the worker runs the forked task itself, which blocks on the future
+                final ForkJoinTask<?> subtask = ForkJoinTask.adapt(() -> future.join()).fork();
+                CompletableFuture.runAsync(
+                    () -> {
+                      sleep(50);
+                      future.complete("done");
+                    },
+                    executor);
+                subtask.join();
+              });
+      // wait without blocking, as get() would also be reported as a Future
+      while (!task.isDone()) {
+        sleep(10);
+      }
+    } finally {
+      Feline.removeOnExitConsumer(futureConsumer);
+      executor.shutdown();
+    }
+
+    assertEquals(Collections.emptyList(), blockingCalls);
+    assertEquals(
+        Collections.singletonList("java.util.concurrent.CompletableFuture.join()"), futureCalls);
+  }
+
+  @Test
+  public void invokeRunsInline() {
+    new Sleep(50).invoke();
+
+    assertEquals(Collections.emptyList(), blockingCalls);
+  }
+
+  @Test
+  public void invokeAll() {
+    final CountDownLatch started = new CountDownLatch(1);
+    final RecursiveAction first =
+        action(
+            () -> {
+              await(started);
+              sleep(100);
+            });
+    final RecursiveAction second =
+        action(
+            () -> {
+              started.countDown();
+              sleep(150);
+            });
+
+    // the first task runs inline until another thread runs the second one, which is then joined
+    ForkJoinTask.invokeAll(first, second);
+
+    expectBlockingCall(
+        "java.util.concurrent.ForkJoinTask.invokeAll("
+            + "java.util.concurrent.ForkJoinTask,java.util.concurrent.ForkJoinTask)");
+    final long blockedTimeNanos = (Long) blockingCalls.get(0).get("blockedTimeNanos");
+    // only the wait for the second task is measured, not the first task running inline
+    assertTrue(
+        blockedTimeNanos < TimeUnit.MILLISECONDS.toNanos(120), "waited for " + blockedTimeNanos);
+  }
+
+  @Test
+  public void joinDone() {
+    final ForkJoinTask<?> task = pool.submit(() -> {});
+    Feline.disableDetector(Detector.FORK_JOIN_TASKS);
+    task.join();
+    Feline.enableDetector(Detector.FORK_JOIN_TASKS);
+
+    task.join();
+
+    assertEquals(Collections.emptyList(), blockingCalls);
+  }
+
+  @Test
+  public void disabled() {
+    Feline.disableDetector(Detector.FORK_JOIN_TASKS);
+    final ForkJoinTask<?> task = pool.submit(() -> sleep(50));
+
+    task.join();
+
+    assertEquals(Collections.emptyList(), blockingCalls);
+  }
+
+  private void expectBlockingCall(final String method) {
+    assertEquals(1, blockingCalls.size(), blockingCalls.toString());
+    assertEquals(method, blockingCalls.get(0).get("method"));
+  }
+
+  private static RecursiveAction action(final Runnable runnable) {
+    return new RecursiveAction() {
+      @Override
+      protected void compute() {
+        runnable.run();
+      }
+    };
+  }
+
+  private static void await(final CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static class Sleep extends RecursiveAction {
+
+    private final long millis;
+
+    Sleep(final long millis) {
+      this.millis = millis;
+    }
+
+    @Override
+    protected void compute() {
+      sleep(millis);
+    }
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class HeldLocksTest {
+
+  private final Thread testThread = Thread.currentThread();
+  private final List<Map<String, Object>> blockingCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> consumer =
+      data -> {
+        if (Thread.currentThread() == testThread) {
+          blockingCalls.add(data);
+        }
+      };
+
+  @BeforeEach
+  public void setUp() {
+    Feline.enableDetector(Detector.HELD_LOCKS);
+    Feline.addOnExitConsumerLast(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.disableDetector(Detector.HELD_LOCKS);
+    Feline.setHeldMonitorSampleRate(1000);
+    Feline.removeOnExitConsumer(consumer);
+  }
+
+  @Test
+  public void noLocks() {
+    Feline.setHeldMonitorSampleRate(1);
+
+    blockingJoin();
+
+    final Map<String, Object> data = blockingCall();
+    assertEquals(Boolean.FALSE, data.get("amplified"));
+    assertTrue(heldLocks(data, "heldLocks").isEmpty());
+  }
+
+  @Test
+  public void reentrantLock() {
+    final ReentrantLock lock = new ReentrantLock();
+    lock.lock();
+    try {
+      blockingJoin();
+    } finally {
+      lock.unlock();
+    }
+    blockingJoin();
+
+    assertEquals(2, blockingCalls.size());
+    final Map<String, Object> data = blockingCalls.get(0);
+    assertEquals(Boolean.TRUE, data.get("amplified"));
+    assertEquals(1, heldLocks(data, "heldLocks").size());
+    assertTrue(
+        heldLocks(data, "heldLocks")
+            .get(0)
+            .startsWith("java.util.concurrent.locks.ReentrantLock@"));
+
+    // released before the second call
+    assertEquals(Boolean.FALSE, blockingCalls.get(1).get("amplified"));
+  }
+
+  @Test
+  public void readLock() {
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    if (lock.readLock().tryLock()) {
+      try {
+        blockingJoin();
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    final Map<String, Object> data = blockingCall();
+    assertEquals(Boolean.TRUE, data.get("amplified"));
+    assertTrue(
+        heldLocks(data, "heldLocks")
+            .get(0)
+            .startsWith("java.util.concurrent.locks.ReentrantReadWriteLock$ReadLock@"));
+  }
+
+  @Test
+  public void monitor() {
+    Feline.setHeldMonitorSampleRate(1);
+
+    final Monitor monitor = new Monitor();
+    synchronized (monitor) {
+      blockingJoin();
+    }
+
+    final Map<String, Object> data = blockingCall();
+    assertEquals(Boolean.TRUE, data.get("amplified"));
+    assertTrue(heldLocks(data, "heldLocks").isEmpty());
+    assertTrue(
+        heldLocks(data, "heldMonitors").stream()
+            .anyMatch(held -> held.startsWith(Monitor.class.getName() + "@")));
+  }
+
+  @Test
+  public void monitorNotSampled() {
+    Feline.setHeldMonitorSampleRate(0);
+
+    synchronized (new Monitor()) {
+      blockingJoin();
+    }
+
+    final Map<String, Object> data = blockingCall();
+    assertEquals(Boolean.FALSE, data.get("amplified"));
+    assertNull(data.get("heldMonitors"));
+  }
+
+  @Test
+  public void disabled() {
+    Feline.disableDetector(Detector.HELD_LOCKS);
+
+    final ReentrantLock lock = new ReentrantLock();
+    lock.lock();
+    try {
+      blockingJoin();
+    } finally {
+      lock.unlock();
+    }
+
+    assertFalse(blockingCall().containsKey("amplified"));
+  }
+
+  @Test
+  public void locksOfTerminatedThreadsAreSwept() {
+    for (int i = 0; i < 256; i++) {
+      final Thread thread = new Thread(() -> new ReentrantLock().lock());
+      thread.start();
+      while (thread.isAlive()) {
+        Thread.yield();
+      }
+    }
+
+    assertTrue(FelineRuntime.heldLocksThreadCount() < 128);
+  }
+
+  private static void blockingJoin() {
+    CompletableFuture.runAsync(HeldLocksTest::sleep).join();
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(10);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private Map<String, Object> blockingCall() {
+    assertEquals(1, blockingCalls.size());
+    return blockingCalls.get(0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> heldLocks(final Map<String, Object> data, final String field) {
+    return (List<String>) data.get(field);
+  }
+
+  private static class Monitor {}
+}
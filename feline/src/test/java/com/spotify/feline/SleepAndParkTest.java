@@ -0,0 +1,197 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+public class SleepAndParkTest {
+
+  private static final long MILLIS_50 = TimeUnit.MILLISECONDS.toNanos(50);
+
+  private final Thread testThread = Thread.currentThread();
+  private final List<Map<String, Object>> blockingCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> consumer =
+      data -> {
+        // only count the test thread, as e.g. JUnit threads may park as well
+        if (Thread.currentThread() == testThread) {
+          blockingCalls.add(data);
+        }
+      };
+
+  @BeforeEach
+  public void setUp() {
+    Feline.enableDetector(Detector.SLEEP_AND_PARK);
+    Feline.addOnExitConsumerLast(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.disableDetector(Detector.SLEEP_AND_PARK);
+    Feline.removeOnExitConsumer(consumer);
+  }
+
+  @Test
+  public void sleepNanos() throws InterruptedException {
+    Thread.sleep(50, 0);
+
+    expectBlockingCall("java.lang.Thread.sleep(long,int)", "Thread", MILLIS_50);
+  }
+
+  @Test
+  // Thread.sleep(long) is native up to Java 18, and can only be wrapped up to Java 12
+  @DisabledForJreRange(min = JRE.JAVA_13, max = JRE.JAVA_18)
+  public void sleep() throws InterruptedException {
+    Thread.sleep(50);
+
+    expectBlockingCall("java.lang.Thread.sleep(long)", "Thread", MILLIS_50);
+  }
+
+  @Test
+  public void parkNanos() {
+    LockSupport.parkNanos(this, MILLIS_50);
+
+    expectBlockingCall(
+        "java.util.concurrent.locks.LockSupport.parkNanos(java.lang.Object,long)",
+        "LockSupport",
+        MILLIS_50);
+  }
+
+  @Test
+  public void parkUntilUnparked() {
+    final Thread thread = Thread.currentThread();
+    new Thread(
+            () -> {
+              sleep(50);
+              LockSupport.unpark(thread);
+            })
+        .start();
+
+    LockSupport.park();
+
+    expectBlockingCall("java.util.concurrent.locks.LockSupport.park()", "LockSupport", -1);
+  }
+
+  @Test
+  public void parkInsideFuture() throws Exception {
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    new Thread(
+            () -> {
+              sleep(50);
+              future.complete("done");
+            })
+        .start();
+
+    future.get();
+
+    assertEquals(
+        Collections.singletonList("java.util.concurrent.CompletableFuture.get()"), methods());
+  }
+
+  @Test
+  public void contendedLock() throws InterruptedException {
+    final ReentrantLock lock = new ReentrantLock();
+    final CountDownLatch locked = new CountDownLatch(1);
+    new Thread(
+            () -> {
+              lock.lock();
+              locked.countDown();
+              sleep(50);
+              lock.unlock();
+            })
+        .start();
+    locked.await();
+
+    // AbstractQueuedSynchronizer parks while waiting for the lock
+    lock.lock();
+    lock.unlock();
+
+    assertEquals(Collections.emptyList(), methods());
+  }
+
+  @Test
+  public void disabled() throws InterruptedException {
+    Feline.disableDetector(Detector.SLEEP_AND_PARK);
+
+    Thread.sleep(50, 0);
+    LockSupport.parkNanos(MILLIS_50);
+
+    assertEquals(Collections.emptyList(), blockingCalls);
+  }
+
+  private void expectBlockingCall(
+      final String method, final String primitive, final long requestedNanos) {
+    assertEquals(Collections.singletonList(method), methods());
+    final Map<String, Object> data = blockingCalls.get(0);
+    assertEquals(primitive, data.get("primitive"));
+    assertEquals(requestedNanos, data.get("requestedNanos"));
+    final long blockedTimeNanos = (Long) data.get("blockedTimeNanos");
+    assertTrue(
+        blockedTimeNanos >= TimeUnit.MILLISECONDS.toNanos(20), "blocked " + blockedTimeNanos);
+  }
+
+  private List<String> methods() {
+    return blockingCalls.stream()
+        .map(data -> (String) data.get("method"))
+        .collect(Collectors.toList());
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SlowCallbackTest {
+
+  private final List<Map<String, Object>> slowCallbacks = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> consumer = slowCallbacks::add;
+
+  @BeforeEach
+  public void setUp() {
+    Feline.enableDetector(Detector.SLOW_CALLBACKS);
+    Feline.setSlowCallbackThreshold(Duration.ofMillis(20));
+    Feline.addSlowCallbackConsumer(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.disableDetector(Detector.SLOW_CALLBACKS);
+    Feline.setSlowCallbackThreshold(Duration.ofMillis(10));
+    Feline.removeSlowCallbackConsumer(consumer);
+  }
+
+  @Test
+  public void slowCallbackOnCompletingThread() throws InterruptedException {
+    final CompletableFuture<String> source = new CompletableFuture<>();
+    source.thenApply(
+        value -> {
+          sleep(50);
+          return value;
+        });
+
+    completeOn("io-thread", source);
+
+    assertEquals(1, slowCallbacks.size());
+    final Map<String, Object> slowCallback = slowCallbacks.get(0);
+    assertEquals("java.util.concurrent.CompletableFuture$UniApply", slowCallback.get("stage"));
+    assertEquals("io-thread", slowCallback.get("thread"));
+    final String callback = (String) slowCallback.get("callback");
+    assertTrue(callback.startsWith(getClass().getName() + "$$Lambda"), callback);
+    final long runTimeNanos = (Long) slowCallback.get("runTimeNanos");
+    assertTrue(runTimeNanos >= TimeUnit.MILLISECONDS.toNanos(50), "ran for " + runTimeNanos);
+  }
+
+  @Test
+  public void nestedCallbacksAreTimedSeparately() throws InterruptedException {
+    final CompletableFuture<String> other = new CompletableFuture<>();
+    other.thenAccept(value -> sleep(50));
+    final CompletableFuture<String> source = new CompletableFuture<>();
+    // completing the other future runs its slow callback inside this fast one
+    source.thenAccept(other::complete);
+
+    completeOn("io-thread", source);
+
+    assertEquals(1, slowCallbacks.size());
+    assertEquals(
+        "java.util.concurrent.CompletableFuture$UniAccept", slowCallbacks.get(0).get("stage"));
+    final long runTimeNanos = (Long) slowCallbacks.get(0).get("runTimeNanos");
+    assertTrue(runTimeNanos >= TimeUnit.MILLISECONDS.toNanos(50), "ran for " + runTimeNanos);
+  }
+
+  @Test
+  public void fastCallback() throws InterruptedException {
+    final CompletableFuture<String> source = new CompletableFuture<>();
+    source.thenApply(String::toUpperCase).whenComplete((value, throwable) -> {});
+
+    completeOn("io-thread", source);
+
+    assertEquals(0, slowCallbacks.size());
+  }
+
+  @Test
+  public void disabled() throws InterruptedException {
+    Feline.disableDetector(Detector.SLOW_CALLBACKS);
+
+    final CompletableFuture<String> source = new CompletableFuture<>();
+    source.thenAccept(value -> sleep(50));
+
+    completeOn("io-thread", source);
+
+    assertEquals(0, slowCallbacks.size());
+  }
+
+  private static void completeOn(final String threadName, final CompletableFuture<String> future)
+      throws InterruptedException {
+    final Thread thread = new Thread(() -> future.complete("done"), threadName);
+    thread.start();
+    thread.join();
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.agent.ByteBuddyAgent;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Starts {@link StartupMain} in new JVMs, with and without the agent, to check that the agent keeps
+ * startup time close to that without it, and that it works with class data sharing.
+ *
+ * <p>Most of the time the agent adds goes to warming up Byte Buddy, rather than to Feline's own
+ * matchers, so startup with the agent is compared to that with {@link StartupAgent}, a minimal Byte
+ * Buddy agent that instruments one class. The rest is mostly retransforming the JDK classes that
+ * are loaded before the agent starts, such as Thread and ThreadLocal, and defining the runtime in
+ * the bootstrap class loader, which first generates Byte Buddy's accessor for Unsafe. When the
+ * agent is too slow, the agent stats of a run are included in the failure, to show this breakdown
+ * ("retransformationNanos" and "bootstrapInjectionNanos" out of "installNanos").
+ */
+public class StartupTimeIT {
+
+  private static final int RUNS = 3;
+
+  // the startup time that is tolerated with the agent, relative to that with a minimal Byte Buddy
+  // agent, as it instruments a few dozen classes rather than one, plus an allowance which can be
+  // raised for noisy build machines
+  private static final long BYTE_BUDDY_FACTOR = 2;
+  private static final long ALLOWANCE_MILLIS = Long.getLong("feline.startupAllowanceMillis", 500);
+
+  @TempDir Path tempDir;
+
+  private Path agentJar;
+  private Path mainJar;
+  private String classPath;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    agentJar = codeSource(FelineAgent.class);
+    assertTrue(Files.isRegularFile(agentJar), "Not packaged as a jar: " + agentJar);
+
+    // only jars, as class data sharing does not support directories on the class path, and the
+    // jar of the application is also that of the minimal agent
+    final Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().putValue("Premain-Class", StartupAgent.class.getName());
+    manifest.getMainAttributes().putValue("Can-Retransform-Classes", "true");
+    mainJar = tempDir.resolve("main.jar");
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(mainJar), manifest)) {
+      for (final Class<?> type :
+          Arrays.asList(StartupMain.class, StartupAgent.class, StartupAgent.JoinAdvice.class)) {
+        out.putNextEntry(new ZipEntry(type.getName().replace('.', '/') + ".class"));
+        out.write(ClassFileLocator.ForClassLoader.read(type));
+        out.closeEntry();
+      }
+    }
+    classPath =
+        String.join(
+            File.pathSeparator,
+            mainJar.toString(),
+            agentJar.toString(),
+            codeSource(ByteBuddy.class).toString(),
+            codeSource(ByteBuddyAgent.class).toString());
+  }
+
+  @Test
+  public void startupTime() throws Exception {
+    final long withoutAgent = fastestStart(Collections.emptyList());
+    final long withByteBuddy = fastestStart(Collections.singletonList("-javaagent:" + mainJar));
+    final long withAgent = fastestStart(Collections.singletonList("-javaagent:" + agentJar));
+
+    final String runtimeJar = run(Collections.emptyList(), FelineAgent.class, tempDir.toString());
+    final long withRuntimeJar =
+        fastestStart(Arrays.asList("-Xbootclasspath/a:" + runtimeJar, "-javaagent:" + agentJar));
+
+    final long limit = withByteBuddy * BYTE_BUDDY_FACTOR + ALLOWANCE_MILLIS;
+    final Supplier<String> message =
+        () ->
+            String.format(
+                "Started in %d ms without an agent, %d ms with a minimal Byte Buddy agent, %d ms"
+                    + " with Feline and %d ms with its runtime jar, limit %d ms; agent stats: %s",
+                withoutAgent, withByteBuddy, withAgent, withRuntimeJar, limit, agentStats());
+    assertTrue(withAgent < limit, message);
+    assertTrue(withRuntimeJar < limit, message);
+  }
+
+  private String agentStats() {
+    try {
+      final String output =
+          run(Collections.singletonList("-javaagent:" + agentJar), StartupMain.class, "stats");
+      return output.substring(output.indexOf('{'));
+    } catch (IOException | InterruptedException e) {
+      return e.toString();
+    }
+  }
+
+  @Test
+  @EnabledForJreRange(min = JRE.JAVA_13)
+  public void classDataSharing() throws Exception {
+    final String runtimeJar = run(Collections.emptyList(), FelineAgent.class, tempDir.toString());
+    final String bootClassPath = "-Xbootclasspath/a:" + runtimeJar;
+    final Path archive = tempDir.resolve("app.jsa");
+
+    // archive the classes of a run without the agent
+    run(Arrays.asList("-XX:ArchiveClassesAtExit=" + archive, bootClassPath), StartupMain.class);
+    assertTrue(Files.exists(archive));
+
+    // and use them in a run with it, without appending to the bootstrap class path at runtime,
+    // which would keep application classes from being shared
+    final String output =
+        run(
+            Arrays.asList(
+                "-XX:SharedArchiveFile=" + archive,
+                "-Xshare:on",
+                bootClassPath,
+                "-javaagent:" + agentJar),
+            StartupMain.class);
+    assertFalse(output.contains("bootstrap classpath has been appended"), output);
+  }
+
+  private long fastestStart(final List<String> jvmArgs) throws Exception {
+    long fastest = Long.MAX_VALUE;
+    for (int i = 0; i < RUNS; i++) {
+      final long start = System.nanoTime();
+      assertEquals("started", run(jvmArgs, StartupMain.class));
+      fastest = Math.min(fastest, (System.nanoTime() - start) / 1_000_000);
+    }
+    return fastest;
+  }
+
+  /** Runs the main class in a new JVM, and returns its output. */
+  private String run(final List<String> jvmArgs, final Class<?> mainClass, final String... args)
+      throws IOException, InterruptedException {
+    final List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(jvmArgs);
+    command.add("-cp");
+    command.add(classPath);
+    command.add(mainClass.getName());
+    command.addAll(Arrays.asList(args));
+
+    final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    final String output;
+    try (InputStream in = process.getInputStream()) {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      int len;
+      while ((len = in.read(buffer)) != -1) {
+        out.write(buffer, 0, len);
+      }
+      output = new String(out.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+    assertEquals(0, process.waitFor(), output);
+    return output;
+  }
+
+  private static Path codeSource(final Class<?> type) throws Exception {
+    return Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+}
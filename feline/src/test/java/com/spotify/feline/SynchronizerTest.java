@@ -0,0 +1,242 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SynchronizerTest {
+
+  private final List<Map<String, Object>> blockingCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> consumer = blockingCalls::add;
+
+  @BeforeEach
+  public void setUp() {
+    Feline.enableDetector(Detector.SYNCHRONIZERS);
+    Feline.addOnExitConsumerLast(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.disableDetector(Detector.SYNCHRONIZERS);
+    Feline.removeOnExitConsumer(consumer);
+  }
+
+  @Test
+  public void countDownLatch() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    later(latch::countDown);
+
+    latch.await();
+
+    expectBlockingCall("java.util.concurrent.CountDownLatch.await()", "CountDownLatch");
+  }
+
+  @Test
+  public void countDownLatchNotBlocking() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(0);
+
+    latch.await();
+    latch.await(1, TimeUnit.SECONDS);
+
+    assertEquals(Collections.emptyList(), blockingCalls);
+  }
+
+  @Test
+  public void semaphore() throws Exception {
+    final Semaphore semaphore = new Semaphore(1);
+    semaphore.acquire();
+    later(semaphore::release);
+
+    semaphore.acquire();
+
+    expectBlockingCall("java.util.concurrent.Semaphore.acquire()", "Semaphore");
+  }
+
+  @Test
+  public void semaphorePermits() throws Exception {
+    final Semaphore semaphore = new Semaphore(1);
+    later(semaphore::release);
+
+    semaphore.acquire(2);
+
+    expectBlockingCall("java.util.concurrent.Semaphore.acquire(int)", "Semaphore");
+  }
+
+  @Test
+  public void semaphoreNotBlocking() throws Exception {
+    final Semaphore semaphore = new Semaphore(2);
+
+    semaphore.acquire();
+    semaphore.acquire(1);
+
+    assertEquals(Collections.emptyList(), blockingCalls);
+  }
+
+  @Test
+  public void blockingQueueTake() throws Exception {
+    final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    later(() -> queue.add("value"));
+
+    queue.take();
+
+    expectBlockingCall("java.util.concurrent.LinkedBlockingQueue.take()", "BlockingQueue");
+  }
+
+  @Test
+  public void blockingQueuePut() throws Exception {
+    final BlockingQueue<String> queue = new ArrayBlockingQueue<>(1);
+    queue.put("first");
+    later(queue::poll);
+
+    queue.put("second");
+
+    expectBlockingCall(
+        "java.util.concurrent.ArrayBlockingQueue.put(java.lang.Object)", "BlockingQueue");
+  }
+
+  @Test
+  public void cyclicBarrier() throws Exception {
+    final CyclicBarrier barrier = new CyclicBarrier(2);
+    final Thread thread =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+                barrier.await();
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+    thread.start();
+
+    barrier.await();
+    Feline.disableDetector(Detector.SYNCHRONIZERS);
+    thread.join();
+
+    // the other thread arrived last, so it did not wait
+    expectBlockingCall("java.util.concurrent.CyclicBarrier.await()", "CyclicBarrier");
+  }
+
+  @Test
+  public void threadJoin() throws Exception {
+    final Thread thread = later(() -> {});
+
+    thread.join();
+
+    expectBlockingCall("java.lang.Thread.join()", "Thread");
+  }
+
+  @Test
+  public void executorService() throws Exception {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.invokeAll(Collections.singletonList(() -> sleep(50)));
+    // the worker is now idle, waiting for its next task
+    Thread.sleep(50);
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+
+    final List<String> methods =
+        blockingCalls.stream()
+            .map(data -> (String) data.get("method"))
+            .collect(Collectors.toList());
+    assertTrue(methods.get(0).endsWith(".invokeAll(java.util.Collection)"), methods.toString());
+    assertTrue(
+        blockingCalls.stream().noneMatch(data -> "BlockingQueue".equals(data.get("primitive"))),
+        methods.toString());
+  }
+
+  @Test
+  public void disabled() throws Exception {
+    Feline.disableDetector(Detector.SYNCHRONIZERS);
+    final CountDownLatch latch = new CountDownLatch(1);
+    later(latch::countDown);
+
+    latch.await();
+
+    assertEquals(Collections.emptyList(), blockingCalls);
+  }
+
+  private void expectBlockingCall(final String method, final String primitive) {
+    assertEquals(1, blockingCalls.size(), blockingCalls.toString());
+    final Map<String, Object> data = blockingCalls.get(0);
+    assertEquals(method, data.get("method"));
+    assertEquals(primitive, data.get("primitive"));
+    final long blockedTimeNanos = (Long) data.get("blockedTimeNanos");
+    assertTrue(
+        blockedTimeNanos >= TimeUnit.MILLISECONDS.toNanos(20), "blocked " + blockedTimeNanos);
+  }
+
+  private static Thread later(final Runnable runnable) {
+    final Thread thread =
+        new Thread(
+            () -> {
+              sleep(50);
+              runnable.run();
+            });
+    thread.start();
+    return thread;
+  }
+
+  private static Object sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,133 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+public class ThreadLocalFootprintTest {
+
+  @BeforeEach
+  public void setUp() {
+    Feline.resetThreadLocalFootprint();
+    Feline.setThreadLocalSampleRate(1);
+    Feline.enableDetector(Detector.THREAD_LOCAL_FOOTPRINT);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.disableDetector(Detector.THREAD_LOCAL_FOOTPRINT);
+    Feline.setThreadLocalSampleRate(100);
+    Feline.resetThreadLocalFootprint();
+  }
+
+  @Test
+  public void subclass() {
+    final ThreadLocal<byte[]> threadLocal = new BufferThreadLocal();
+    threadLocal.get();
+
+    final Map<String, Long> stats =
+        Feline.getThreadLocalFootprint().get(BufferThreadLocal.class.getName());
+    assertEquals(1L, stats.get("platformInitializations"));
+    assertEquals(0L, stats.get("virtualInitializations"));
+    assertEquals(1L, stats.get("sampledInitializations"));
+    assertTrue(stats.get("averageBytes") >= 1024);
+  }
+
+  @Test
+  public void withInitial() throws Exception {
+    final ThreadLocal<List<String>> threadLocal = ThreadLocal.withInitial(ArrayList::new);
+    threadLocal.get();
+    final Thread thread = new Thread(threadLocal::get);
+    thread.start();
+    thread.join();
+
+    // identified by the class that declares the supplier, rather than by SuppliedThreadLocal
+    final Map<String, Long> stats = Feline.getThreadLocalFootprint().get(getClass().getName());
+    assertEquals(2L, stats.get("platformInitializations"));
+    assertEquals(2L, stats.get("sampledInitializations"));
+  }
+
+  @Test
+  public void disabled() {
+    Feline.disableDetector(Detector.THREAD_LOCAL_FOOTPRINT);
+
+    new BufferThreadLocal().get();
+
+    assertFalse(Feline.getThreadLocalFootprint().containsKey(BufferThreadLocal.class.getName()));
+  }
+
+  @Test
+  @EnabledForJreRange(min = JRE.JAVA_21)
+  public void virtualThread() throws Exception {
+    final ThreadLocal<byte[]> threadLocal = new BufferThreadLocal();
+
+    // Executors.newVirtualThreadPerTaskExecutor() does not exist in Java 8, which we compile for
+    final ExecutorService executor =
+        (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    try {
+      executor.submit(threadLocal::get).get();
+      executor.submit(threadLocal::get).get();
+    } finally {
+      executor.shutdown();
+    }
+
+    final Map<String, Long> stats =
+        Feline.getThreadLocalFootprint().get(BufferThreadLocal.class.getName());
+    assertEquals(0L, stats.get("platformInitializations"));
+    assertEquals(2L, stats.get("virtualInitializations"));
+  }
+
+  private static class BufferThreadLocal extends ThreadLocal<byte[]> {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[1024];
+    }
+  }
+}
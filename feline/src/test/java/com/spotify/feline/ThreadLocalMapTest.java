@@ -0,0 +1,153 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ThreadLocalMapTest {
+
+  private final List<Map<String, Object>> growingMaps = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> consumer = this::acceptGrowingMap;
+
+  // keeps the ThreadLocals reachable, so their entries are not stale
+  private final List<ThreadLocal<String>> threadLocals = new ArrayList<>();
+
+  @BeforeEach
+  public void setUp() {
+    Feline.stopThreadLocalMapSampling();
+    Feline.resetThreadLocalFootprint();
+    Feline.addThreadLocalMapGrowthConsumer(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.removeThreadLocalMapGrowthConsumer(consumer);
+    Feline.stopThreadLocalMapSampling();
+    Feline.disableDetector(Detector.THREAD_LOCAL_MAPS);
+    Feline.resetThreadLocalFootprint();
+    threadLocals.forEach(ThreadLocal::remove);
+  }
+
+  private void acceptGrowingMap(final Map<String, Object> data) {
+    if (data.get("thread") == Thread.currentThread()) {
+      growingMaps.add(data);
+    }
+  }
+
+  @Test
+  public void sample() {
+    setThreadLocals(3);
+
+    final Map<String, Object> data = currentThreadSample();
+    assertTrue((Integer) data.get("size") >= 3);
+    assertEquals(3, threadLocalCounts(data, "threadLocals").get(MarkerThreadLocal.class.getName()));
+  }
+
+  @Test
+  public void growingMap() {
+    ThreadLocalMapSampler.sampleAndTrackGrowth();
+    for (int i = 0; i < ThreadLocalMapSampler.GROWTH_SAMPLES; i++) {
+      assertTrue(growingMaps.isEmpty());
+      setThreadLocals(10);
+      ThreadLocalMapSampler.sampleAndTrackGrowth();
+    }
+
+    assertEquals(1, growingMaps.size());
+    final Map<String, Object> data = growingMaps.get(0);
+    assertTrue((Integer) data.get("growth") > 0);
+    assertEquals(
+        30, threadLocalCounts(data, "growingThreadLocals").get(MarkerThreadLocal.class.getName()));
+  }
+
+  @Test
+  public void setAndRemove() {
+    Feline.enableDetector(Detector.THREAD_LOCAL_MAPS);
+
+    final ThreadLocal<String> threadLocal = ThreadLocal.withInitial(() -> "");
+    threadLocal.set("a");
+    threadLocal.set("b");
+    threadLocal.remove();
+
+    // counted under the class that declares the supplier, like initializations
+    final Map<String, Long> stats = Feline.getThreadLocalFootprint().get(getClass().getName());
+    assertEquals(2L, stats.get("sets"));
+    assertEquals(1L, stats.get("removes"));
+  }
+
+  @Test
+  public void snapshotsDoNotTrackGrowth() {
+    for (int i = 0; i <= ThreadLocalMapSampler.GROWTH_SAMPLES; i++) {
+      setThreadLocals(10);
+      Feline.sampleThreadLocalMaps();
+    }
+
+    assertTrue(growingMaps.isEmpty());
+  }
+
+  private void setThreadLocals(final int count) {
+    for (int i = 0; i < count; i++) {
+      final ThreadLocal<String> threadLocal = new MarkerThreadLocal();
+      threadLocal.set("value");
+      threadLocals.add(threadLocal);
+    }
+  }
+
+  private static Map<String, Object> currentThreadSample() {
+    return Feline.sampleThreadLocalMaps().stream()
+        .filter(data -> data.get("thread") == Thread.currentThread())
+        .findFirst()
+        .orElseThrow(AssertionError::new);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Integer> threadLocalCounts(
+      final Map<String, Object> data, final String field) {
+    return (Map<String, Integer>) data.get(field);
+  }
+
+  private static class MarkerThreadLocal extends ThreadLocal<String> {}
+}
@@ -37,8 +37,17 @@
 package com.spotify.feline;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -66,4 +75,35 @@ public class ThreadLocalTest {
     final int after = COUNTER.get();
     assertEquals(before + 1, after);
   }
+
+  @Test
+  void testInitializationConsumer() throws Exception {
+    final List<Map<String, Object>> initializations = new CopyOnWriteArrayList<>();
+    final Consumer<Map<String, Object>> consumer = initializations::add;
+    Feline.addThreadLocalInitializationConsumer(consumer);
+    Feline.setThreadLocalCreationSiteSampleRate(1);
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      final ThreadLocal<String> threadLocal = ThreadLocal.withInitial(() -> "");
+      threadLocal.get();
+      // not ForkJoinTask.join, which may run the task on this thread
+      CompletableFuture.runAsync(threadLocal::get, pool).get();
+    } finally {
+      pool.shutdown();
+      Feline.setThreadLocalCreationSiteSampleRate(0);
+      Feline.removeThreadLocalInitializationConsumer(consumer);
+    }
+
+    final List<Map<String, Object>> matching =
+        initializations.stream()
+            .filter(data -> getClass().getName().equals(data.get("threadLocal")))
+            .collect(Collectors.toList());
+    assertEquals(2, matching.size());
+    for (final Map<String, Object> data : matching) {
+      assertEquals(getClass().getName() + ".testInitializationConsumer", data.get("creationSite"));
+      assertEquals(Boolean.FALSE, data.get("virtual"));
+    }
+    assertNull(matching.get(0).get("pool"));
+    assertSame(pool, matching.get(1).get("pool"));
+  }
 }
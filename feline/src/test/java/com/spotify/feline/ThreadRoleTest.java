@@ -0,0 +1,159 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ThreadRoleTest {
+
+  private final List<String> blockingCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<String> consumer = blockingCalls::add;
+
+  @BeforeEach
+  public void setUp() {
+    Feline.addConsumerLast(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.removeConsumer(consumer);
+    Feline.resetThreadRoles();
+  }
+
+  @Test
+  public void throwOnEventLoop() throws Exception {
+    Feline.assignThreadRole(Pattern.compile("event-loop-\\d+"), ThreadRole.EVENT_LOOP);
+    Feline.setThreadRoleAction(ThreadRole.EVENT_LOOP, BlockingAction.THROW);
+    final long countBefore = Feline.getBlockingCallCount(ThreadRole.EVENT_LOOP);
+
+    final Throwable thrown = runOn(new Thread(ThreadRoleTest::blockingGet, "event-loop-1"));
+
+    assertTrue(thrown instanceof IllegalStateException, String.valueOf(thrown));
+    assertTrue(thrown.getMessage().contains("event-loop thread event-loop-1"), thrown.getMessage());
+    assertEquals(1, blockingCalls.size());
+    assertEquals(countBefore + 1, Feline.getBlockingCallCount(ThreadRole.EVENT_LOOP));
+  }
+
+  @Test
+  public void countOnOtherThreads() throws Exception {
+    Feline.assignThreadRole(Pattern.compile("event-loop-\\d+"), ThreadRole.EVENT_LOOP);
+    Feline.setThreadRoleAction(ThreadRole.EVENT_LOOP, BlockingAction.THROW);
+
+    final Throwable thrown = runOn(new Thread(ThreadRoleTest::blockingGet, "worker-1"));
+
+    assertEquals(null, thrown);
+    assertEquals(1, blockingCalls.size());
+  }
+
+  @Test
+  public void ignoreOnBlockingAllowedThreads() throws Exception {
+    final ThreadFactory factory =
+        Feline.withThreadRole(Executors.defaultThreadFactory(), ThreadRole.BLOCKING_ALLOWED);
+
+    final Throwable thrown = runOn(factory.newThread(ThreadRoleTest::blockingGet));
+
+    assertEquals(null, thrown);
+    assertEquals(0, blockingCalls.size());
+  }
+
+  @Test
+  public void assignByThreadGroup() throws Exception {
+    final ThreadGroup group = new ThreadGroup("background");
+    Feline.assignThreadRole(group, ThreadRole.BACKGROUND);
+    Feline.setThreadRoleAction(ThreadRole.BACKGROUND, BlockingAction.IGNORE);
+
+    final Throwable thrown = runOn(new Thread(group, ThreadRoleTest::blockingGet, "job-1"));
+
+    assertEquals(null, thrown);
+    assertEquals(0, blockingCalls.size());
+  }
+
+  @Test
+  public void explicitRoleOnCurrentThread() throws Exception {
+    Feline.setCurrentThreadRole(ThreadRole.REQUEST_WORKER);
+    Feline.setThreadRoleAction(ThreadRole.REQUEST_WORKER, BlockingAction.THROW);
+    assertEquals(ThreadRole.REQUEST_WORKER, Feline.getCurrentThreadRole());
+
+    assertThrows(IllegalStateException.class, ThreadRoleTest::blockingGet);
+
+    Feline.resetThreadRoles();
+    assertEquals(ThreadRole.UNASSIGNED, Feline.getCurrentThreadRole());
+    assertEquals(BlockingAction.COUNT, Feline.getThreadRoleAction(ThreadRole.REQUEST_WORKER));
+  }
+
+  private static void blockingGet() {
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              future.complete("done");
+            })
+        .start();
+    try {
+      future.get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static Throwable runOn(final Thread thread) throws InterruptedException {
+    final AtomicReference<Throwable> thrown = new AtomicReference<>();
+    thread.setUncaughtExceptionHandler((t, e) -> thrown.set(e));
+    thread.start();
+    thread.join();
+    return thrown.get();
+  }
+}
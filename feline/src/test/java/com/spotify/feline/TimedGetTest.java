@@ -0,0 +1,149 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TimedGetTest {
+
+  private final Thread testThread = Thread.currentThread();
+  private final List<Map<String, Object>> blockingCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> consumer =
+      data -> {
+        if (Thread.currentThread() == testThread) {
+          blockingCalls.add(data);
+        }
+      };
+
+  @BeforeEach
+  public void setUp() {
+    Feline.addOnExitConsumerLast(consumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.removeOnExitConsumer(consumer);
+  }
+
+  @Test
+  public void untimedGet() throws Exception {
+    CompletableFuture.runAsync(TimedGetTest::sleep).get();
+
+    final Map<String, Object> data = blockingCall("java.util.concurrent.CompletableFuture.get()");
+    assertEquals("completed", data.get("outcome"));
+    assertFalse(data.containsKey("timeoutNanos"));
+  }
+
+  @Test
+  public void timedGet() throws Exception {
+    CompletableFuture.runAsync(TimedGetTest::sleep).get(10, TimeUnit.SECONDS);
+
+    final Map<String, Object> data =
+        blockingCall(
+            "java.util.concurrent.CompletableFuture.get(long,java.util.concurrent.TimeUnit)");
+    assertEquals("completed", data.get("outcome"));
+    assertEquals(TimeUnit.SECONDS.toNanos(10), data.get("timeoutNanos"));
+  }
+
+  @Test
+  public void timedOut() {
+    final FutureTask<Void> task = new FutureTask<>(() -> null);
+
+    assertThrows(TimeoutException.class, () -> task.get(10, TimeUnit.MILLISECONDS));
+
+    final Map<String, Object> data =
+        blockingCall("java.util.concurrent.FutureTask.get(long,java.util.concurrent.TimeUnit)");
+    assertEquals("timedOut", data.get("outcome"));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(10), data.get("timeoutNanos"));
+  }
+
+  @Test
+  public void failed() {
+    final CompletableFuture<Void> future =
+        CompletableFuture.runAsync(
+            () -> {
+              sleep();
+              throw new IllegalStateException();
+            });
+
+    assertThrows(ExecutionException.class, future::get);
+
+    assertEquals(
+        "failed", blockingCall("java.util.concurrent.CompletableFuture.get()").get("outcome"));
+  }
+
+  @Test
+  public void interrupted() {
+    final FutureTask<Void> task = new FutureTask<>(() -> null);
+
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, task::get);
+
+    assertEquals(
+        "interrupted", blockingCall("java.util.concurrent.FutureTask.get()").get("outcome"));
+  }
+
+  private Map<String, Object> blockingCall(final String method) {
+    assertEquals(1, blockingCalls.size());
+    final Map<String, Object> data = blockingCalls.get(0);
+    assertEquals(method, data.get("method"));
+    return data;
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(50);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
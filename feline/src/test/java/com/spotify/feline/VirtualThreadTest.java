@@ -0,0 +1,163 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+public class VirtualThreadTest {
+
+  private final List<Map<String, Object>> blockingCalls = new CopyOnWriteArrayList<>();
+  private final List<Map<String, Object>> pinnedParks = new CopyOnWriteArrayList<>();
+  private final Consumer<Map<String, Object>> consumer =
+      data -> {
+        // ignore the test thread waiting for the virtual thread
+        if ("java.util.concurrent.CompletableFuture.join()".equals(data.get("method"))) {
+          blockingCalls.add(data);
+        }
+      };
+  private final Consumer<Map<String, Object>> pinnedConsumer = pinnedParks::add;
+
+  @BeforeEach
+  public void setUp() {
+    Feline.enableDetector(Detector.VIRTUAL_THREADS);
+    Feline.addOnExitConsumerLast(consumer);
+    Feline.addPinnedVirtualThreadConsumer(pinnedConsumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Feline.disableDetector(Detector.VIRTUAL_THREADS);
+    Feline.removeOnExitConsumer(consumer);
+    Feline.removePinnedVirtualThreadConsumer(pinnedConsumer);
+  }
+
+  @Test
+  public void platformThread() throws Exception {
+    final Thread thread = new Thread(VirtualThreadTest::blockingGet);
+    thread.start();
+    thread.join();
+
+    assertEquals(1, blockingCalls.size());
+    assertEquals(Boolean.FALSE, blockingCalls.get(0).get("virtual"));
+    assertFalse(blockingCalls.get(0).containsKey("pinned"));
+  }
+
+  @Test
+  @EnabledForJreRange(min = JRE.JAVA_21)
+  public void virtualThread() throws Exception {
+    runOnVirtualThread(VirtualThreadTest::blockingGet);
+
+    assertEquals(1, blockingCalls.size());
+    assertEquals(Boolean.TRUE, blockingCalls.get(0).get("virtual"));
+    assertEquals(Boolean.FALSE, blockingCalls.get(0).get("pinned"));
+    assertEquals(0, pinnedParks.size());
+  }
+
+  @Test
+  @EnabledForJreRange(min = JRE.JAVA_21)
+  public void pinnedVirtualThread() throws Exception {
+    final Object lock = new Object();
+    runOnVirtualThread(
+        () -> {
+          synchronized (lock) {
+            blockingGet();
+          }
+        });
+
+    assertEquals(1, blockingCalls.size());
+    assertEquals(Boolean.TRUE, blockingCalls.get(0).get("virtual"));
+    assertEquals(Boolean.TRUE, blockingCalls.get(0).get("pinned"));
+
+    assertEquals(1, pinnedParks.size());
+    final Map<String, Object> pinnedPark = pinnedParks.get(0);
+    assertEquals("java.util.concurrent.CompletableFuture.join()", pinnedPark.get("method"));
+    final long pinnedTimeNanos = (Long) pinnedPark.get("pinnedTimeNanos");
+    assertTrue(pinnedTimeNanos >= TimeUnit.MILLISECONDS.toNanos(20), "pinned " + pinnedTimeNanos);
+  }
+
+  @Test
+  @EnabledForJreRange(min = JRE.JAVA_21)
+  public void carrierPoolStats() throws Exception {
+    runOnVirtualThread(() -> {});
+
+    final Map<String, Object> stats = Feline.getCarrierPoolStats();
+    assertTrue((Integer) stats.get("parallelism") > 0, stats.toString());
+    assertTrue(stats.containsKey("activeThreads"), stats.toString());
+  }
+
+  private static void runOnVirtualThread(final Runnable runnable) throws Exception {
+    // Executors.newVirtualThreadPerTaskExecutor() does not exist in Java 8, which we compile for
+    final ExecutorService executor =
+        (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    try {
+      executor.submit(runnable).get();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void blockingGet() {
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              future.complete("done");
+            })
+        .start();
+    future.join();
+  }
+}
@@ -0,0 +1,126 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline.maven;
+
+import com.spotify.feline.FelineBuildPlugin;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import net.bytebuddy.build.Plugin;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * Instruments the compiled classes of a project with {@link FelineBuildPlugin}, so that the Feline
+ * agent does not have to transform them at runtime. Classes are resolved against the compile class
+ * path of the project, and instrumented in place.
+ */
+@Mojo(
+    name = "instrument",
+    defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+    requiresDependencyResolution = ResolutionScope.COMPILE,
+    threadSafe = true)
+public class InstrumentMojo extends AbstractMojo {
+
+  @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+  File outputDirectory;
+
+  @Parameter(defaultValue = "${project.compileClasspathElements}", readonly = true)
+  List<String> classpathElements = new ArrayList<>();
+
+  /** Methods to allow blocking calls inside, as patterns like "com.example.Cache#load". */
+  @Parameter List<String> allowances = new ArrayList<>();
+
+  @Parameter(property = "feline.skip", defaultValue = "false")
+  boolean skip;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    if (skip) {
+      getLog().info("Skipping Feline instrumentation");
+      return;
+    }
+    if (!outputDirectory.isDirectory()) {
+      getLog().info("No classes to instrument in " + outputDirectory);
+      return;
+    }
+
+    final List<ClassFileLocator> classFileLocators = new ArrayList<>();
+    try {
+      for (final String element : classpathElements) {
+        final File file = new File(element);
+        if (file.equals(outputDirectory)) {
+          continue;
+        } else if (file.isDirectory()) {
+          classFileLocators.add(new ClassFileLocator.ForFolder(file));
+        } else if (file.isFile()) {
+          classFileLocators.add(ClassFileLocator.ForJarFile.of(file));
+        }
+      }
+      // JDK types, e.g. Future and ThreadLocal
+      classFileLocators.add(ClassFileLocator.ForClassLoader.ofBootLoader());
+
+      final Plugin.Engine.Summary summary;
+      try (ClassFileLocator classFileLocator = new ClassFileLocator.Compound(classFileLocators)) {
+        summary =
+            new Plugin.Engine.Default()
+                .with(Plugin.Engine.TypeStrategy.Default.REDEFINE)
+                .with(classFileLocator)
+                .withErrorHandlers(Plugin.Engine.ErrorHandler.Failing.FAIL_LAST)
+                .apply(
+                    outputDirectory,
+                    outputDirectory,
+                    new Plugin.Factory.Simple(new FelineBuildPlugin(allowances)));
+      }
+      getLog()
+          .info(
+              "Instrumented "
+                  + summary.getTransformed().size()
+                  + " classes in "
+                  + outputDirectory
+                  + " with Feline");
+    } catch (IOException | RuntimeException e) {
+      throw new MojoExecutionException("Failed to instrument classes with Feline", e);
+    }
+  }
+}
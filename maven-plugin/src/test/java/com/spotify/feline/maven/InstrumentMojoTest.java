@@ -0,0 +1,138 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.spotify.feline.FelineInstrumented;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.pool.TypePool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class InstrumentMojoTest {
+
+  @TempDir Path outputDirectory;
+
+  @Test
+  public void instrument() throws Exception {
+    copyClass(TestFuture.class);
+    copyClass(Unrelated.class);
+    final Path resource = outputDirectory.resolve("feline.properties");
+    Files.write(resource, "detectors=HELD_LOCKS".getBytes(StandardCharsets.UTF_8));
+
+    final InstrumentMojo mojo = new InstrumentMojo();
+    mojo.outputDirectory = outputDirectory.toFile();
+    mojo.allowances = Collections.singletonList(Unrelated.class.getName() + "#run");
+    mojo.execute();
+
+    assertTrue(isInstrumented(TestFuture.class));
+    assertTrue(isInstrumented(Unrelated.class));
+    assertEquals(
+        "detectors=HELD_LOCKS", new String(Files.readAllBytes(resource), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void skip() throws Exception {
+    copyClass(TestFuture.class);
+
+    final InstrumentMojo mojo = new InstrumentMojo();
+    mojo.outputDirectory = outputDirectory.toFile();
+    mojo.skip = true;
+    mojo.execute();
+
+    assertFalse(isInstrumented(TestFuture.class));
+  }
+
+  private void copyClass(final Class<?> type) throws Exception {
+    final Path classFile = outputDirectory.resolve(type.getName().replace('.', '/') + ".class");
+    Files.createDirectories(classFile.getParent());
+    Files.write(classFile, ClassFileLocator.ForClassLoader.read(type));
+  }
+
+  private boolean isInstrumented(final Class<?> type) throws Exception {
+    try (ClassFileLocator classFileLocator =
+        new ClassFileLocator.Compound(
+            new ClassFileLocator.ForFolder(outputDirectory.toFile()),
+            ClassFileLocator.ForClassLoader.ofSystemLoader())) {
+      final TypeDescription typeDescription =
+          TypePool.Default.of(classFileLocator).describe(type.getName()).resolve();
+      return typeDescription.getDeclaredAnnotations().isAnnotationPresent(FelineInstrumented.class);
+    }
+  }
+
+  public static class TestFuture implements Future<String> {
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public boolean isDone() {
+      return true;
+    }
+
+    @Override
+    public String get() {
+      return "value";
+    }
+
+    @Override
+    public String get(final long timeout, final TimeUnit unit) {
+      return "value";
+    }
+  }
+
+  public static class Unrelated {
+    public void run() {}
+  }
+}
@@ -0,0 +1,296 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline.nativeimage;
+
+import com.spotify.feline.Detector;
+import com.spotify.feline.FelineRuntime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Detects blocking calls in native images, and in any other JVM where the Feline agent can not be
+ * installed.
+ *
+ * <p>Calls to Future.get and CompletableFuture.join in classes instrumented by {@link
+ * FelineNativeImagePlugin} are replaced with calls to the static methods of this class, which wrap
+ * the original call with the same logic as the agent's advice, and report to the consumers of the
+ * Feline runtime. Consumers must be registered through this class rather than through Feline, as
+ * using Feline installs the agent.
+ *
+ * <p>Unlike with the agent, blocking calls are reported by the class of the future the call was
+ * made on, e.g. "java.util.concurrent.CompletableFuture.join()", and only calls made by
+ * instrumented classes are detected. Of the optional detectors, only {@link
+ * Detector#BLOCKING_RATIO} is supported.
+ *
+ * <p>As on-exit consumers run after the replaced call has returned, the blocking call is no longer
+ * on the stack by then. The data passed to them therefore also has "stackTrace" (a
+ * StackTraceElement[] of the blocking call, starting with a frame for the called method of the
+ * future, followed by the frames of its caller), which {@code
+ * FelineMetricsRecorder.installWithoutAgent} uses to find the call to record metrics for.
+ */
+public final class FelineNativeImage {
+
+  private FelineNativeImage() {}
+
+  /**
+   * Registers a consumer that will be invoked when blocking calls are detected, before the
+   * consumers that are already registered.
+   *
+   * @param blockingCallConsumer Consumer to be invoked with the blocking method
+   */
+  public static void addConsumerFirst(final Consumer<String> blockingCallConsumer) {
+    FelineRuntime.addConsumerFirst(blockingCallConsumer);
+  }
+
+  /**
+   * Registers a consumer that will be invoked when blocking calls are detected, after the consumers
+   * that are already registered.
+   *
+   * @param blockingCallConsumer Consumer to be invoked with the blocking method
+   */
+  public static void addConsumerLast(final Consumer<String> blockingCallConsumer) {
+    FelineRuntime.addConsumerLast(blockingCallConsumer);
+  }
+
+  /**
+   * Registers a consumer that will be invoked when blocking calls are completed, before the
+   * consumers that are already registered. The data passed to it is the same as with the agent.
+   *
+   * @param blockingCallConsumer Consumer to be invoked with the data of the blocking call
+   */
+  public static void addOnExitConsumerFirst(
+      final Consumer<Map<String, Object>> blockingCallConsumer) {
+    FelineRuntime.addOnExitConsumerFirst(blockingCallConsumer);
+  }
+
+  /**
+   * Registers a consumer that will be invoked when blocking calls are completed, after the
+   * consumers that are already registered. The data passed to it is the same as with the agent.
+   *
+   * @param blockingCallConsumer Consumer to be invoked with the data of the blocking call
+   */
+  public static void addOnExitConsumerLast(
+      final Consumer<Map<String, Object>> blockingCallConsumer) {
+    FelineRuntime.addOnExitConsumerLast(blockingCallConsumer);
+  }
+
+  /**
+   * Removes a consumer from the internal list of consumers.
+   *
+   * @param blockingCallConsumer Consumer to be removed
+   * @return true if the consumer was registered
+   */
+  public static boolean removeConsumer(final Consumer<String> blockingCallConsumer) {
+    return FelineRuntime.removeConsumer(blockingCallConsumer);
+  }
+
+  /**
+   * Removes a consumer from the internal list of on-exit consumers.
+   *
+   * @param blockingCallConsumer Consumer to be removed
+   * @return true if the consumer was registered
+   */
+  public static boolean removeOnExitConsumer(
+      final Consumer<Map<String, Object>> blockingCallConsumer) {
+    return FelineRuntime.removeOnExitConsumer(blockingCallConsumer);
+  }
+
+  /**
+   * Enables an optional detector. Only {@link Detector#BLOCKING_RATIO} is supported, as the other
+   * detectors need the agent.
+   *
+   * @param detector the detector to enable
+   * @throws IllegalArgumentException if the detector is not supported
+   */
+  public static void enableDetector(final Detector detector) {
+    FelineRuntime.enableDetectors(supportedMask(detector));
+  }
+
+  /**
+   * Disables an optional detector.
+   *
+   * @param detector the detector to disable
+   * @throws IllegalArgumentException if the detector is not supported
+   */
+  public static void disableDetector(final Detector detector) {
+    FelineRuntime.disableDetectors(supportedMask(detector));
+  }
+
+  /**
+   * Returns the calls to futures made by instrumented classes, by method, while {@link
+   * Detector#BLOCKING_RATIO} is enabled. The fields are the same as with the agent.
+   *
+   * @return the calls to futures by method
+   */
+  public static Map<String, Map<String, Long>> getFutureCallStats() {
+    return FelineRuntime.futureCalls();
+  }
+
+  /**
+   * Returns the ratio of sampled calls from a call site that blocked, as with the agent.
+   *
+   * @param callSite the class and method name of the call site, e.g. "com.example.Foo.bar"
+   * @return the blocking ratio, or NaN if no calls were sampled for the call site
+   */
+  public static double getBlockingRatio(final String callSite) {
+    return FelineRuntime.blockingRatio(callSite);
+  }
+
+  public static void resetFutureCallStats() {
+    FelineRuntime.resetFutureCalls();
+  }
+
+  /**
+   * Sets how often the call sites of calls to futures are sampled (default 100, i.e. one in a
+   * hundred calls).
+   *
+   * @param sampleRate the number of calls per sampled call site
+   */
+  public static void setCallSiteSampleRate(final int sampleRate) {
+    FelineRuntime.setCallSiteSampleRate(sampleRate);
+  }
+
+  private static int supportedMask(final Detector detector) {
+    if (detector != Detector.BLOCKING_RATIO) {
+      throw new IllegalArgumentException(detector + " is not supported in native images");
+    }
+    return FelineRuntime.DETECT_BLOCKING_RATIO;
+  }
+
+  /** Replaces calls to Future.get() in instrumented classes. */
+  public static Object get(final Future<?> future) throws InterruptedException, ExecutionException {
+    final Map<String, Object> data = beginFutureCall(future, "get()");
+    if (!data.isEmpty() && FelineRuntime.compensate(future, -1)) {
+      data.put("mitigated", Boolean.TRUE);
+    }
+    try {
+      final Object value = future.get();
+      FelineRuntime.endBlockingCall(data, null);
+      return value;
+    } catch (InterruptedException | ExecutionException | RuntimeException | Error e) {
+      FelineRuntime.endBlockingCall(data, e);
+      throw e;
+    }
+  }
+
+  /** Replaces calls to Future.get(long, TimeUnit) in instrumented classes. */
+  public static Object get(final Future<?> future, final long timeout, final TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    final Map<String, Object> data =
+        beginFutureCall(future, "get(long,java.util.concurrent.TimeUnit)");
+    long remainingTimeout = timeout;
+    if (!data.isEmpty()) {
+      final long timeoutNanos = unit == null ? 0L : unit.toNanos(timeout);
+      data.put("timeoutNanos", timeoutNanos);
+      if (unit != null && FelineRuntime.compensate(future, Math.max(0L, timeoutNanos))) {
+        data.put("mitigated", Boolean.TRUE);
+        // the timeout has been waited for already
+        remainingTimeout = 0;
+      }
+    }
+    try {
+      final Object value = future.get(remainingTimeout, unit);
+      FelineRuntime.endBlockingCall(data, null);
+      return value;
+    } catch (InterruptedException
+        | ExecutionException
+        | TimeoutException
+        | RuntimeException
+        | Error e) {
+      FelineRuntime.endBlockingCall(data, e);
+      throw e;
+    }
+  }
+
+  /** Replaces calls to CompletableFuture.join() in instrumented classes. */
+  public static Object join(final CompletableFuture<?> future) {
+    final Map<String, Object> data = beginFutureCall(future, "join()");
+    try {
+      final Object value = future.join();
+      FelineRuntime.endBlockingCall(data, null);
+      return value;
+    } catch (RuntimeException | Error e) {
+      FelineRuntime.endBlockingCall(data, e);
+      throw e;
+    }
+  }
+
+  private static Map<String, Object> beginFutureCall(final Future<?> future, final String method) {
+    if (FelineRuntime.BLOCKED_THREADS.contains(Thread.currentThread().getId())) {
+      // already inside a blocking call
+      return Collections.emptyMap();
+    }
+
+    final String methodCall = future.getClass().getName() + "." + method;
+    final boolean done = future.isDone();
+    if (FelineRuntime.isDetectorEnabled(FelineRuntime.DETECT_BLOCKING_RATIO)) {
+      // the call site is below this method and the one it replaced the call with
+      FelineRuntime.countFutureCall(methodCall, !done, 2);
+    }
+
+    if (done) {
+      // not actually blocking
+      return Collections.emptyMap();
+    }
+    final Map<String, Object> data = FelineRuntime.beginBlockingCall(methodCall, "Future");
+    if (!data.isEmpty()) {
+      data.put("stackTrace", stackTrace(future, method));
+    }
+    return data;
+  }
+
+  /**
+   * Returns the stack trace of the blocking call, where the frames of this class are replaced by
+   * one for the method of the future that the call was replaced with.
+   */
+  private static StackTraceElement[] stackTrace(final Future<?> future, final String method) {
+    final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+    // skip this method and beginFutureCall, and replace the method that replaced the call
+    final int start = 2;
+    stackTrace[start] =
+        new StackTraceElement(
+            future.getClass().getName(), method.substring(0, method.indexOf('(')), null, -1);
+    return Arrays.copyOfRange(stackTrace, start, stackTrace.length);
+  }
+}
@@ -0,0 +1,111 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline.nativeimage;
+
+import static net.bytebuddy.matcher.ElementMatchers.any;
+import static net.bytebuddy.matcher.ElementMatchers.isDeclaredBy;
+import static net.bytebuddy.matcher.ElementMatchers.isSubTypeOf;
+import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.returns;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import net.bytebuddy.asm.MemberSubstitution;
+import net.bytebuddy.build.Plugin;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.matcher.ElementMatcher;
+
+/**
+ * Replaces the calls to Future.get and CompletableFuture.join made by application classes with
+ * calls to {@link FelineNativeImage} at build time. Unlike the agent, which instruments the
+ * implementations of these methods in the JDK, this needs neither an agent nor bytecode generation
+ * at runtime, and so works in native images.
+ *
+ * <p>This can be used by Byte Buddy's own build plugins, before the classes are compiled into a
+ * native image. Calls to methods that do not return Object, e.g. the get method of a Future
+ * implementation that returns a more specific type, are not replaced.
+ */
+public class FelineNativeImagePlugin implements Plugin {
+
+  private final MemberSubstitution substitution;
+
+  public FelineNativeImagePlugin() {
+    try {
+      substitution =
+          MemberSubstitution.relaxed()
+              .method(futureMethod(Future.class, "get").and(takesArguments(0)))
+              .replaceWith(FelineNativeImage.class.getMethod("get", Future.class))
+              .method(
+                  futureMethod(Future.class, "get").and(takesArguments(long.class, TimeUnit.class)))
+              .replaceWith(
+                  FelineNativeImage.class.getMethod(
+                      "get", Future.class, long.class, TimeUnit.class))
+              .method(futureMethod(CompletableFuture.class, "join").and(takesArguments(0)))
+              .replaceWith(FelineNativeImage.class.getMethod("join", CompletableFuture.class));
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static ElementMatcher.Junction<MethodDescription> futureMethod(
+      final Class<?> type, final String name) {
+    return named(name).and(returns(Object.class)).and(isDeclaredBy(isSubTypeOf(type)));
+  }
+
+  @Override
+  public boolean matches(final TypeDescription typeDescription) {
+    // Feline itself, including the methods that the calls are replaced with
+    return !nameStartsWith("com.spotify.feline.").matches(typeDescription);
+  }
+
+  @Override
+  public DynamicType.Builder<?> apply(
+      final DynamicType.Builder<?> builder,
+      final TypeDescription typeDescription,
+      final ClassFileLocator classFileLocator) {
+    return builder.visit(substitution.on(any()));
+  }
+
+  @Override
+  public void close() {}
+}
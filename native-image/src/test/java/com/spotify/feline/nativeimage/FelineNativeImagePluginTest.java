@@ -0,0 +1,277 @@
+/*-
+ * -\-\-
+ * futuristic-feline
+ * --
+ * Copyright (C) 2016 - 2023 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+/*
+ * Copyright (c) 2026 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.spotify.feline.nativeimage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.codahale.metrics.Meter;
+import com.spotify.feline.Detector;
+import com.spotify.feline.FelineMetricsRecorder;
+import com.spotify.feline.FelineRuntime;
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class FelineNativeImagePluginTest {
+
+  private final List<String> blockingCalls = new CopyOnWriteArrayList<>();
+  private final List<Map<String, Object>> completedCalls = new CopyOnWriteArrayList<>();
+  private final Consumer<String> consumer = blockingCalls::add;
+  private final Consumer<Map<String, Object>> onExitConsumer = completedCalls::add;
+
+  @BeforeEach
+  public void setUp() {
+    FelineNativeImage.addConsumerLast(consumer);
+    FelineNativeImage.addOnExitConsumerLast(onExitConsumer);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    FelineNativeImage.removeConsumer(consumer);
+    FelineNativeImage.removeOnExitConsumer(onExitConsumer);
+  }
+
+  @Test
+  public void callsAreReplaced() throws Exception {
+    final Function<CompletableFuture<String>, String> get = instrument(GetCaller.class);
+    final Function<CompletableFuture<String>, String> timedGet = instrument(TimedGetCaller.class);
+    final Function<CompletableFuture<String>, String> join = instrument(JoinCaller.class);
+
+    assertEquals("get", get.apply(completeLater("get")));
+    assertEquals("timed", timedGet.apply(completeLater("timed")));
+    assertEquals("join", join.apply(completeLater("join")));
+
+    assertEquals(
+        Arrays.asList(
+            "java.util.concurrent.CompletableFuture.get()",
+            "java.util.concurrent.CompletableFuture.get(long,java.util.concurrent.TimeUnit)",
+            "java.util.concurrent.CompletableFuture.join()"),
+        blockingCalls);
+    assertEquals(3, completedCalls.size());
+    assertEquals("completed", completedCalls.get(0).get("outcome"));
+    assertEquals(TimeUnit.MINUTES.toNanos(1), completedCalls.get(1).get("timeoutNanos"));
+  }
+
+  @Test
+  public void doneFuturesAreNotReported() throws Exception {
+    final CompletableFuture<String> future = CompletableFuture.completedFuture("value");
+
+    assertEquals("value", instrument(GetCaller.class).apply(future));
+    assertEquals("value", instrument(JoinCaller.class).apply(future));
+    assertTrue(blockingCalls.isEmpty());
+  }
+
+  @Test
+  public void failedCalls() throws Exception {
+    final Function<CompletableFuture<String>, String> caller = instrument(JoinCaller.class);
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    completeLater(() -> future.completeExceptionally(new IllegalStateException()));
+
+    assertThrows(CompletionException.class, () -> caller.apply(future));
+    assertEquals(
+        Collections.singletonList("java.util.concurrent.CompletableFuture.join()"), blockingCalls);
+    assertEquals("failed", completedCalls.get(0).get("outcome"));
+  }
+
+  @Test
+  public void onExitConsumersFirst() throws Exception {
+    final List<String> order = new CopyOnWriteArrayList<>();
+    final Consumer<Map<String, Object>> first = data -> order.add("first");
+    final Consumer<Map<String, Object>> last = data -> order.add("last");
+    FelineNativeImage.addOnExitConsumerLast(last);
+    FelineNativeImage.addOnExitConsumerFirst(first);
+    try {
+      instrument(JoinCaller.class).apply(completeLater("join"));
+    } finally {
+      FelineNativeImage.removeOnExitConsumer(first);
+      FelineNativeImage.removeOnExitConsumer(last);
+    }
+
+    assertEquals(Arrays.asList("first", "last"), order);
+  }
+
+  @Test
+  public void blockingRatio() throws Exception {
+    final Function<CompletableFuture<String>, String> caller = instrument(JoinCaller.class);
+    FelineNativeImage.resetFutureCallStats();
+    FelineNativeImage.setCallSiteSampleRate(1);
+    FelineNativeImage.enableDetector(Detector.BLOCKING_RATIO);
+    try {
+      caller.apply(CompletableFuture.completedFuture("done"));
+      caller.apply(completeLater("join"));
+    } finally {
+      FelineNativeImage.disableDetector(Detector.BLOCKING_RATIO);
+      FelineNativeImage.setCallSiteSampleRate(100);
+    }
+
+    final Map<String, Long> stats =
+        FelineNativeImage.getFutureCallStats().get("java.util.concurrent.CompletableFuture.join()");
+    assertEquals(2L, stats.get("calls"));
+    assertEquals(1L, stats.get("blockingCalls"));
+    assertEquals(0.5, FelineNativeImage.getBlockingRatio(JoinCaller.class.getName() + ".apply"));
+  }
+
+  @Test
+  public void agentDetectorsAreNotSupported() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> FelineNativeImage.enableDetector(Detector.SLOW_CALLBACKS));
+  }
+
+  @Test
+  public void metricsAreTaggedWithTheCaller() throws Exception {
+    final SemanticMetricRegistry registry = new SemanticMetricRegistry();
+    FelineMetricsRecorder.installWithoutAgent(registry);
+    try {
+      instrument(GetCaller.class).apply(completeLater("get"));
+    } finally {
+      FelineRuntime.clearConsumers();
+    }
+
+    final Map<String, Long> calls = new HashMap<>();
+    for (final Map.Entry<MetricId, Meter> meter : registry.getMeters().entrySet()) {
+      if ("blocking-calls".equals(meter.getKey().getTags().get("what"))) {
+        calls.put(meter.getKey().getTags().get("call"), meter.getValue().getCount());
+      }
+    }
+    assertEquals(Collections.singletonMap(GetCaller.class.getName() + ".apply", 1L), calls);
+  }
+
+  @Test
+  public void matches() {
+    final FelineNativeImagePlugin plugin = new FelineNativeImagePlugin();
+
+    assertTrue(plugin.matches(TypeDescription.ForLoadedType.of(Test.class)));
+    // including the classes of Feline that the calls are replaced with
+    assertFalse(plugin.matches(TypeDescription.ForLoadedType.of(getClass())));
+    assertFalse(plugin.matches(TypeDescription.ForLoadedType.of(FelineNativeImage.class)));
+  }
+
+  private static CompletableFuture<String> completeLater(final String value) {
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    completeLater(() -> future.complete(value));
+    return future;
+  }
+
+  private static void completeLater(final Runnable completion) {
+    final Thread thread =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              completion.run();
+            });
+    thread.start();
+  }
+
+  /** Instruments a class as the build plugin would, and creates an instance of it. */
+  @SuppressWarnings("unchecked")
+  private static Function<CompletableFuture<String>, String> instrument(final Class<?> type)
+      throws Exception {
+    final TypeDescription typeDescription = TypeDescription.ForLoadedType.of(type);
+    final ClassFileLocator classFileLocator =
+        ClassFileLocator.ForClassLoader.of(type.getClassLoader());
+    final Class<?> instrumented =
+        new FelineNativeImagePlugin()
+            .apply(
+                new ByteBuddy().redefine(typeDescription, classFileLocator),
+                typeDescription,
+                classFileLocator)
+            .make()
+            .load(type.getClassLoader(), ClassLoadingStrategy.Default.CHILD_FIRST)
+            .getLoaded();
+    return (Function<CompletableFuture<String>, String>)
+        instrumented.getConstructor().newInstance();
+  }
+
+  public static class GetCaller implements Function<CompletableFuture<String>, String> {
+
+    @Override
+    public String apply(final CompletableFuture<String> future) {
+      final Future<String> asFuture = future;
+      try {
+        return asFuture.get();
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  public static class TimedGetCaller implements Function<CompletableFuture<String>, String> {
+
+    @Override
+    public String apply(final CompletableFuture<String> future) {
+      try {
+        return future.get(1, TimeUnit.MINUTES);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  public static class JoinCaller implements Function<CompletableFuture<String>, String> {
+
+    @Override
+    public String apply(final CompletableFuture<String> future) {
+      return future.join();
+    }
+  }
+}
@@ -36,20 +36,77 @@
 
 package com.spotify.feline;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.spotify.metrics.core.MetricId;
 import com.spotify.metrics.core.SemanticMetricBuilder;
 import com.spotify.metrics.core.SemanticMetricRegistry;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /** Feline consumer that integrates with semantic-metrics. */
 public class FelineMetricsRecorder {
 
+  private static final Pattern DIGITS = Pattern.compile("[0-9]+");
+
+  // Timed waits that complete this many times faster than their timeout are reported as oversized
+  private static final long OVERSIZED_TIMEOUT_FACTOR = 100;
+
+  // The most pools with a peak size gauge at a time, as each pool is a separate series
+  private static final int MAX_POOL_GAUGES = 64;
+
   private final SemanticMetricRegistry registry;
   private final MetricId blockingCallId = MetricId.EMPTY.tagged("what", "blocking-calls");
   private final MetricId timeBlockedCallId =
       MetricId.EMPTY.tagged("what", "blocking-calls-time", "unit", "ns");
+  private final MetricId mitigatedCallId =
+      MetricId.EMPTY.tagged("what", "blocking-calls-mitigated");
+  private final MetricId futureWaitId = MetricId.EMPTY.tagged("what", "future-waits");
+  private final MetricId oversizedTimeoutId = MetricId.EMPTY.tagged("what", "oversized-timeouts");
+  private final MetricId amplifiedCallId =
+      MetricId.EMPTY.tagged("what", "blocking-calls-amplified");
+  private final MetricId compensationId = MetricId.EMPTY.tagged("what", "fork-join-compensations");
+  private final MetricId poolPeakSizeId = MetricId.EMPTY.tagged("what", "fork-join-pool-peak-size");
+  private final MetricId commonPoolAsyncCallId =
+      MetricId.EMPTY.tagged("what", "common-pool-async-calls");
+  private final MetricId commonPoolAsyncTimeId =
+      MetricId.EMPTY.tagged("what", "common-pool-async-time", "unit", "ns");
+  private final MetricId slowCallbackId = MetricId.EMPTY.tagged("what", "slow-callbacks");
+  private final MetricId slowCallbackTimeId =
+      MetricId.EMPTY.tagged("what", "slow-callbacks-time", "unit", "ns");
+  private final MetricId threadLocalInitializationsId =
+      MetricId.EMPTY.tagged("what", "thread-local-initializations");
+  private final MetricId threadLocalCreationSitesId =
+      MetricId.EMPTY.tagged("what", "thread-local-creation-sites");
+  private final MetricId virtualThreadCallId =
+      MetricId.EMPTY.tagged("what", "virtual-thread-blocking-calls");
+  private final MetricId pinnedTimeId =
+      MetricId.EMPTY.tagged("what", "virtual-thread-pinned-time", "unit", "ns");
   private final MetricsConsumer.CallFinder callFinder;
+  // the call that submitted each pending async task
+  private final Map<Object, String> commonPoolAsyncCalls =
+      Collections.synchronizedMap(new WeakHashMap<>());
+  // pools with a peak size gauge, until they terminate or are collected
+  private final ConcurrentMap<String, PoolPeakSize> poolPeakSizes = new ConcurrentHashMap<>();
+  // ThreadLocal initialization meters by thread local and then by pool, or by creation site
+  private final ConcurrentMap<String, ConcurrentMap<String, Meter>> initializationMeters =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, Meter>> creationSiteMeters =
+      new ConcurrentHashMap<>();
+  // call sites with a blocking ratio gauge
+  private final Set<String> blockingRatioCalls = ConcurrentHashMap.newKeySet();
+  // carrier pool gauges are registered once the first virtual thread blocks
+  private final AtomicBoolean carrierPoolGauges = new AtomicBoolean();
 
   private final Meter initialValueCalls;
 
@@ -78,11 +135,15 @@ public class FelineMetricsRecorder {
   }
 
   private Optional<StackTraceElement> getBlockingMethod(final String blockingCall) {
-    final String blockingMethod = blockingCall.substring(0, blockingCall.indexOf('('));
-
     // the stackTrace array is top-down: the first element in the array is the most recent stack
     // frame
-    final StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
+    return getBlockingMethod(blockingCall, Thread.currentThread().getStackTrace());
+  }
+
+  private Optional<StackTraceElement> getBlockingMethod(
+      final String blockingCall, final StackTraceElement[] stackTraceElements) {
+    final String blockingMethod = blockingCall.substring(0, blockingCall.indexOf('('));
+
     if (stackTraceElements.length == 0) {
       // nothing to find
       return Optional.empty();
@@ -92,33 +153,281 @@ public class FelineMetricsRecorder {
   }
 
   public static void install(final SemanticMetricRegistry registry) {
+    Feline.install();
     install(new FelineMetricsRecorder(registry));
   }
 
   public static void install(
       final SemanticMetricRegistry registry, final MetricsConsumer.CallFinder callFinder) {
+    Feline.install();
+    install(new FelineMetricsRecorder(registry, callFinder));
+  }
+
+  /**
+   * Like {@link #install(SemanticMetricRegistry)}, but registers with the Feline runtime without
+   * installing the agent, for native images, where calls are reported through
+   * futuristic-feline-native-image instead. Do not use this if the agent is installed later, as the
+   * recorder would then be registered with another copy of the runtime than the one the agent
+   * reports to.
+   */
+  public static void installWithoutAgent(final SemanticMetricRegistry registry) {
+    install(new FelineMetricsRecorder(registry));
+  }
+
+  public static void installWithoutAgent(
+      final SemanticMetricRegistry registry, final MetricsConsumer.CallFinder callFinder) {
     install(new FelineMetricsRecorder(registry, callFinder));
   }
 
   private static void install(final FelineMetricsRecorder consumer) {
-    Feline.addOnExitConsumerFirst(
+    FelineRuntime.addOnExitConsumerFirst(
         map -> {
           final String method = (String) map.get("method");
           final long blockedTimeNanos = (Long) map.get("blockedTimeNanos");
+          // without the agent, the call has returned and its stack trace is passed instead
+          final StackTraceElement[] stackTrace = (StackTraceElement[]) map.get("stackTrace");
           final String call =
-              consumer
-                  .getBlockingMethod(method)
+              (stackTrace == null
+                      ? consumer.getBlockingMethod(method)
+                      : consumer.getBlockingMethod(method, stackTrace))
                   .map(element -> element.getClassName() + "." + element.getMethodName())
                   .orElse("unknown");
           consumer.markMeter(call, blockedTimeNanos);
+          if (Boolean.TRUE.equals(map.get("mitigated"))) {
+            consumer.markMitigated(call);
+          }
+          if (map.containsKey("outcome")) {
+            consumer.registerBlockingRatio(call);
+            consumer.markFutureWait(
+                call,
+                (String) map.get("outcome"),
+                (Long) map.get("timeoutNanos"),
+                blockedTimeNanos);
+          }
+          if (Boolean.TRUE.equals(map.get("amplified"))) {
+            consumer.markAmplified(call);
+          }
+          if (Boolean.TRUE.equals(map.get("virtual"))) {
+            consumer.markVirtualThread(call, map.get("pinned"));
+          }
         });
-    Feline.addThreadLocalInitialValueConsumer(consumer::acceptThreadLocal);
+    FelineRuntime.addThreadLocalInitialValueConsumer(consumer::acceptThreadLocal);
+    FelineRuntime.addThreadLocalInitializationConsumer(consumer::acceptThreadLocalInitialization);
+    FelineRuntime.addForkJoinCompensationConsumer(consumer::acceptCompensation);
+    FelineRuntime.addCommonPoolSubmissionConsumer(consumer::acceptCommonPoolSubmission);
+    FelineRuntime.addCommonPoolExecutionConsumer(consumer::acceptCommonPoolExecution);
+    FelineRuntime.addSlowCallbackConsumer(consumer::acceptSlowCallback);
+    FelineRuntime.addPinnedVirtualThreadConsumer(consumer::acceptPinnedVirtualThread);
   }
 
   private void acceptThreadLocal() {
     initialValueCalls.mark();
   }
 
+  private void acceptThreadLocalInitialization(final Map<String, Object> map) {
+    final String threadLocal = (String) map.get("threadLocal");
+    final String creationSite = (String) map.get("creationSite");
+    final String pool;
+    if (map.get("pool") != null) {
+      pool = poolName((ForkJoinPool) map.get("pool"));
+    } else if (Boolean.TRUE.equals(map.get("virtual"))) {
+      pool = "virtual";
+    } else {
+      pool = threadPoolName(((Thread) map.get("thread")).getName());
+    }
+
+    meter(initializationMeters, threadLocal, pool, threadLocalInitializationsId, "pool").mark();
+    if (creationSite != null) {
+      meter(
+              creationSiteMeters,
+              threadLocal,
+              creationSite,
+              threadLocalCreationSitesId,
+              "creation_site")
+          .mark();
+    }
+  }
+
+  // Returns the meter of a thread local and tag value, without building a MetricId if it exists
+  private Meter meter(
+      final ConcurrentMap<String, ConcurrentMap<String, Meter>> meters,
+      final String threadLocal,
+      final String value,
+      final MetricId id,
+      final String tag) {
+    // get first, as computeIfAbsent locks even if the key is present in Java 8
+    ConcurrentMap<String, Meter> byValue = meters.get(threadLocal);
+    if (byValue == null) {
+      byValue = meters.computeIfAbsent(threadLocal, k -> new ConcurrentHashMap<>());
+    }
+    Meter meter = byValue.get(value);
+    if (meter == null) {
+      meter =
+          byValue.computeIfAbsent(
+              value,
+              v ->
+                  registry.getOrAdd(
+                      id.tagged("thread_local", threadLocal, tag, v),
+                      SemanticMetricBuilder.METERS));
+    }
+    return meter;
+  }
+
+  private void acceptCompensation(final Map<String, Object> map) {
+    final String method = (String) map.get("method");
+    final ForkJoinPool pool = (ForkJoinPool) map.get("pool");
+    final int poolSize = (Integer) map.get("poolSize");
+    final int compensatedWorkers = (Integer) map.get("compensatedWorkers");
+    final String call =
+        getBlockingMethod(method)
+            .map(element -> element.getClassName() + "." + element.getMethodName())
+            .orElse("unknown");
+    final String poolName = poolName(pool);
+
+    registry
+        .getOrAdd(
+            compensationId.tagged("call", call, "pool", poolName), SemanticMetricBuilder.METERS)
+        .mark(compensatedWorkers);
+
+    removeTerminatedPools();
+    PoolPeakSize peakSize = poolPeakSizes.get(poolName);
+    if (peakSize == null && poolPeakSizes.size() < MAX_POOL_GAUGES) {
+      peakSize =
+          poolPeakSizes.computeIfAbsent(
+              poolName,
+              name -> {
+                final PoolPeakSize value = new PoolPeakSize(pool);
+                registry.register(poolPeakSizeId.tagged("pool", name), value);
+                return value;
+              });
+    }
+    if (peakSize != null) {
+      peakSize.peak.accumulateAndGet(poolSize, Math::max);
+    }
+  }
+
+  /** Removes the gauges of pools that were shut down or collected. */
+  private void removeTerminatedPools() {
+    for (final Map.Entry<String, PoolPeakSize> entry : poolPeakSizes.entrySet()) {
+      final ForkJoinPool pool = entry.getValue().pool.get();
+      if ((pool == null || pool.isShutdown())
+          && poolPeakSizes.remove(entry.getKey(), entry.getValue())) {
+        registry.remove(poolPeakSizeId.tagged("pool", entry.getKey()));
+      }
+    }
+  }
+
+  private static final class PoolPeakSize implements Gauge<Integer> {
+    private final WeakReference<ForkJoinPool> pool;
+    private final AtomicInteger peak = new AtomicInteger();
+
+    PoolPeakSize(final ForkJoinPool pool) {
+      this.pool = new WeakReference<>(pool);
+    }
+
+    @Override
+    public Integer getValue() {
+      return peak.get();
+    }
+  }
+
+  private void acceptCommonPoolSubmission(final Map<String, Object> map) {
+    final String method = (String) map.get("method");
+    final String call =
+        getBlockingMethod(method)
+            .map(element -> element.getClassName() + "." + element.getMethodName())
+            .orElse("unknown");
+    commonPoolAsyncCalls.put(map.get("future"), call);
+    registry
+        .getOrAdd(commonPoolAsyncCallId.tagged("call", call), SemanticMetricBuilder.METERS)
+        .mark();
+  }
+
+  private void acceptCommonPoolExecution(final Map<String, Object> map) {
+    final String call = commonPoolAsyncCalls.remove(map.get("future"));
+    if (call == null) {
+      // submitted before the recorder was installed
+      return;
+    }
+    final long runTimeNanos = (Long) map.get("runTimeNanos");
+    registry
+        .getOrAdd(commonPoolAsyncTimeId.tagged("call", call), SemanticMetricBuilder.METERS)
+        .mark(runTimeNanos);
+  }
+
+  private void acceptSlowCallback(final Map<String, Object> map) {
+    final String callback = callbackName((String) map.get("callback"));
+    final String threadName = MetricsConsumer.sanitizeThreadName((String) map.get("thread"));
+    final long runTimeNanos = (Long) map.get("runTimeNanos");
+
+    registry
+        .getOrAdd(
+            slowCallbackId.tagged("callback", callback, "thread_name", threadName),
+            SemanticMetricBuilder.METERS)
+        .mark();
+    registry
+        .getOrAdd(
+            slowCallbackTimeId.tagged("callback", callback, "thread_name", threadName),
+            SemanticMetricBuilder.METERS)
+        .mark(runTimeNanos);
+  }
+
+  private void acceptPinnedVirtualThread(final Map<String, Object> map) {
+    final String method = (String) map.get("method");
+    final String call =
+        method == null
+            ? "unknown"
+            : getBlockingMethod(method)
+                .map(element -> element.getClassName() + "." + element.getMethodName())
+                .orElse("unknown");
+    final long pinnedTimeNanos = (Long) map.get("pinnedTimeNanos");
+    registry
+        .getOrAdd(pinnedTimeId.tagged("call", call), SemanticMetricBuilder.METERS)
+        .mark(pinnedTimeNanos);
+  }
+
+  private void markVirtualThread(final String call, final Object pinned) {
+    // virtual threads are usually unnamed, so they are not tagged by thread name
+    final MetricId metricId =
+        pinned == null
+            ? virtualThreadCallId.tagged("call", call)
+            : virtualThreadCallId.tagged("call", call, "pinned", pinned.toString());
+    registry.getOrAdd(metricId, SemanticMetricBuilder.METERS).mark();
+
+    if (carrierPoolGauges.compareAndSet(false, true)) {
+      registerCarrierPoolGauge("carrier-pool-size", "poolSize");
+      registerCarrierPoolGauge("carrier-pool-active-threads", "activeThreads");
+      registerCarrierPoolGauge("carrier-pool-queued-tasks", "queuedTasks");
+    }
+  }
+
+  private void registerCarrierPoolGauge(final String what, final String stat) {
+    registry.register(
+        MetricId.EMPTY.tagged("what", what),
+        (Gauge<Object>) () -> FelineRuntime.carrierPoolStats().get(stat));
+  }
+
+  /** Reduces the class name of a lambda to the class that declared it. */
+  // Visible for testing
+  static String callbackName(final String className) {
+    final int index = className.indexOf("$$Lambda");
+    return index < 0 ? className : className.substring(0, index);
+  }
+
+  /** Identifies the pool of a thread by its name, e.g. "pool-#-thread-#" for "pool-1-thread-2". */
+  // Visible for testing
+  static String threadPoolName(final String threadName) {
+    return DIGITS.matcher(threadName).replaceAll("#");
+  }
+
+  // Visible for testing
+  static String poolName(final ForkJoinPool pool) {
+    if (pool == ForkJoinPool.commonPool()) {
+      return "common";
+    }
+    return "ForkJoinPool@" + Integer.toHexString(System.identityHashCode(pool));
+  }
+
   private void markMeter(final String call, final long timeBlockedNanos) {
     // NOTE: if metric reporting is ever moved to a separate thread from the one that is calling the
     // blocking Future method, this will have to change - to pass the threadName as a parameter to
@@ -135,4 +444,48 @@ public class FelineMetricsRecorder {
         registry.getOrAdd(timeBlockedMetricId, SemanticMetricBuilder.METERS);
     timeBlockedMeter.mark(timeBlockedNanos);
   }
+
+  /** Registers a gauge with the blocking ratio of a call site, if it is being counted. */
+  private void registerBlockingRatio(final String call) {
+    if (!blockingRatioCalls.contains(call)
+        && !Double.isNaN(FelineRuntime.blockingRatio(call))
+        && blockingRatioCalls.add(call)) {
+      registry.register(
+          MetricId.EMPTY.tagged("what", "blocking-ratio", "call", call),
+          (Gauge<Double>) () -> FelineRuntime.blockingRatio(call));
+    }
+  }
+
+  private void markFutureWait(
+      final String call,
+      final String outcome,
+      final Long timeoutNanos,
+      final long blockedTimeNanos) {
+    final String wait = timeoutNanos == null ? "unbounded" : "bounded";
+    registry
+        .getOrAdd(
+            futureWaitId.tagged("call", call, "wait", wait, "outcome", outcome),
+            SemanticMetricBuilder.METERS)
+        .mark();
+
+    if (timeoutNanos != null
+        && "completed".equals(outcome)
+        && timeoutNanos / OVERSIZED_TIMEOUT_FACTOR > blockedTimeNanos) {
+      registry
+          .getOrAdd(oversizedTimeoutId.tagged("call", call), SemanticMetricBuilder.METERS)
+          .mark();
+    }
+  }
+
+  private void markAmplified(final String call) {
+    final String threadName = MetricsConsumer.sanitizeThreadName(Thread.currentThread().getName());
+    final MetricId metricId = amplifiedCallId.tagged("call", call, "thread_name", threadName);
+    registry.getOrAdd(metricId, SemanticMetricBuilder.METERS).mark();
+  }
+
+  private void markMitigated(final String call) {
+    final String threadName = MetricsConsumer.sanitizeThreadName(Thread.currentThread().getName());
+    final MetricId metricId = mitigatedCallId.tagged("call", call, "thread_name", threadName);
+    registry.getOrAdd(metricId, SemanticMetricBuilder.METERS).mark();
+  }
 }
@@ -36,6 +36,8 @@
 
 package com.spotify.feline;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.google.common.util.concurrent.SettableFuture;
@@ -43,9 +45,15 @@ import com.spotify.metrics.core.MetricId;
 import com.spotify.metrics.core.SemanticMetricRegistry;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Test;
 
 public class FelineMetricsRecorderTest {
@@ -91,6 +99,18 @@ public class FelineMetricsRecorderTest {
     assertMetric(getClass().getCanonicalName() + ".blockingGet");
   }
 
+  @Test
+  public void installedWithoutAgent() {
+    // the agent is only installed here so that there is something reporting to the runtime
+    Feline.install();
+    FelineMetricsRecorder.installWithoutAgent(registry);
+
+    // blocking
+    CompletableFuture.runAsync(RUNNABLE).join();
+
+    assertMetric(getClass().getCanonicalName() + ".installedWithoutAgent");
+  }
+
   @Test
   public void multipleBlockingGets() throws ExecutionException, InterruptedException {
     FelineMetricsRecorder.install(registry);
@@ -121,6 +141,47 @@ public class FelineMetricsRecorderTest {
     assertMetric(getClass().getCanonicalName() + ".blockingGetTimeout");
   }
 
+  @Test
+  public void boundedWait() throws Exception {
+    FelineMetricsRecorder.install(registry);
+
+    CompletableFuture.runAsync(RUNNABLE).get(1, TimeUnit.HOURS);
+    CompletableFuture.runAsync(RUNNABLE).join();
+
+    final String call = getClass().getCanonicalName() + ".boundedWait";
+    expectMetric(
+        MetricId.EMPTY.tagged(
+            "what", "future-waits", "call", call, "wait", "bounded", "outcome", "completed"));
+    expectMetric(
+        MetricId.EMPTY.tagged(
+            "what", "future-waits", "call", call, "wait", "unbounded", "outcome", "completed"));
+    expectMetric(MetricId.EMPTY.tagged("what", "oversized-timeouts", "call", call));
+  }
+
+  @Test
+  public void blockingRatio() {
+    FelineMetricsRecorder.install(registry);
+    Feline.setCallSiteSampleRate(1);
+    Feline.enableDetector(Detector.BLOCKING_RATIO);
+    try {
+      ratioJoin(CompletableFuture.completedFuture(null));
+      ratioJoin(CompletableFuture.runAsync(RUNNABLE));
+    } finally {
+      Feline.disableDetector(Detector.BLOCKING_RATIO);
+      Feline.setCallSiteSampleRate(100);
+    }
+
+    final MetricId ratioId =
+        MetricId.EMPTY.tagged(
+            "what", "blocking-ratio", "call", getClass().getCanonicalName() + ".ratioJoin");
+    assertEquals(0.5, (Double) registry.getGauges().get(ratioId).getValue(), 0.0);
+    Feline.resetFutureCallStats();
+  }
+
+  private void ratioJoin(final CompletableFuture<Void> future) {
+    future.join();
+  }
+
   @Test
   public void blockingListenableFutureGet() throws Exception {
     FelineMetricsRecorder.install(registry);
@@ -147,6 +208,269 @@ public class FelineMetricsRecorderTest {
     assertMetric(getClass().getCanonicalName() + ".blockingListenableFutureGetTimeout");
   }
 
+  @Test
+  public void mitigatedBlockingGet() throws Exception {
+    FelineMetricsRecorder.install(registry);
+    Feline.setForkJoinCompensation(true);
+
+    final ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      pool.submit(
+              () -> {
+                final FutureTask<Void> task = new FutureTask<>(RUNNABLE, null);
+                pool.execute(task);
+                return task.get();
+              })
+          .get(10, TimeUnit.SECONDS);
+    } finally {
+      Feline.setForkJoinCompensation(false);
+      pool.shutdownNow();
+    }
+
+    assertTrue(
+        "Did not find a mitigated meter, all meters in registry: " + registry.getMeters().keySet(),
+        registry.getMeters().keySet().stream()
+            .anyMatch(id -> "blocking-calls-mitigated".equals(id.getTags().get("what"))));
+  }
+
+  @Test
+  public void amplifiedBlockingJoin() {
+    FelineMetricsRecorder.install(registry);
+    Feline.enableDetector(Detector.HELD_LOCKS);
+    try {
+      lockedJoin();
+    } finally {
+      Feline.disableDetector(Detector.HELD_LOCKS);
+    }
+
+    assertTrue(
+        "Did not find an amplified meter, all meters in registry: " + registry.getMeters().keySet(),
+        registry.getMeters().keySet().stream()
+            .anyMatch(
+                id ->
+                    "blocking-calls-amplified".equals(id.getTags().get("what"))
+                        && (getClass().getCanonicalName() + ".lockedJoin")
+                            .equals(id.getTags().get("call"))));
+  }
+
+  private void lockedJoin() {
+    final ReentrantLock lock = new ReentrantLock();
+    lock.lock();
+    try {
+      CompletableFuture.runAsync(RUNNABLE).join();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Test
+  public void compensatedBlockingJoin() throws Exception {
+    FelineMetricsRecorder.install(registry);
+
+    final ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      final CompletableFuture<Void> future = new CompletableFuture<>();
+      pool.submit(() -> compensatedJoin(pool, future)).get(10, TimeUnit.SECONDS);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    final String poolName = FelineMetricsRecorder.poolName(pool);
+    expectMetric(
+        MetricId.EMPTY.tagged(
+            "what",
+            "fork-join-compensations",
+            "call",
+            getClass().getCanonicalName() + ".compensatedJoin",
+            "pool",
+            poolName));
+    final MetricId peakSizeId =
+        MetricId.EMPTY.tagged("what", "fork-join-pool-peak-size", "pool", poolName);
+    assertEquals(2, registry.getGauges().get(peakSizeId).getValue());
+  }
+
+  @Test
+  public void terminatedPoolGaugesAreRemoved() throws Exception {
+    FelineMetricsRecorder.install(registry);
+
+    final ForkJoinPool terminated = new ForkJoinPool(1);
+    terminated
+        .submit(() -> compensatedJoin(terminated, new CompletableFuture<>()))
+        .get(10, TimeUnit.SECONDS);
+    terminated.shutdownNow();
+
+    final ForkJoinPool running = new ForkJoinPool(1);
+    try {
+      running
+          .submit(() -> compensatedJoin(running, new CompletableFuture<>()))
+          .get(10, TimeUnit.SECONDS);
+    } finally {
+      running.shutdownNow();
+    }
+
+    final MetricId peakSizeId = MetricId.EMPTY.tagged("what", "fork-join-pool-peak-size");
+    assertFalse(
+        registry
+            .getGauges()
+            .containsKey(peakSizeId.tagged("pool", FelineMetricsRecorder.poolName(terminated))));
+    assertTrue(
+        registry
+            .getGauges()
+            .containsKey(peakSizeId.tagged("pool", FelineMetricsRecorder.poolName(running))));
+  }
+
+  private static void compensatedJoin(
+      final ForkJoinPool pool, final CompletableFuture<Void> future) {
+    pool.execute(() -> future.complete(null));
+    future.join();
+  }
+
+  @Test
+  public void commonPoolAsync() throws Exception {
+    FelineMetricsRecorder.install(registry);
+    Feline.enableDetector(Detector.COMMON_POOL_ASYNC);
+    try {
+      CompletableFuture.supplyAsync(() -> "done").get();
+    } finally {
+      Feline.disableDetector(Detector.COMMON_POOL_ASYNC);
+    }
+
+    final String call = getClass().getCanonicalName() + ".commonPoolAsync";
+    expectMetric(MetricId.EMPTY.tagged("what", "common-pool-async-calls", "call", call));
+    // the execution is recorded after the task completed its future
+    final MetricId timeId =
+        MetricId.EMPTY.tagged("what", "common-pool-async-time", "unit", "ns", "call", call);
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!registry.getMeters().containsKey(timeId) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    expectMetric(timeId);
+  }
+
+  @Test
+  public void slowCallback() throws Exception {
+    FelineMetricsRecorder.install(registry);
+    Feline.enableDetector(Detector.SLOW_CALLBACKS);
+    try {
+      final CompletableFuture<Void> future = new CompletableFuture<>();
+      future.thenRun(RUNNABLE);
+      final Thread thread = new Thread(() -> future.complete(null), "io-thread-1");
+      thread.start();
+      thread.join();
+    } finally {
+      Feline.disableDetector(Detector.SLOW_CALLBACKS);
+    }
+
+    final String callback = getClass().getName();
+    expectMetric(
+        MetricId.EMPTY.tagged(
+            "what", "slow-callbacks", "callback", callback, "thread_name", "io-thread-N"));
+    expectMetric(
+        MetricId.EMPTY.tagged(
+            "what",
+            "slow-callbacks-time",
+            "unit",
+            "ns",
+            "callback",
+            callback,
+            "thread_name",
+            "io-thread-N"));
+  }
+
+  @Test
+  public void threadLocalInitialization() throws Exception {
+    FelineMetricsRecorder.install(registry);
+
+    final ThreadLocal<String> threadLocal = ThreadLocal.withInitial(() -> "");
+    final Thread thread = new Thread(threadLocal::get, "worker-17");
+    thread.start();
+    thread.join();
+
+    expectMetric(
+        MetricId.EMPTY.tagged(
+            "what",
+            "thread-local-initializations",
+            "thread_local",
+            getClass().getName(),
+            "pool",
+            "worker-#"));
+  }
+
+  @Test
+  public void threadLocalCreationSite() throws Exception {
+    FelineMetricsRecorder.install(registry);
+    Feline.setThreadLocalCreationSiteSampleRate(1);
+    try {
+      final ThreadLocal<String> threadLocal = ThreadLocal.withInitial(() -> "");
+      final Thread thread = new Thread(threadLocal::get, "worker-17");
+      thread.start();
+      thread.join();
+    } finally {
+      Feline.setThreadLocalCreationSiteSampleRate(0);
+    }
+
+    expectMetric(
+        MetricId.EMPTY.tagged(
+            "what",
+            "thread-local-initializations",
+            "thread_local",
+            getClass().getName(),
+            "pool",
+            "worker-#"));
+    expectMetric(
+        MetricId.EMPTY.tagged(
+            "what",
+            "thread-local-creation-sites",
+            "thread_local",
+            getClass().getName(),
+            "creation_site",
+            getClass().getName() + ".threadLocalCreationSite"));
+  }
+
+  @Test
+  public void pinnedVirtualThread() throws Exception {
+    final ExecutorService executor;
+    try {
+      executor =
+          (ExecutorService)
+              Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException e) {
+      Assume.assumeNoException("virtual threads require Java 21", e);
+      return;
+    }
+
+    FelineMetricsRecorder.install(registry);
+    Feline.enableDetector(Detector.VIRTUAL_THREADS);
+    try {
+      executor.submit(this::pinnedJoin).get();
+    } finally {
+      Feline.disableDetector(Detector.VIRTUAL_THREADS);
+      executor.shutdown();
+    }
+
+    final String call = getClass().getCanonicalName() + ".pinnedJoin";
+    expectMetric(
+        MetricId.EMPTY.tagged(
+            "what", "virtual-thread-blocking-calls", "call", call, "pinned", "true"));
+    expectMetric(
+        MetricId.EMPTY.tagged("what", "virtual-thread-pinned-time", "unit", "ns", "call", call));
+    assertTrue(
+        registry.getGauges().containsKey(MetricId.EMPTY.tagged("what", "carrier-pool-size")));
+  }
+
+  private synchronized void pinnedJoin() {
+    CompletableFuture.runAsync(RUNNABLE).join();
+  }
+
+  @Test
+  public void callbackName() {
+    assertEquals(
+        "com.spotify.Foo", FelineMetricsRecorder.callbackName("com.spotify.Foo$$Lambda$12/123"));
+    assertEquals(
+        "com.spotify.Foo", FelineMetricsRecorder.callbackName("com.spotify.Foo$$Lambda/0x1234"));
+    assertEquals("com.spotify.Foo$Bar", FelineMetricsRecorder.callbackName("com.spotify.Foo$Bar"));
+  }
+
   private void assertMetric(final String call) {
     final String expectedThreadName =
         MetricsConsumer.sanitizeThreadName(Thread.currentThread().getName());